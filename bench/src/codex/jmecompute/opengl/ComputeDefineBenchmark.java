@@ -0,0 +1,55 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package codex.jmecompute.opengl;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link ComputeDefine#setValue(Object)} and {@link ComputeDefine#isEnabled()}.
+ * 
+ * @author codex
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ComputeDefineBenchmark {
+    
+    private final Object[] values = {true, false, 3, 0, 1.5f, 0f, "LINEAR", ""};
+    private ComputeDefine define;
+    private int index = 0;
+    
+    @Setup
+    public void setup() {
+        define = new ComputeDefine("Param", "DEFINE", 1);
+    }
+    
+    @Benchmark
+    public boolean setValueChanging() {
+        index = (index + 1) & 7;
+        return define.setValue(values[index]);
+    }
+    @Benchmark
+    public boolean setValueUnchanged() {
+        return define.setValue(values[2]);
+    }
+    @Benchmark
+    public boolean isEnabled() {
+        return define.isEnabled();
+    }
+    
+}
@@ -0,0 +1,177 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package codex.jmecompute.opengl;
+
+import com.jme3.math.ColorRGBA;
+import com.jme3.math.Matrix3f;
+import com.jme3.math.Matrix4f;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector2f;
+import com.jme3.math.Vector3f;
+import com.jme3.math.Vector4f;
+import com.jme3.shader.VarType;
+import com.jme3.texture.Texture2D;
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link ComputeUniform#setValue(Object)} for each {@link VarType} branch.
+ * <p>
+ * Each benchmark alternates between two values, so every call is a real change.
+ * 
+ * @author codex
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ComputeUniformBenchmark {
+    
+    private final EnumMap<VarType, ComputeUniform> uniforms = new EnumMap<>(VarType.class);
+    private final EnumMap<VarType, Object[]> values = new EnumMap<>(VarType.class);
+    private ComputeUniform color;
+    private Object[] colors;
+    private int flip = 0;
+    
+    @Setup
+    public void setup() {
+        put(VarType.Boolean, true, false);
+        put(VarType.Int, 1, 2);
+        put(VarType.Float, 1f, 2f);
+        put(VarType.Vector2, new Vector2f(1, 2), new Vector2f(3, 4));
+        put(VarType.Vector3, new Vector3f(1, 2, 3), new Vector3f(4, 5, 6));
+        put(VarType.Vector4, new Vector4f(1, 2, 3, 4), new Quaternion(0, 0, 0, 1));
+        put(VarType.Matrix3, new Matrix3f(), new Matrix3f(2, 0, 0, 0, 2, 0, 0, 0, 2));
+        put(VarType.Matrix4, new Matrix4f(), new Matrix4f().mult(2f));
+        put(VarType.IntArray, new int[16], new int[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16});
+        put(VarType.FloatArray, new float[16], new float[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16});
+        put(VarType.Vector2Array, array(Vector2f.ZERO, 8), array(Vector2f.UNIT_XY, 8));
+        put(VarType.Vector3Array, array(Vector3f.ZERO, 8), array(Vector3f.UNIT_XYZ, 8));
+        put(VarType.Vector4Array, array(Vector4f.ZERO, 8), array(Vector4f.UNIT_XYZW, 8));
+        put(VarType.Matrix3Array, array(Matrix3f.ZERO, 4), array(Matrix3f.IDENTITY, 4));
+        put(VarType.Matrix4Array, array(Matrix4f.ZERO, 4), array(Matrix4f.IDENTITY, 4));
+        put(VarType.Texture2D, new Texture2D(), new Texture2D());
+        color = new ComputeUniform("Color", VarType.Vector4);
+        colors = new Object[] {ColorRGBA.Red, ColorRGBA.Blue};
+    }
+    private void put(VarType type, Object a, Object b) {
+        uniforms.put(type, new ComputeUniform(type.name(), type));
+        values.put(type, new Object[] {a, b});
+    }
+    @SuppressWarnings("unchecked")
+    private static <T> T[] array(T value, int length) {
+        T[] array = (T[])Array.newInstance(value.getClass(), length);
+        Arrays.fill(array, value);
+        return array;
+    }
+    private int set(VarType type) {
+        ComputeUniform u = uniforms.get(type);
+        u.setValue(values.get(type)[flip ^= 1]);
+        return u.getVersion();
+    }
+    
+    @Benchmark
+    public int setBoolean() {
+        return set(VarType.Boolean);
+    }
+    @Benchmark
+    public int setInt() {
+        return set(VarType.Int);
+    }
+    @Benchmark
+    public int setFloat() {
+        return set(VarType.Float);
+    }
+    @Benchmark
+    public int setVector2() {
+        return set(VarType.Vector2);
+    }
+    @Benchmark
+    public int setVector3() {
+        return set(VarType.Vector3);
+    }
+    @Benchmark
+    public int setVector4() {
+        return set(VarType.Vector4);
+    }
+    @Benchmark
+    public int setColor() {
+        color.setValue(colors[flip ^= 1]);
+        return color.getVersion();
+    }
+    @Benchmark
+    public int setMatrix3() {
+        return set(VarType.Matrix3);
+    }
+    @Benchmark
+    public int setMatrix4() {
+        return set(VarType.Matrix4);
+    }
+    @Benchmark
+    public int setIntArray() {
+        return set(VarType.IntArray);
+    }
+    @Benchmark
+    public int setFloatArray() {
+        return set(VarType.FloatArray);
+    }
+    @Benchmark
+    public int setVector2Array() {
+        return set(VarType.Vector2Array);
+    }
+    @Benchmark
+    public int setVector3Array() {
+        return set(VarType.Vector3Array);
+    }
+    @Benchmark
+    public int setVector4Array() {
+        return set(VarType.Vector4Array);
+    }
+    @Benchmark
+    public int setMatrix3Array() {
+        return set(VarType.Matrix3Array);
+    }
+    @Benchmark
+    public int setMatrix4Array() {
+        return set(VarType.Matrix4Array);
+    }
+    @Benchmark
+    public int setFloatPrimitive() {
+        ComputeUniform u = uniforms.get(VarType.Float);
+        u.setFloat((flip ^= 1) + 1f);
+        return u.getVersion();
+    }
+    @Benchmark
+    public int setFloatUnchanged() {
+        ComputeUniform u = uniforms.get(VarType.Float);
+        u.setFloat(1f);
+        return u.getVersion();
+    }
+    @Benchmark
+    public int setVector3Primitive() {
+        ComputeUniform u = uniforms.get(VarType.Vector3);
+        u.setVector3(flip ^= 1, 2f, 3f);
+        return u.getVersion();
+    }
+    @Benchmark
+    public int setTexture() {
+        return set(VarType.Texture2D);
+    }
+    
+}
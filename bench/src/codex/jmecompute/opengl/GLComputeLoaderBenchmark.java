@@ -0,0 +1,88 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package codex.jmecompute.opengl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures parsing of generated compute shader definitions, in
+ * the text format and in the binary format.
+ * 
+ * @author codex
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GLComputeLoaderBenchmark {
+    
+    private static final String[] PARAMS = {
+        "Float Scale%d : 1.5",
+        "Int Count%d : 12",
+        "Boolean Enabled%d : true",
+        "Vector3 Offset%d : 1.0 2.0 3.0",
+        "Vector4 Color%d : 0.1 0.2 0.3 1.0",
+        "Matrix4 Transform%d : 1 0 0 0 0 1 0 0 0 0 1 0 0 0 0 1",
+        "FloatArray Weights%d : 0.1 0.2 0.3 0.4 0.5 0.6 0.7 0.8",
+        "Texture2D Input%d",
+    };
+    
+    @Param({"10", "200"})
+    public int numParams;
+    
+    private byte[] definition;
+    private byte[] binary;
+    
+    @Setup
+    public void setup() throws IOException {
+        StringBuilder builder = new StringBuilder();
+        builder.append("ComputeShader Benchmark {\n")
+               .append("    Shader Shaders/Benchmark.comp\n")
+               .append("    Version GLSL430 GLSL450\n")
+               .append("    Parameters {\n");
+        for (int i = 0; i < numParams; i++) {
+            builder.append("        ").append(String.format(PARAMS[i % PARAMS.length], i)).append('\n');
+        }
+        builder.append("    }\n")
+               .append("    Defines {\n");
+        for (int i = 0; i < numParams; i += 4) {
+            builder.append("        USE_SCALE_").append(i).append(" : Scale").append(i).append('\n');
+        }
+        builder.append("    }\n")
+               .append("}\n");
+        definition = builder.toString().getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GLComputeLoader.parseDefinition(new ByteArrayInputStream(definition), asset -> "void main() {}\n").write(out);
+        binary = out.toByteArray();
+    }
+    
+    @Benchmark
+    public GLComputeShader parse() throws IOException {
+        return GLComputeLoader.parse(new ByteArrayInputStream(definition), asset -> "void main() {}\n");
+    }
+    
+    @Benchmark
+    public GLComputeShader readBinary() throws IOException {
+        return ComputeDefinition.read(new ByteArrayInputStream(binary)).createShader();
+    }
+    
+}
@@ -0,0 +1,67 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package codex.jmecompute.opengl;
+
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures building the variant key and assembling the full source,
+ * as done by {@code GLComputeShader.compileSource} on a define change.
+ * 
+ * @author codex
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SourceAssemblyBenchmark {
+    
+    @Param({"4", "32"})
+    public int numDefines;
+    
+    @Param({"2000", "20000"})
+    public int codeLength;
+    
+    private final TreeMap<String, ComputeDefine> defines = new TreeMap<>();
+    private String code;
+    
+    @Setup
+    public void setup() {
+        for (int i = 0; i < numDefines; i++) {
+            String name = "DEFINE_" + i;
+            defines.put(name, new ComputeDefine(name, name, (i & 1) == 0 ? i : true));
+        }
+        StringBuilder builder = new StringBuilder(codeLength);
+        while (builder.length() < codeLength) {
+            builder.append("    value = value * 0.5 + texelFetch(Input, ivec2(gl_GlobalInvocationID.xy), 0);\n");
+        }
+        code = builder.toString();
+    }
+    
+    @Benchmark
+    public String variantKey() {
+        return GLComputeShader.buildDefines(new StringBuilder(), defines.values()).toString();
+    }
+    @Benchmark
+    public String assembleSource() {
+        String key = GLComputeShader.buildDefines(new StringBuilder(), defines.values()).toString();
+        return GLComputeShader.assembleSource(430, key, code);
+    }
+    
+}
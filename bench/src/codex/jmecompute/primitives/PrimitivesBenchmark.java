@@ -0,0 +1,180 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package codex.jmecompute.primitives;
+
+import codex.jmecompute.opengl.ComputeBarriers;
+import codex.jmecompute.opengl.ComputeBuffer;
+import codex.jmecompute.opengl.ComputeContext;
+import com.jme3.asset.DesktopAssetManager;
+import com.jme3.asset.plugins.ClasspathLocator;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import static org.lwjgl.opengl.GL43.*;
+
+/**
+ * Measures the throughput of the parallel primitives on the GPU, in a headless
+ * {@link ComputeContext}, against their sequential CPU references.
+ * <p>
+ * The {@code elements} counter reports elements processed per second. GPU
+ * benchmarks wait for the GPU to finish, so they include the dispatch overhead
+ * of every pass. GPU results are verified against the CPU references during setup,
+ * using uint elements so results are exact regardless of the order of operations.
+ * 
+ * @author codex
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrimitivesBenchmark {
+    
+    @Param({"65536", "1048576", "16777216"})
+    public int count;
+    
+    private ComputeContext context;
+    private ComputeReduction reduction;
+    private ComputeScan scan;
+    private ComputeCompaction compaction;
+    private ComputeBuffer input, output, result;
+    private ByteBuffer cpuInput, cpuOutput;
+    
+    /**
+     * Counts processed elements, reported as a rate.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Elements {
+        
+        public long elements;
+    
+    }
+    
+    @Setup(Level.Trial)
+    public void setup() {
+        context = ComputeContext.create();
+        DesktopAssetManager assetManager = new DesktopAssetManager();
+        assetManager.registerLocator("/", ClasspathLocator.class);
+        reduction = new ComputeReduction(assetManager);
+        scan = new ComputeScan(assetManager);
+        compaction = new ComputeCompaction(assetManager);
+        reduction.setType(ComputeValueType.UInt);
+        scan.setType(ComputeValueType.UInt);
+        compaction.setType(ComputeValueType.UInt);
+        compaction.setPredicate("value > 127u");
+        reduction.setContext(context);
+        scan.setContext(context);
+        compaction.setContext(context);
+        cpuInput = ByteBuffer.allocateDirect(count * 4).order(ByteOrder.nativeOrder());
+        cpuOutput = ByteBuffer.allocateDirect(count * 4).order(ByteOrder.nativeOrder());
+        Random random = new Random(0);
+        for (int i = 0; i < count; i++) {
+            cpuInput.putInt(i << 2, random.nextInt(256));
+        }
+        input = new ComputeBuffer(count * 4, false);
+        input.getMapped().put(cpuInput.duplicate()).clear();
+        input.flush();
+        output = new ComputeBuffer(count * 4, false);
+        result = new ComputeBuffer(16, false);
+        verify();
+    }
+    
+    private void verify() {
+        reduction.reduce(input, count, result, 0);
+        int sum = CpuPrimitives.reduce(ComputeValueType.UInt, ComputeOperator.Sum, cpuInput, count);
+        int gpuSum = read(result, 1).getInt(0);
+        if (gpuSum != sum) {
+            throw new IllegalStateException("Reduction returned "+gpuSum+", expected "+sum);
+        }
+        scan.scan(input, output, count, false);
+        CpuPrimitives.scan(ComputeValueType.UInt, ComputeOperator.Sum, cpuInput, cpuOutput, count, false);
+        int i = CpuPrimitives.compare(ComputeValueType.UInt, cpuOutput, read(output, count), count, 0);
+        if (i >= 0) {
+            throw new IllegalStateException("Scan differs at element "+i);
+        }
+        compaction.compact(input, count, output, result, 0);
+        int n = CpuPrimitives.compact(ComputeValueType.UInt, cpuInput, cpuOutput, count, v -> v > 127);
+        int gpuN = read(result, 1).getInt(0);
+        if (gpuN != n || CpuPrimitives.compare(ComputeValueType.UInt, cpuOutput, read(output, n), n, 0) >= 0) {
+            throw new IllegalStateException("Compaction differs, kept "+gpuN+" of "+n+" elements");
+        }
+    }
+    private ByteBuffer read(ComputeBuffer buffer, int elements) {
+        ComputeBarriers.get().flush(GL_BUFFER_UPDATE_BARRIER_BIT);
+        ByteBuffer data = ByteBuffer.allocateDirect(elements * 4).order(ByteOrder.nativeOrder());
+        glBindBuffer(GL_SHADER_STORAGE_BUFFER, buffer.getId());
+        glGetBufferSubData(GL_SHADER_STORAGE_BUFFER, 0, data);
+        glBindBuffer(GL_SHADER_STORAGE_BUFFER, 0);
+        return data;
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        reduction.cleanup();
+        scan.cleanup();
+        compaction.cleanup();
+        input.delete();
+        output.delete();
+        result.delete();
+        context.close();
+    }
+    
+    @Benchmark
+    public void gpuReduce(Elements e) {
+        reduction.reduce(input, count, result, 0);
+        glFinish();
+        e.elements += count;
+    }
+    
+    @Benchmark
+    public void gpuScan(Elements e) {
+        scan.scan(input, output, count, false);
+        glFinish();
+        e.elements += count;
+    }
+    
+    @Benchmark
+    public void gpuCompact(Elements e) {
+        compaction.compact(input, count, output, result, 0);
+        glFinish();
+        e.elements += count;
+    }
+    
+    @Benchmark
+    public int cpuReduce(Elements e) {
+        e.elements += count;
+        return CpuPrimitives.reduce(ComputeValueType.UInt, ComputeOperator.Sum, cpuInput, count);
+    }
+    
+    @Benchmark
+    public void cpuScan(Elements e) {
+        CpuPrimitives.scan(ComputeValueType.UInt, ComputeOperator.Sum, cpuInput, cpuOutput, count, false);
+        e.elements += count;
+    }
+    
+    @Benchmark
+    public int cpuCompact(Elements e) {
+        e.elements += count;
+        return CpuPrimitives.compact(ComputeValueType.UInt, cpuInput, cpuOutput, count, v -> v > 127);
+    }
+    
+}
@@ -0,0 +1,150 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package codex.jmecompute.primitives;
+
+import codex.jmecompute.opengl.ComputeBarriers;
+import codex.jmecompute.opengl.ComputeBuffer;
+import codex.jmecompute.opengl.ComputeContext;
+import com.jme3.asset.DesktopAssetManager;
+import com.jme3.asset.plugins.ClasspathLocator;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import static org.lwjgl.opengl.GL43.*;
+
+/**
+ * Compares sorting float keys with {@link ComputeRadixSort} in a headless
+ * {@link ComputeContext} to {@link Arrays#parallelSort(float[])}.
+ * <p>
+ * The unsorted keys are restored before every invocation, outside of the
+ * measurement. GPU sorts wait for the GPU to finish. The GPU result is
+ * verified against {@link Arrays#sort(float[])} during setup.
+ * 
+ * @author codex
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RadixSortBenchmark {
+    
+    @Param({"65536", "262144", "1048576", "4194304"})
+    public int count;
+    
+    private ComputeContext context;
+    private ComputeRadixSort sort;
+    private ComputeBuffer source, keys, values;
+    private float[] unsorted, cpuKeys;
+    
+    @Setup(Level.Trial)
+    public void setup() {
+        context = ComputeContext.create();
+        DesktopAssetManager assetManager = new DesktopAssetManager();
+        assetManager.registerLocator("/", ClasspathLocator.class);
+        sort = new ComputeRadixSort(assetManager);
+        sort.setKeyType(ComputeValueType.Float);
+        sort.setContext(context);
+        unsorted = new float[count];
+        cpuKeys = new float[count];
+        Random random = new Random(0);
+        for (int i = 0; i < count; i++) {
+            unsorted[i] = (random.nextFloat() - 0.5f) * 1000f;
+        }
+        source = new ComputeBuffer(count * 4, false);
+        source.getMapped().asFloatBuffer().put(unsorted);
+        source.flush();
+        keys = new ComputeBuffer(count * 4, false);
+        keys.initialize();
+        values = new ComputeBuffer(count * 4, false);
+        ByteBuffer indices = values.getMapped();
+        for (int i = 0; i < count; i++) {
+            indices.putInt(i << 2, i);
+        }
+        values.flush();
+        verify();
+    }
+    
+    private void verify() {
+        restoreGpu();
+        sort.sort(keys, values, count);
+        ComputeBarriers.get().flush(GL_BUFFER_UPDATE_BARRIER_BIT);
+        ByteBuffer k = read(keys), v = read(values);
+        float[] expected = unsorted.clone();
+        Arrays.sort(expected);
+        for (int i = 0; i < count; i++) {
+            float key = k.getFloat(i << 2);
+            if (key != expected[i] || unsorted[v.getInt(i << 2)] != key) {
+                throw new IllegalStateException("Sort differs at element "+i);
+            }
+        }
+    }
+    private ByteBuffer read(ComputeBuffer buffer) {
+        ByteBuffer data = ByteBuffer.allocateDirect(count * 4).order(ByteOrder.nativeOrder());
+        glBindBuffer(GL_SHADER_STORAGE_BUFFER, buffer.getId());
+        glGetBufferSubData(GL_SHADER_STORAGE_BUFFER, 0, data);
+        glBindBuffer(GL_SHADER_STORAGE_BUFFER, 0);
+        return data;
+    }
+    
+    @Setup(Level.Invocation)
+    public void restore() {
+        System.arraycopy(unsorted, 0, cpuKeys, 0, count);
+        restoreGpu();
+    }
+    private void restoreGpu() {
+        ComputeBarriers.get().flush(GL_BUFFER_UPDATE_BARRIER_BIT);
+        glBindBuffer(GL_COPY_READ_BUFFER, source.getId());
+        glBindBuffer(GL_COPY_WRITE_BUFFER, keys.getId());
+        glCopyBufferSubData(GL_COPY_READ_BUFFER, GL_COPY_WRITE_BUFFER, 0, 0, count * 4);
+        glBindBuffer(GL_COPY_READ_BUFFER, 0);
+        glBindBuffer(GL_COPY_WRITE_BUFFER, 0);
+        glFinish();
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        sort.cleanup();
+        source.delete();
+        keys.delete();
+        values.delete();
+        context.close();
+    }
+    
+    @Benchmark
+    public void gpuSortKeys() {
+        sort.sort(keys, count);
+        glFinish();
+    }
+    
+    @Benchmark
+    public void gpuSortKeysValues() {
+        sort.sort(keys, values, count);
+        glFinish();
+    }
+    
+    @Benchmark
+    public float[] parallelSort() {
+        Arrays.parallelSort(cpuKeys);
+        return cpuKeys;
+    }
+    
+}
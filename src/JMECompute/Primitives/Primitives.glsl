@@ -0,0 +1,25 @@
+// Definitions shared by the parallel primitives.
+//
+// LOCAL_SIZE_X  invocations per work group
+// ITEMS         elements processed by each invocation
+// VALUE_TYPE    float, int or uint
+// OP            0 = sum, 1 = min, 2 = max, sum if not defined
+// IDENTITY      identity of OP for VALUE_TYPE
+
+#define LOCAL_SIZE uint(LOCAL_SIZE_X)
+#define BLOCK_SIZE uint(LOCAL_SIZE_X * ITEMS)
+
+#ifndef OP
+    #define OP 0
+#endif
+
+#if OP == 1
+    #define combine(a, b) min(a, b)
+#elif OP == 2
+    #define combine(a, b) max(a, b)
+#else
+    #define combine(a, b) ((a) + (b))
+#endif
+
+// makes shared memory writes visible to the whole work group
+#define sync() memoryBarrierShared(); barrier()
@@ -0,0 +1,30 @@
+// Definitions shared by the radix sort passes.
+//
+// KEY_TYPE   0 = uint, 1 = int, 2 = float keys, stored as uint bits, uint if not defined
+// RADIX      number of buckets per pass
+
+#define RADIX 16u
+
+#ifndef KEY_TYPE
+    #define KEY_TYPE 0
+#endif
+
+uniform int Count;
+uniform int Shift;
+uniform int Mask;
+uniform int NumGroups;
+
+// maps key bits so unsigned order matches the order of KEY_TYPE
+uint mapKey(uint k) {
+    #if KEY_TYPE == 1
+        return k ^ 0x80000000u;
+    #elif KEY_TYPE == 2
+        return k ^ ((k & 0x80000000u) != 0u ? 0xFFFFFFFFu : 0x80000000u);
+    #else
+        return k;
+    #endif
+}
+
+uint digit(uint k) {
+    return (mapKey(k) >> uint(Shift)) & uint(Mask);
+}
@@ -0,0 +1,77 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package codex.jmecompute;
+
+import codex.jmecompute.opengl.ComputeBuffer;
+import codex.jmecompute.opengl.ComputeUniform;
+import com.jme3.shader.VarType;
+
+/**
+ * Compute program independent of the device it executes on.
+ * <p>
+ * Implementations share the same parameter surface: uniforms, defines
+ * and storage buffers are set by name, then the program is executed
+ * over a grid of work groups. Code written against this interface can
+ * run a simulation step on the GPU or, where no GPU is available, on
+ * the CPU.
+ * 
+ * @author codex
+ * @see codex.jmecompute.opengl.GLComputeShader
+ * @see codex.jmecompute.cpu.CpuComputeShader
+ */
+public interface ComputeBackend {
+    
+    /**
+     * Executes this program.
+     * <p>
+     * The number of global invocations is the number of work groups on
+     * each axis multiplied by the local work group size.
+     * 
+     * @param x number of work groups on the X axis
+     * @param y number of work groups on the Y axis
+     * @param z number of work groups on the Z axis
+     */
+    public void execute(int x, int y, int z);
+    
+    /**
+     * Executes this program once per element.
+     * 
+     * @param nx number of elements on the X axis
+     * @param ny number of elements on the Y axis
+     * @param nz number of elements on the Z axis
+     */
+    public void executeElements(int nx, int ny, int nz);
+    
+    public void set(ComputeUniform uniform);
+    
+    public void set(String name, VarType type, Object value);
+    
+    public void set(String name, Object value);
+    
+    public void setFloat(String name, float value);
+    
+    public void setInt(String name, int value);
+    
+    public void setBoolean(String name, boolean value);
+    
+    public void setVector2(String name, float x, float y);
+    
+    public void setVector3(String name, float x, float y, float z);
+    
+    public void setVector4(String name, float x, float y, float z, float w);
+    
+    public void setDefine(String name, Object value);
+    
+    public void setBuffer(String name, ComputeBuffer buffer);
+    
+    public ComputeBuffer getBuffer(String name);
+    
+    public <T> T get(String name);
+    
+    public boolean exists(String name);
+    
+    public String getName();
+    
+}
@@ -0,0 +1,30 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package codex.jmecompute.cpu;
+
+/**
+ * Java compute kernel, invoked once per global invocation.
+ * <p>
+ * Invocations run concurrently on multiple threads. Kernels must only
+ * read parameters and must write buffers with absolute accessors
+ * ({@code putFloat(index, value)}, etc.) at indices no other invocation
+ * writes.
+ * 
+ * @author codex
+ */
+@FunctionalInterface
+public interface ComputeKernel {
+    
+    /**
+     * Executes one invocation.
+     * 
+     * @param shader shader holding the parameters
+     * @param x global invocation id on the X axis
+     * @param y global invocation id on the Y axis
+     * @param z global invocation id on the Z axis
+     */
+    public void invoke(CpuComputeShader shader, int x, int y, int z);
+    
+}
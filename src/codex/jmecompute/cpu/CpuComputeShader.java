@@ -0,0 +1,391 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package codex.jmecompute.cpu;
+
+import codex.jmecompute.ComputeBackend;
+import codex.jmecompute.opengl.ComputeBuffer;
+import codex.jmecompute.opengl.ComputeDefine;
+import codex.jmecompute.opengl.ComputeUniform;
+import com.jme3.shader.VarType;
+import java.util.HashMap;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Executes a Java {@link ComputeKernel} in parallel on the CPU.
+ * <p>
+ * Work groups are the unit of parallelism: the grid of work groups is
+ * recursively split into ranges which are executed by a {@link ForkJoinPool},
+ * so idle threads steal work from busy ones. Within a work group, invocations
+ * run sequentially in x, y, z order, so a work group is a cache friendly tile.
+ * <p>
+ * No OpenGL context is needed. Storage buffers should be created with
+ * {@link ComputeBuffer#createClient(int)}.
+ * 
+ * @author codex
+ */
+public class CpuComputeShader implements ComputeBackend {
+    
+    /**
+     * Default local work group size.
+     */
+    public static final int[] DEFAULT_LOCAL_SIZE = {64, 1, 1};
+    
+    private final String name;
+    private final ComputeKernel kernel;
+    private final HashMap<String, ComputeUniform> uniforms = new HashMap<>();
+    private final TreeMap<String, ComputeDefine> defines = new TreeMap<>();
+    private final HashMap<String, ComputeBuffer> buffers = new HashMap<>();
+    private final int[] localSize = DEFAULT_LOCAL_SIZE.clone();
+    private final int[] extent = new int[3];
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+    private boolean failOnMiss = false;
+    
+    /**
+     * 
+     * @param name
+     * @param kernel
+     */
+    public CpuComputeShader(String name, ComputeKernel kernel) {
+        if (kernel == null) {
+            throw new NullPointerException("Kernel cannot be null.");
+        }
+        this.name = name;
+        this.kernel = kernel;
+    }
+    
+    @Override
+    public void execute(int x, int y, int z) {
+        dispatch(x, y, z, x * localSize[0], y * localSize[1], z * localSize[2]);
+    }
+    
+    /**
+     * Executes the kernel once per element.
+     * <p>
+     * Work groups on the edge of the extent are clipped, so the kernel
+     * is never invoked outside of it.
+     * 
+     * @param nx number of elements on the X axis
+     * @param ny number of elements on the Y axis
+     * @param nz number of elements on the Z axis
+     */
+    @Override
+    public void executeElements(int nx, int ny, int nz) {
+        dispatch(groups(nx, localSize[0]), groups(ny, localSize[1]), groups(nz, localSize[2]), nx, ny, nz);
+    }
+    private static int groups(int elements, int localSize) {
+        return (elements + localSize - 1) / localSize;
+    }
+    private void dispatch(int x, int y, int z, int nx, int ny, int nz) {
+        if (x < 0 || y < 0 || z < 0) {
+            throw new IllegalArgumentException("Work group counts cannot be negative.");
+        }
+        long total = (long)x * y * z;
+        if (total == 0) {
+            return;
+        }
+        updateParameterDefines();
+        extent[0] = nx;
+        extent[1] = ny;
+        extent[2] = nz;
+        // several ranges per thread so stolen work evens out uneven kernels
+        long grain = Math.max(1, total / ((long)pool.getParallelism() << 3));
+        pool.invoke(new TileTask(0, total, grain, x, y));
+    }
+    private void updateParameterDefines() {
+        for (ComputeDefine d : defines.values()) if (d.paramName != null) {
+            ComputeUniform u = uniforms.get(d.paramName);
+            if (u != null) {
+                d.setValue(u.getValue());
+            }
+        }
+    }
+    private void executeGroup(int gx, int gy, int gz) {
+        int x0 = gx * localSize[0], y0 = gy * localSize[1], z0 = gz * localSize[2];
+        int x1 = Math.min(x0 + localSize[0], extent[0]);
+        int y1 = Math.min(y0 + localSize[1], extent[1]);
+        int z1 = Math.min(z0 + localSize[2], extent[2]);
+        for (int k = z0; k < z1; k++) {
+            for (int j = y0; j < y1; j++) {
+                for (int i = x0; i < x1; i++) {
+                    kernel.invoke(this, i, j, k);
+                }
+            }
+        }
+    }
+    
+    private ComputeUniform getUniform(String name, VarType type) {
+        ComputeUniform u = uniforms.get(name);
+        if (u == null) {
+            if (failOnMiss) {
+                throw new NullPointerException("Uniform[name:"+name+", type:"+type+"] does not exist.");
+            }
+            u = new ComputeUniform(name, type);
+            uniforms.put(name, u);
+        }
+        return u;
+    }
+    
+    /**
+     * Gets the uniform at the name.
+     * <p>
+     * Kernels should look up uniforms once and keep the returned
+     * object rather than looking them up per invocation.
+     * 
+     * @param name
+     * @return 
+     */
+    public ComputeUniform getUniform(String name) {
+        ComputeUniform u = uniforms.get(name);
+        if (u == null) {
+            throw new NullPointerException("Uniform \""+name+"\" does not exist.");
+        }
+        return u;
+    }
+    
+    @Override
+    public void set(ComputeUniform uniform) {
+        uniforms.put(uniform.getName(), uniform);
+    }
+    
+    @Override
+    public void set(String name, VarType type, Object value) {
+        getUniform(name, type).setValue(type, value);
+    }
+    
+    @Override
+    public void set(String name, Object value) {
+        getUniform(name).setValue(value);
+    }
+    
+    @Override
+    public void setFloat(String name, float value) {
+        getUniform(name, VarType.Float).setFloat(value);
+    }
+    
+    @Override
+    public void setInt(String name, int value) {
+        getUniform(name, VarType.Int).setInt(value);
+    }
+    
+    @Override
+    public void setBoolean(String name, boolean value) {
+        getUniform(name, VarType.Boolean).setBoolean(value);
+    }
+    
+    @Override
+    public void setVector2(String name, float x, float y) {
+        getUniform(name, VarType.Vector2).setVector2(x, y);
+    }
+    
+    @Override
+    public void setVector3(String name, float x, float y, float z) {
+        getUniform(name, VarType.Vector3).setVector3(x, y, z);
+    }
+    
+    @Override
+    public void setVector4(String name, float x, float y, float z, float w) {
+        getUniform(name, VarType.Vector4).setVector4(x, y, z, w);
+    }
+    
+    /**
+     * 
+     * @param define
+     */
+    public void setDefine(ComputeDefine define) {
+        defines.put(define.defineName, define);
+    }
+    
+    @Override
+    public void setDefine(String name, Object value) {
+        ComputeDefine d = defines.get(name);
+        if (d == null) {
+            if (failOnMiss) {
+                throw new NullPointerException("Define \""+name+"\" does not exist.");
+            }
+            d = new ComputeDefine(name);
+            defines.put(name, d);
+        }
+        d.setValue(value);
+    }
+    
+    /**
+     * Sets the storage buffer at the name.
+     * <p>
+     * The buffer is accessed through {@link ComputeBuffer#getMapped()}, so
+     * it should be a client buffer or a buffer that is persistently mapped.
+     * 
+     * @param name
+     * @param buffer buffer, or null to remove
+     */
+    @Override
+    public void setBuffer(String name, ComputeBuffer buffer) {
+        if (buffer == null) {
+            buffers.remove(name);
+        } else {
+            buffers.put(name, buffer);
+        }
+    }
+    
+    /**
+     * Sets the local work group size.
+     * <p>
+     * Default is {@link #DEFAULT_LOCAL_SIZE}.
+     * 
+     * @param x
+     * @param y
+     * @param z
+     */
+    public void setLocalSize(int x, int y, int z) {
+        if (x <= 0 || y <= 0 || z <= 0) {
+            throw new IllegalArgumentException("Local size must be positive.");
+        }
+        localSize[0] = x;
+        localSize[1] = y;
+        localSize[2] = z;
+    }
+    
+    /**
+     * Sets the pool kernels are executed by.
+     * <p>
+     * Default is the common pool.
+     * 
+     * @param pool
+     */
+    public void setPool(ForkJoinPool pool) {
+        if (pool == null) {
+            throw new NullPointerException("Pool cannot be null.");
+        }
+        this.pool = pool;
+    }
+    
+    /**
+     * Sets this as failOnMiss, so references to non-existent
+     * uniforms or defines will throw exceptions instead of
+     * creating new uniforms and defines.
+     * 
+     * @param failOnMiss
+     */
+    public void setFailOnMiss(boolean failOnMiss) {
+        this.failOnMiss = failOnMiss;
+    }
+    
+    @Override
+    public ComputeBuffer getBuffer(String name) {
+        return buffers.get(name);
+    }
+    
+    @Override
+    public <T> T get(String name) {
+        return (T)getUniform(name).getValue();
+    }
+    
+    /**
+     * Gets the value of the define at the name.
+     * 
+     * @param name
+     * @return value, or null if not defined
+     */
+    public Object getDefine(String name) {
+        ComputeDefine d = defines.get(name);
+        return d != null && d.isEnabled() ? d.getValue() : null;
+    }
+    
+    /**
+     * Returns true if the define at the name is enabled.
+     * 
+     * @param name
+     * @return 
+     */
+    public boolean isDefined(String name) {
+        ComputeDefine d = defines.get(name);
+        return d != null && d.isEnabled();
+    }
+    
+    @Override
+    public boolean exists(String name) {
+        return uniforms.containsKey(name);
+    }
+    
+    /**
+     * Gets the number of invocations on the axis of the current execution.
+     * <p>
+     * Equivalent to the {@code g_Extent} uniform of OpenGL shaders.
+     * 
+     * @param axis 0 for X, 1 for Y, 2 for Z
+     * @return 
+     */
+    public int getExtent(int axis) {
+        return extent[axis];
+    }
+    
+    /**
+     * Gets the local work group size on the axis.
+     * 
+     * @param axis 0 for X, 1 for Y, 2 for Z
+     * @return 
+     */
+    public int getLocalSize(int axis) {
+        return localSize[axis];
+    }
+    
+    /**
+     * Gets the pool kernels are executed by.
+     * 
+     * @return 
+     */
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+    
+    /**
+     * 
+     * @return 
+     */
+    public boolean isFailOnMiss() {
+        return failOnMiss;
+    }
+    
+    @Override
+    public String getName() {
+        return name;
+    }
+    
+    /**
+     * Executes a range of linear work group indices, splitting it
+     * while it is larger than the grain.
+     */
+    private class TileTask extends RecursiveAction {
+        
+        private final long start, end, grain;
+        private final int groupsX, groupsY;
+        
+        public TileTask(long start, long end, long grain, int groupsX, int groupsY) {
+            this.start = start;
+            this.end = end;
+            this.grain = grain;
+            this.groupsX = groupsX;
+            this.groupsY = groupsY;
+        }
+        
+        @Override
+        protected void compute() {
+            if (end - start > grain) {
+                long mid = (start + end) >>> 1;
+                invokeAll(new TileTask(start, mid, grain, groupsX, groupsY),
+                          new TileTask(mid, end, grain, groupsX, groupsY));
+                return;
+            }
+            long layer = (long)groupsX * groupsY;
+            for (long g = start; g < end; g++) {
+                long r = g % layer;
+                executeGroup((int)(r % groupsX), (int)(r / groupsX), (int)(g / layer));
+            }
+        }
+    
+    }
+    
+}
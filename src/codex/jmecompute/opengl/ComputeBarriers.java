@@ -0,0 +1,227 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package codex.jmecompute.opengl;
+
+import com.jme3.texture.Texture;
+import java.util.Arrays;
+import static org.lwjgl.opengl.GL43.*;
+
+/**
+ * Tracks writes made by compute dispatches and issues memory barriers
+ * only when, and only with the bits that, a later consumer requires.
+ * <p>
+ * Each dispatch that writes resources advances an epoch, and each written
+ * resource remembers the epoch of its last write. Since barriers are global,
+ * issuing a barrier bit makes every write up to the current epoch visible
+ * to consumers of that bit. Independent dispatches therefore issue no
+ * barriers at all.
+ * <p>
+ * Reads by dispatches are tracked the same way, so a dispatch writing a
+ * resource that an earlier dispatch read waits for that read (write-after-read).
+ * <p>
+ * Consumers outside of compute shaders, such as materials sampling a texture
+ * written by a compute shader, must call {@link #require(Texture, int)} (or
+ * {@link #flush(int)}) before use. Reads outside of compute shaders are not
+ * tracked: before a dispatch writes a resource that was used elsewhere since
+ * the last dispatch, call {@link #issue(int)} with the bits of that write.
+ * <p>
+ * Barriers are tracked per thread, since OpenGL contexts are current per thread.
+ * 
+ * @author codex
+ */
+public class ComputeBarriers {
+    
+    private static final ThreadLocal<ComputeBarriers> CURRENT = ThreadLocal.withInitial(ComputeBarriers::new);
+    
+    private final long[] barrierEpochs = new long[Integer.SIZE];
+    private long[] textureEpochs = new long[64];
+    private long[] textureReadEpochs = new long[64];
+    private long epoch = 0;
+    private long issued = 0;
+    
+    /**
+     * Gets the barrier tracker of the calling thread.
+     * 
+     * @return 
+     */
+    public static ComputeBarriers get() {
+        return CURRENT.get();
+    }
+    
+    /**
+     * Begins a new write epoch. Called before marking the writes of a dispatch.
+     */
+    public void nextEpoch() {
+        epoch++;
+    }
+    
+    /**
+     * Records that the texture was written in the current epoch.
+     * 
+     * @param textureId OpenGL texture id
+     */
+    public void markTextureWritten(int textureId) {
+        ensureTextureCapacity(textureId);
+        textureEpochs[textureId] = epoch;
+    }
+    
+    /**
+     * Records that the texture was read in the current epoch.
+     * 
+     * @param textureId OpenGL texture id
+     */
+    public void markTextureRead(int textureId) {
+        ensureTextureCapacity(textureId);
+        textureReadEpochs[textureId] = epoch;
+    }
+    
+    private void ensureTextureCapacity(int textureId) {
+        if (textureId >= textureEpochs.length) {
+            int length = Math.max(textureId + 1, textureEpochs.length << 1);
+            textureEpochs = Arrays.copyOf(textureEpochs, length);
+            textureReadEpochs = Arrays.copyOf(textureReadEpochs, length);
+        }
+    }
+    
+    /**
+     * Records that the buffer was written in the current epoch.
+     * 
+     * @param buffer 
+     */
+    public void markWritten(ComputeBuffer buffer) {
+        buffer.setWriteEpoch(epoch);
+    }
+    
+    /**
+     * Records that the buffer was read in the current epoch.
+     * 
+     * @param buffer 
+     */
+    public void markRead(ComputeBuffer buffer) {
+        buffer.setReadEpoch(epoch);
+    }
+    
+    /**
+     * Gets the subset of barrier bits not yet issued since the texture was last written.
+     * 
+     * @param textureId OpenGL texture id
+     * @param bits barrier bits the consumer requires
+     * @return bits that must be issued
+     */
+    public int getRequiredForTexture(int textureId, int bits) {
+        if (textureId < 0 || textureId >= textureEpochs.length) {
+            return 0;
+        }
+        return getRequired(textureEpochs[textureId], bits);
+    }
+    
+    /**
+     * Gets the subset of barrier bits not yet issued since the texture was last
+     * read or written.
+     * 
+     * @param textureId OpenGL texture id
+     * @param bits barrier bits describing how the texture will be written
+     * @return bits that must be issued
+     */
+    public int getRequiredForTextureWrite(int textureId, int bits) {
+        if (textureId < 0 || textureId >= textureEpochs.length) {
+            return 0;
+        }
+        return getRequired(Math.max(textureEpochs[textureId], textureReadEpochs[textureId]), bits);
+    }
+    
+    /**
+     * Gets the subset of barrier bits not yet issued since the buffer was last written.
+     * 
+     * @param buffer
+     * @param bits barrier bits the consumer requires
+     * @return bits that must be issued
+     */
+    public int getRequired(ComputeBuffer buffer, int bits) {
+        return getRequired(buffer.getWriteEpoch(), bits);
+    }
+    
+    /**
+     * Gets the subset of barrier bits not yet issued since the buffer was last
+     * read or written.
+     * 
+     * @param buffer
+     * @param bits barrier bits describing how the buffer will be written
+     * @return bits that must be issued
+     */
+    public int getRequiredForWrite(ComputeBuffer buffer, int bits) {
+        return getRequired(Math.max(buffer.getWriteEpoch(), buffer.getReadEpoch()), bits);
+    }
+    
+    private int getRequired(long writeEpoch, int bits) {
+        if (writeEpoch == 0) {
+            return 0;
+        }
+        int required = 0;
+        for (int b = bits; b != 0; b &= b - 1) {
+            int i = Integer.numberOfTrailingZeros(b);
+            if (barrierEpochs[i] < writeEpoch) {
+                required |= 1 << i;
+            }
+        }
+        return required;
+    }
+    
+    /**
+     * Issues a memory barrier with the bits, if any.
+     * 
+     * @param bits 
+     */
+    public void issue(int bits) {
+        if (bits == 0) {
+            return;
+        }
+        glMemoryBarrier(bits);
+        ComputeMetrics.get().barriers.increment();
+        issued++;
+        for (int b = bits; b != 0; b &= b - 1) {
+            barrierEpochs[Integer.numberOfTrailingZeros(b)] = epoch;
+        }
+    }
+    
+    /**
+     * Issues the barrier bits required before the texture is consumed.
+     * 
+     * @param texture
+     * @param bits barrier bits describing how the texture will be consumed
+     */
+    public void require(Texture texture, int bits) {
+        issue(getRequiredForTexture(texture.getImage().getId(), bits));
+    }
+    
+    /**
+     * Issues the barrier bits required before the buffer is consumed.
+     * 
+     * @param buffer
+     * @param bits barrier bits describing how the buffer will be consumed
+     */
+    public void require(ComputeBuffer buffer, int bits) {
+        issue(getRequired(buffer, bits));
+    }
+    
+    /**
+     * Issues the barrier bits not yet issued since the latest write to any resource.
+     * 
+     * @param bits 
+     */
+    public void flush(int bits) {
+        issue(getRequired(epoch, bits));
+    }
+    
+    /**
+     * Gets the number of barriers issued on this thread.
+     * 
+     * @return 
+     */
+    public long getIssued() {
+        return issued;
+    }
+    
+}
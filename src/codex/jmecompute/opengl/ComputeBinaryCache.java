@@ -0,0 +1,220 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package codex.jmecompute.opengl;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.lwjgl.BufferUtils;
+import static org.lwjgl.opengl.GL43.*;
+
+/**
+ * Stores linked program binaries on disk so that later runs can skip
+ * compiling from source.
+ * <p>
+ * Binaries are keyed by a hash of the fully assembled source and the
+ * vendor, renderer and version strings of the OpenGL context. Binaries
+ * rejected by the driver (for example after a driver update) are deleted
+ * and the shader is compiled from source instead.
+ * <p>
+ * All methods must be called on the rendering thread.
+ * 
+ * @author codex
+ */
+public class ComputeBinaryCache {
+    
+    private static final Logger LOG = Logger.getLogger(ComputeBinaryCache.class.getName());
+    private static final int MAGIC = 0x4A4D4342;
+    private static final String EXTENSION = ".bin";
+    
+    private final File directory;
+    private final IntBuffer intBuf = BufferUtils.createIntBuffer(1);
+    private final IntBuffer formatBuf = BufferUtils.createIntBuffer(1);
+    private String device;
+    private long hits = 0, misses = 0, rejected = 0, stored = 0;
+    
+    public ComputeBinaryCache(File directory) {
+        this.directory = directory;
+    }
+    
+    /**
+     * Creates a program from the binary cached for the source.
+     * 
+     * @param source fully assembled shader source
+     * @return linked program, or zero if no valid binary is cached
+     */
+    public int load(String source) {
+        File file = getFile(source);
+        if (!file.isFile()) {
+            misses++;
+            return 0;
+        }
+        int format;
+        ByteBuffer binary;
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Unrecognized program binary header.");
+            }
+            format = in.readInt();
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            binary = BufferUtils.createByteBuffer(bytes.length);
+            binary.put(bytes).flip();
+        } catch (IOException ex) {
+            LOG.log(Level.WARNING, "Failed to read program binary "+file, ex);
+            reject(file);
+            return 0;
+        }
+        int program = glCreateProgram();
+        glProgramBinary(program, format, binary);
+        glGetProgramiv(program, GL_LINK_STATUS, intBuf);
+        if (intBuf.get(0) == GL_FALSE) {
+            glDeleteProgram(program);
+            reject(file);
+            return 0;
+        }
+        hits++;
+        return program;
+    }
+    
+    /**
+     * Writes the binary of the linked program to the cache.
+     * <p>
+     * The program should have been linked with
+     * {@code GL_PROGRAM_BINARY_RETRIEVABLE_HINT} enabled.
+     * 
+     * @param source fully assembled shader source the program was compiled from
+     * @param program linked program
+     */
+    public void store(String source, int program) {
+        glGetProgramiv(program, GL_PROGRAM_BINARY_LENGTH, intBuf);
+        int length = intBuf.get(0);
+        if (length <= 0) {
+            return;
+        }
+        ByteBuffer binary = BufferUtils.createByteBuffer(length);
+        glGetProgramBinary(program, intBuf, formatBuf, binary);
+        byte[] bytes = new byte[intBuf.get(0)];
+        binary.get(bytes);
+        File file = getFile(source);
+        File temp = new File(directory, file.getName()+".tmp");
+        try {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Unable to create cache directory "+directory);
+            }
+            try (DataOutputStream out = new DataOutputStream(new FileOutputStream(temp))) {
+                out.writeInt(MAGIC);
+                out.writeInt(formatBuf.get(0));
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+            if (!temp.renameTo(file)) {
+                file.delete();
+                if (!temp.renameTo(file)) {
+                    throw new IOException("Unable to move "+temp+" to "+file);
+                }
+            }
+            stored++;
+        } catch (IOException ex) {
+            LOG.log(Level.WARNING, "Failed to write program binary "+file, ex);
+            temp.delete();
+        }
+    }
+    
+    /**
+     * Deletes all binaries in the cache directory.
+     */
+    public void clear() {
+        File[] files = directory.listFiles((dir, n) -> n.endsWith(EXTENSION));
+        if (files != null) for (File f : files) {
+            f.delete();
+        }
+    }
+    
+    private void reject(File file) {
+        misses++;
+        rejected++;
+        file.delete();
+    }
+    private File getFile(String source) {
+        return new File(directory, hash(getDevice() + '\n' + source) + EXTENSION);
+    }
+    private String getDevice() {
+        if (device == null) {
+            device = glGetString(GL_VENDOR) + '|' + glGetString(GL_RENDERER) + '|' + glGetString(GL_VERSION);
+        }
+        return device;
+    }
+    private static String hash(String string) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(string.getBytes(StandardCharsets.UTF_8));
+            StringBuilder builder = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                builder.append(Character.forDigit((b >> 4) & 0xf, 16))
+                       .append(Character.forDigit(b & 0xf, 16));
+            }
+            return builder.toString();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not available.", ex);
+        }
+    }
+    
+    /**
+     * Gets the directory binaries are stored in.
+     * 
+     * @return 
+     */
+    public File getDirectory() {
+        return directory;
+    }
+    
+    /**
+     * Gets the number of programs created from cached binaries.
+     * 
+     * @return 
+     */
+    public long getHits() {
+        return hits;
+    }
+    
+    /**
+     * Gets the number of lookups that required compiling from source,
+     * including rejected binaries.
+     * 
+     * @return 
+     */
+    public long getMisses() {
+        return misses;
+    }
+    
+    /**
+     * Gets the number of cached binaries rejected by the driver or unreadable.
+     * 
+     * @return 
+     */
+    public long getRejected() {
+        return rejected;
+    }
+    
+    /**
+     * Gets the number of binaries written to the cache.
+     * 
+     * @return 
+     */
+    public long getStored() {
+        return stored;
+    }
+    
+}
@@ -0,0 +1,337 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package codex.jmecompute.opengl;
+
+import java.nio.ByteBuffer;
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GLCapabilities;
+import static org.lwjgl.opengl.GL43.*;
+import static org.lwjgl.opengl.GL44.GL_DYNAMIC_STORAGE_BIT;
+import static org.lwjgl.opengl.GL44.GL_MAP_COHERENT_BIT;
+import static org.lwjgl.opengl.GL44.GL_MAP_PERSISTENT_BIT;
+import static org.lwjgl.opengl.GL44.glBufferStorage;
+
+/**
+ * Shader storage buffer usable by compute shaders.
+ * <p>
+ * Where supported, storage is immutable ({@code glBufferStorage}) and
+ * persistently mapped with coherent access, so writes to {@link #getMapped()}
+ * reach the GPU without any copy. Otherwise, the mapped buffer is a client-side
+ * copy which is uploaded on {@link #flush()}.
+ * <p>
+ * Persistent mappings are not synchronized with the GPU. Do not write regions
+ * that dispatches still in flight may be reading.
+ * <p>
+ * The capacity is fixed unless the buffer is made growable, in which case
+ * {@link #reserve(int)} reallocates and copies the contents. Reallocations
+ * are counted so unexpected growth can be detected.
+ * 
+ * @author codex
+ */
+public class ComputeBuffer {
+    
+    private final boolean persistent;
+    private boolean client = false;
+    private int id = -1;
+    private int capacity;
+    private int dirtyStart, dirtyEnd;
+    private ByteBuffer mapped;
+    private boolean immutable = false;
+    private boolean growable = false;
+    private int reallocations = 0;
+    private long writeEpoch = 0;
+    private long readEpoch = 0;
+    
+    /**
+     * Creates a persistently mapped buffer.
+     * 
+     * @param capacity capacity in bytes
+     */
+    public ComputeBuffer(int capacity) {
+        this(capacity, true);
+    }
+    
+    /**
+     * 
+     * @param capacity capacity in bytes
+     * @param persistent true to persistently map the buffer where supported
+     */
+    public ComputeBuffer(int capacity, boolean persistent) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Buffer capacity must be positive.");
+        }
+        this.capacity = capacity;
+        this.persistent = persistent;
+        clearDirty();
+    }
+    
+    /**
+     * Creates a buffer which only exists in client memory.
+     * <p>
+     * Client buffers never allocate OpenGL storage, so they can be used
+     * without a context, for example by {@link codex.jmecompute.cpu.CpuComputeShader}.
+     * They cannot be bound to OpenGL.
+     * 
+     * @param capacity capacity in bytes
+     * @return 
+     */
+    public static ComputeBuffer createClient(int capacity) {
+        ComputeBuffer b = new ComputeBuffer(capacity, false);
+        b.client = true;
+        return b;
+    }
+    
+    /**
+     * Allocates the OpenGL buffer if not already allocated.
+     * <p>
+     * Must be called on the rendering thread.
+     */
+    public void initialize() {
+        if (client) {
+            if (mapped == null) {
+                mapped = BufferUtils.createByteBuffer(capacity);
+            }
+        } else if (id < 0) {
+            allocate(capacity);
+        }
+    }
+    private void allocate(int size) {
+        GLCapabilities glCaps = GL.getCapabilities();
+        immutable = glCaps.OpenGL44 || glCaps.GL_ARB_buffer_storage;
+        id = glGenBuffers();
+        glBindBuffer(GL_SHADER_STORAGE_BUFFER, id);
+        if (immutable && persistent) {
+            int flags = GL_MAP_WRITE_BIT | GL_MAP_READ_BIT | GL_MAP_PERSISTENT_BIT | GL_MAP_COHERENT_BIT;
+            glBufferStorage(GL_SHADER_STORAGE_BUFFER, size, flags);
+            mapped = glMapBufferRange(GL_SHADER_STORAGE_BUFFER, 0, size, flags, null);
+        } else {
+            if (immutable) {
+                glBufferStorage(GL_SHADER_STORAGE_BUFFER, size, GL_DYNAMIC_STORAGE_BIT);
+            } else {
+                glBufferData(GL_SHADER_STORAGE_BUFFER, size, GL_DYNAMIC_DRAW);
+            }
+            mapped = BufferUtils.createByteBuffer(size);
+        }
+        glBindBuffer(GL_SHADER_STORAGE_BUFFER, 0);
+    }
+    
+    /**
+     * Ensures the buffer can hold at least the given number of bytes.
+     * <p>
+     * If the buffer is not growable and the capacity is insufficient, an
+     * exception is thrown. Otherwise, the capacity is at least doubled and
+     * the existing contents are copied to the new storage.
+     * 
+     * @param bytes 
+     */
+    public void reserve(int bytes) {
+        if (bytes <= capacity) {
+            return;
+        }
+        if (!growable) {
+            throw new IllegalStateException("Buffer capacity of "+capacity+" bytes cannot hold "+bytes+" bytes.");
+        }
+        int size = Math.max(bytes, capacity << 1);
+        if (client && mapped != null) {
+            ByteBuffer oldMapped = mapped;
+            mapped = BufferUtils.createByteBuffer(size);
+            oldMapped.clear();
+            mapped.put(oldMapped).clear();
+            capacity = size;
+            reallocations++;
+            return;
+        }
+        if (id < 0) {
+            capacity = size;
+            return;
+        }
+        int oldId = id;
+        ByteBuffer oldMapped = mapped;
+        boolean oldMappedPersistent = immutable && persistent;
+        allocate(size);
+        glBindBuffer(GL_COPY_READ_BUFFER, oldId);
+        glBindBuffer(GL_COPY_WRITE_BUFFER, id);
+        glCopyBufferSubData(GL_COPY_READ_BUFFER, GL_COPY_WRITE_BUFFER, 0, 0, capacity);
+        if (oldMappedPersistent) {
+            glUnmapBuffer(GL_COPY_READ_BUFFER);
+        } else {
+            oldMapped.clear();
+            mapped.put(oldMapped).clear();
+        }
+        glBindBuffer(GL_COPY_READ_BUFFER, 0);
+        glBindBuffer(GL_COPY_WRITE_BUFFER, 0);
+        glDeleteBuffers(oldId);
+        capacity = size;
+        reallocations++;
+    }
+    
+    /**
+     * Marks a range of the mapped buffer as modified.
+     * <p>
+     * Only needed when the buffer is not persistently mapped.
+     * 
+     * @param offset byte offset
+     * @param length number of bytes
+     */
+    public void markDirty(int offset, int length) {
+        dirtyStart = Math.min(dirtyStart, offset);
+        dirtyEnd = Math.max(dirtyEnd, offset + length);
+    }
+    
+    /**
+     * Makes writes to the mapped buffer visible to the GPU.
+     * <p>
+     * Persistent coherent mappings need no flushing; otherwise the dirty
+     * range (or the whole buffer, if no range was marked) is uploaded.
+     */
+    public void flush() {
+        initialize();
+        if (client || isPersistent()) {
+            return;
+        }
+        int start = dirtyStart, end = dirtyEnd;
+        if (start >= end) {
+            start = 0;
+            end = capacity;
+        }
+        ByteBuffer range = mapped.duplicate();
+        range.limit(end).position(start);
+        glBindBuffer(GL_SHADER_STORAGE_BUFFER, id);
+        glBufferSubData(GL_SHADER_STORAGE_BUFFER, start, range);
+        ComputeMetrics.get().bytesUploaded.add(end - start);
+        glBindBuffer(GL_SHADER_STORAGE_BUFFER, 0);
+        clearDirty();
+    }
+    private void clearDirty() {
+        dirtyStart = Integer.MAX_VALUE;
+        dirtyEnd = 0;
+    }
+    
+    /**
+     * Binds this buffer to the shader storage binding point.
+     * 
+     * @param binding 
+     */
+    public void bind(int binding) {
+        if (client) {
+            throw new IllegalStateException("Client buffers cannot be bound to OpenGL.");
+        }
+        initialize();
+        glBindBufferBase(GL_SHADER_STORAGE_BUFFER, binding, id);
+    }
+    
+    /**
+     * Unmaps and deletes the OpenGL buffer.
+     * <p>
+     * The buffer is allocated again if used afterwards.
+     */
+    public void delete() {
+        if (client) {
+            mapped = null;
+        } else if (id >= 0) {
+            if (isPersistent()) {
+                glBindBuffer(GL_SHADER_STORAGE_BUFFER, id);
+                glUnmapBuffer(GL_SHADER_STORAGE_BUFFER);
+                glBindBuffer(GL_SHADER_STORAGE_BUFFER, 0);
+            }
+            glDeleteBuffers(id);
+            id = -1;
+            mapped = null;
+        }
+    }
+    
+    void setWriteEpoch(long writeEpoch) {
+        this.writeEpoch = writeEpoch;
+    }
+    long getWriteEpoch() {
+        return writeEpoch;
+    }
+    void setReadEpoch(long readEpoch) {
+        this.readEpoch = readEpoch;
+    }
+    long getReadEpoch() {
+        return readEpoch;
+    }
+    
+    /**
+     * Sets whether {@link #reserve(int)} may reallocate this buffer.
+     * <p>
+     * Default is false.
+     * 
+     * @param growable 
+     */
+    public void setGrowable(boolean growable) {
+        this.growable = growable;
+    }
+    
+    /**
+     * Gets the mapped contents of this buffer, allocating it if necessary.
+     * <p>
+     * The returned buffer is replaced when this buffer is reallocated.
+     * 
+     * @return 
+     */
+    public ByteBuffer getMapped() {
+        initialize();
+        return mapped;
+    }
+    
+    /**
+     * Gets the OpenGL buffer id.
+     * 
+     * @return id, or -1 if not allocated
+     */
+    public int getId() {
+        return id;
+    }
+    
+    /**
+     * Gets the capacity in bytes.
+     * 
+     * @return 
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+    
+    /**
+     * Returns true if the buffer is allocated and persistently mapped.
+     * 
+     * @return 
+     */
+    public boolean isPersistent() {
+        return id >= 0 && immutable && persistent;
+    }
+    
+    /**
+     * Returns true if this buffer may be reallocated by {@link #reserve(int)}.
+     * 
+     * @return 
+     */
+    public boolean isGrowable() {
+        return growable;
+    }
+    
+    /**
+     * Returns true if this buffer only exists in client memory.
+     * 
+     * @return 
+     * @see #createClient(int)
+     */
+    public boolean isClient() {
+        return client;
+    }
+    
+    /**
+     * Gets the number of times this buffer has been reallocated.
+     * 
+     * @return 
+     */
+    public int getReallocations() {
+        return reallocations;
+    }
+    
+}
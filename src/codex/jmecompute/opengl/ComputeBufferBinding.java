@@ -0,0 +1,81 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package codex.jmecompute.opengl;
+
+/**
+ * Storage buffer parameter of a compute shader.
+ * 
+ * @author codex
+ */
+public class ComputeBufferBinding {
+    
+    private final String name;
+    private final int binding;
+    private ComputeBuffer buffer;
+    private ComputeResourceSet<? extends ComputeBuffer> source;
+    private int sourceOffset;
+    private boolean writable = true;
+    
+    /**
+     * 
+     * @param name name of the shader storage block
+     * @param binding binding index, or negative to use the binding declared in the shader
+     */
+    public ComputeBufferBinding(String name, int binding) {
+        this.name = name;
+        this.binding = binding;
+    }
+    
+    public void setBuffer(ComputeBuffer buffer) {
+        this.buffer = buffer;
+        this.source = null;
+    }
+    
+    /**
+     * Resolves the bound buffer from the resource set.
+     * <p>
+     * The bound buffer follows the set as it is swapped. Setting
+     * a buffer detaches the set.
+     * 
+     * @param source set of buffers
+     * @param offset offset from the set's current index
+     */
+    public void setSource(ComputeResourceSet<? extends ComputeBuffer> source, int offset) {
+        this.buffer = null;
+        this.source = source;
+        this.sourceOffset = offset;
+    }
+    
+    /**
+     * Sets whether dispatches may write to the buffer.
+     * <p>
+     * Read-only buffers never cause memory barriers. Default is true.
+     * 
+     * @param writable 
+     */
+    public void setWritable(boolean writable) {
+        this.writable = writable;
+    }
+    
+    public String getName() {
+        return name;
+    }
+    public int getBinding() {
+        return binding;
+    }
+    public ComputeBuffer getBuffer() {
+        return source != null ? source.get(sourceOffset) : buffer;
+    }
+    public ComputeResourceSet<? extends ComputeBuffer> getSource() {
+        return source;
+    }
+    public int getSourceOffset() {
+        return sourceOffset;
+    }
+    public boolean isWritable() {
+        return writable;
+    }
+    
+}
@@ -0,0 +1,360 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package codex.jmecompute.opengl;
+
+import com.jme3.renderer.Caps;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.function.Consumer;
+
+/**
+ * Records compute commands on any thread for replay on the rendering thread.
+ * <p>
+ * Commands are packed into a primitive int array, with objects (shaders,
+ * names, buffers) held in a parallel reference array, so recording allocates
+ * nothing once the arrays have grown to fit a frame's commands. Nothing is
+ * applied to shaders until the buffer is executed by a {@link ComputeCommandQueue}.
+ * <p>
+ * A buffer may only be recorded by one thread at a time, and must not be
+ * recorded while submitted. Once executed, it may be submitted again to
+ * replay the same commands, or {@link #reset() reset} and recorded anew.
+ * 
+ * @author codex
+ */
+public class ComputeCommandBuffer {
+    
+    private static final int SET_FLOAT = 0, SET_INT = 1, SET_BOOLEAN = 2, SET_VECTOR2 = 3,
+            SET_VECTOR3 = 4, SET_VECTOR4 = 5, SET_VALUE = 6, SET_DEFINE = 7, SET_BUFFER = 8,
+            DISPATCH = 9, DISPATCH_ELEMENTS = 10, DISPATCH_INDIRECT = 11, BARRIER = 12,
+            READ_BUFFER = 13, RUN = 14, SWAP = 15;
+    
+    private int[] ops;
+    private Object[] refs;
+    private int numOps = 0, numRefs = 0;
+    private volatile boolean submitted = false;
+    
+    public ComputeCommandBuffer() {
+        this(256);
+    }
+    
+    /**
+     * 
+     * @param capacity initial number of ints reserved for commands
+     */
+    public ComputeCommandBuffer(int capacity) {
+        ops = new int[Math.max(capacity, 16)];
+        refs = new Object[Math.max(capacity >> 2, 4)];
+    }
+    
+    /**
+     * Clears all recorded commands.
+     * 
+     * @throws IllegalStateException if submitted and not yet executed
+     */
+    public void reset() {
+        checkRecording();
+        Arrays.fill(refs, 0, numRefs, null);
+        numOps = 0;
+        numRefs = 0;
+    }
+    
+    public void setFloat(GLComputeShader shader, String name, float value) {
+        op(SET_FLOAT, shader, name, 1, 0);
+        ops[numOps++] = Float.floatToRawIntBits(value);
+    }
+    
+    public void setInt(GLComputeShader shader, String name, int value) {
+        op(SET_INT, shader, name, 1, 0);
+        ops[numOps++] = value;
+    }
+    
+    public void setBoolean(GLComputeShader shader, String name, boolean value) {
+        op(SET_BOOLEAN, shader, name, 1, 0);
+        ops[numOps++] = (value ? 1 : 0);
+    }
+    
+    public void setVector2(GLComputeShader shader, String name, float x, float y) {
+        op(SET_VECTOR2, shader, name, 2, 0);
+        ops[numOps++] = Float.floatToRawIntBits(x);
+        ops[numOps++] = Float.floatToRawIntBits(y);
+    }
+    
+    public void setVector3(GLComputeShader shader, String name, float x, float y, float z) {
+        op(SET_VECTOR3, shader, name, 3, 0);
+        ops[numOps++] = Float.floatToRawIntBits(x);
+        ops[numOps++] = Float.floatToRawIntBits(y);
+        ops[numOps++] = Float.floatToRawIntBits(z);
+    }
+    
+    public void setVector4(GLComputeShader shader, String name, float x, float y, float z, float w) {
+        op(SET_VECTOR4, shader, name, 4, 0);
+        ops[numOps++] = Float.floatToRawIntBits(x);
+        ops[numOps++] = Float.floatToRawIntBits(y);
+        ops[numOps++] = Float.floatToRawIntBits(z);
+        ops[numOps++] = Float.floatToRawIntBits(w);
+    }
+    
+    /**
+     * Records setting an object value, such as a texture or a matrix.
+     * <p>
+     * The value is referenced, not copied, so it must not be modified
+     * until the buffer has been executed.
+     * 
+     * @param shader
+     * @param name
+     * @param value
+     */
+    public void set(GLComputeShader shader, String name, Object value) {
+        op(SET_VALUE, shader, name, 0, 1);
+        refs[numRefs++] = value;
+    }
+    
+    public void setDefine(GLComputeShader shader, String name, Object value) {
+        op(SET_DEFINE, shader, name, 0, 1);
+        refs[numRefs++] = value;
+    }
+    
+    public void setBuffer(GLComputeShader shader, String name, ComputeBuffer buffer) {
+        op(SET_BUFFER, shader, name, 0, 1);
+        refs[numRefs++] = buffer;
+    }
+    
+    /**
+     * Records executing the shader.
+     * 
+     * @param shader
+     * @param x number of work groups on the X axis
+     * @param y number of work groups on the Y axis
+     * @param z number of work groups on the Z axis
+     * @see GLComputeShader#execute(GLTextureBinder, EnumSet, int, int, int)
+     */
+    public void dispatch(GLComputeShader shader, int x, int y, int z) {
+        op(DISPATCH, shader, null, 3, 0);
+        ops[numOps++] = x;
+        ops[numOps++] = y;
+        ops[numOps++] = z;
+    }
+    
+    /**
+     * Records executing the shader once per element.
+     * 
+     * @param shader
+     * @param nx number of elements on the X axis
+     * @param ny number of elements on the Y axis
+     * @param nz number of elements on the Z axis
+     * @see GLComputeShader#executeElements(GLTextureBinder, EnumSet, int, int, int)
+     */
+    public void dispatchElements(GLComputeShader shader, int nx, int ny, int nz) {
+        op(DISPATCH_ELEMENTS, shader, null, 3, 0);
+        ops[numOps++] = nx;
+        ops[numOps++] = ny;
+        ops[numOps++] = nz;
+    }
+    
+    /**
+     * Records executing the shader with work group counts read from the buffer.
+     * 
+     * @param shader
+     * @param indirect
+     * @param offset
+     * @see GLComputeShader#execute(GLTextureBinder, EnumSet, ComputeBuffer, long)
+     */
+    public void dispatchIndirect(GLComputeShader shader, ComputeBuffer indirect, long offset) {
+        op(DISPATCH_INDIRECT, shader, null, 2, 1);
+        refs[numRefs++] = indirect;
+        ops[numOps++] = (int)(offset >>> 32);
+        ops[numOps++] = (int)offset;
+    }
+    
+    /**
+     * Records issuing the barrier bits not yet issued since the latest write.
+     * 
+     * @param bits
+     * @see ComputeBarriers#flush(int)
+     */
+    public void barrier(int bits) {
+        reserve(2, 0);
+        ops[numOps++] = BARRIER;
+        ops[numOps++] = bits;
+    }
+    
+    /**
+     * Records reading the buffer back to the CPU.
+     * <p>
+     * The callback is invoked on the rendering thread once the data
+     * is available. It may be reused between recordings.
+     * 
+     * @param readback
+     * @param buffer
+     * @param offset
+     * @param length
+     * @param callback
+     * @see ComputeReadback#read(ComputeBuffer, int, int)
+     */
+    public void readback(ComputeReadback readback, ComputeBuffer buffer, int offset, int length,
+            Consumer<ByteBuffer> callback) {
+        reserve(3, 3);
+        ops[numOps++] = READ_BUFFER;
+        ops[numOps++] = offset;
+        ops[numOps++] = length;
+        refs[numRefs++] = readback;
+        refs[numRefs++] = buffer;
+        refs[numRefs++] = callback;
+    }
+    
+    /**
+     * Records swapping the resource set.
+     * <p>
+     * Sets must only be swapped on the rendering thread, since shaders
+     * resolve their resources when executed.
+     * 
+     * @param set
+     */
+    public void swap(ComputeResourceSet<?> set) {
+        reserve(1, 1);
+        ops[numOps++] = SWAP;
+        refs[numRefs++] = set;
+    }
+    
+    /**
+     * Records running arbitrary code on the rendering thread.
+     * 
+     * @param task
+     */
+    public void run(Runnable task) {
+        reserve(1, 1);
+        ops[numOps++] = RUN;
+        refs[numRefs++] = task;
+    }
+    
+    /**
+     * Replays all recorded commands in order.
+     * 
+     * @param texBind
+     * @param caps
+     */
+    void replay(GLTextureBinder texBind, EnumSet<Caps> caps) {
+        int o = 0, r = 0;
+        while (o < numOps) {
+            int op = ops[o++];
+            if (op == BARRIER) {
+                ComputeBarriers.get().flush(ops[o++]);
+                continue;
+            } else if (op == READ_BUFFER) {
+                int offset = ops[o++], length = ops[o++];
+                ComputeReadback rb = (ComputeReadback)refs[r++];
+                ComputeBuffer buffer = (ComputeBuffer)refs[r++];
+                rb.read(buffer, offset, length).thenAccept((Consumer<ByteBuffer>)refs[r++]);
+                continue;
+            } else if (op == RUN) {
+                ((Runnable)refs[r++]).run();
+                continue;
+            } else if (op == SWAP) {
+                ((ComputeResourceSet<?>)refs[r++]).swap();
+                continue;
+            }
+            GLComputeShader shader = (GLComputeShader)refs[r++];
+            String name = (String)refs[r++];
+            switch (op) {
+                case SET_FLOAT: shader.setFloat(name, Float.intBitsToFloat(ops[o++])); break;
+                case SET_INT: shader.setInt(name, ops[o++]); break;
+                case SET_BOOLEAN: shader.setBoolean(name, ops[o++] != 0); break;
+                case SET_VECTOR2:
+                    shader.setVector2(name, Float.intBitsToFloat(ops[o]), Float.intBitsToFloat(ops[o + 1]));
+                    o += 2;
+                    break;
+                case SET_VECTOR3:
+                    shader.setVector3(name, Float.intBitsToFloat(ops[o]), Float.intBitsToFloat(ops[o + 1]),
+                            Float.intBitsToFloat(ops[o + 2]));
+                    o += 3;
+                    break;
+                case SET_VECTOR4:
+                    shader.setVector4(name, Float.intBitsToFloat(ops[o]), Float.intBitsToFloat(ops[o + 1]),
+                            Float.intBitsToFloat(ops[o + 2]), Float.intBitsToFloat(ops[o + 3]));
+                    o += 4;
+                    break;
+                case SET_VALUE: shader.set(name, refs[r++]); break;
+                case SET_DEFINE: shader.setDefine(name, refs[r++]); break;
+                case SET_BUFFER: shader.setBuffer(name, (ComputeBuffer)refs[r++]); break;
+                case DISPATCH:
+                    shader.execute(texBind, caps, ops[o], ops[o + 1], ops[o + 2]);
+                    o += 3;
+                    break;
+                case DISPATCH_ELEMENTS:
+                    shader.executeElements(texBind, caps, ops[o], ops[o + 1], ops[o + 2]);
+                    o += 3;
+                    break;
+                case DISPATCH_INDIRECT:
+                    shader.execute(texBind, caps, (ComputeBuffer)refs[r++], ((long)ops[o] << 32) | (ops[o + 1] & 0xFFFFFFFFL));
+                    o += 2;
+                    break;
+                default: throw new IllegalStateException("Corrupt command buffer (opcode "+op+").");
+            }
+        }
+    }
+    
+    /**
+     * Begins a shader command.
+     * 
+     * @param op opcode
+     * @param shader
+     * @param name parameter name, or null
+     * @param ints number of int arguments following
+     * @param objects number of object arguments following
+     */
+    private void op(int op, GLComputeShader shader, String name, int ints, int objects) {
+        reserve(ints + 1, objects + 2);
+        ops[numOps++] = op;
+        refs[numRefs++] = shader;
+        refs[numRefs++] = name;
+    }
+    private void reserve(int ints, int objects) {
+        checkRecording();
+        if (numOps + ints > ops.length) {
+            ops = Arrays.copyOf(ops, Math.max(numOps + ints, ops.length << 1));
+        }
+        if (numRefs + objects > refs.length) {
+            refs = Arrays.copyOf(refs, Math.max(numRefs + objects, refs.length << 1));
+        }
+    }
+    private void checkRecording() {
+        if (submitted) {
+            throw new IllegalStateException("Cannot record to a submitted command buffer.");
+        }
+    }
+    
+    void setSubmitted(boolean submitted) {
+        this.submitted = submitted;
+    }
+    
+    /**
+     * Returns true if this buffer is waiting to be executed.
+     * 
+     * @return 
+     */
+    public boolean isSubmitted() {
+        return submitted;
+    }
+    
+    /**
+     * Returns true if no commands are recorded.
+     * 
+     * @return 
+     */
+    public boolean isEmpty() {
+        return numOps == 0;
+    }
+    
+    /**
+     * Gets the number of ints used by recorded commands.
+     * 
+     * @return 
+     */
+    public int getSize() {
+        return numOps;
+    }
+    
+}
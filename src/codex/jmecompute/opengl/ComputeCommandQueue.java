@@ -0,0 +1,102 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package codex.jmecompute.opengl;
+
+import com.jme3.renderer.Caps;
+import com.jme3.renderer.Renderer;
+import java.util.EnumSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Queue of command buffers submitted from any thread and executed
+ * in submission order on the rendering thread.
+ * <pre>{@code
+ * // worker thread
+ * commands.reset();
+ * commands.setFloat(shader, "Time", time);
+ * commands.dispatchElements(shader, width, height, 1);
+ * queue.submit(commands);
+ * 
+ * // rendering thread, every frame
+ * queue.execute(renderer);
+ * }</pre>
+ * 
+ * @author codex
+ */
+public class ComputeCommandQueue {
+    
+    private final ConcurrentLinkedQueue<ComputeCommandBuffer> pending = new ConcurrentLinkedQueue<>();
+    
+    /**
+     * Submits the command buffer for execution.
+     * <p>
+     * The buffer cannot be recorded or submitted again until it has been executed.
+     * May be called from any thread.
+     * 
+     * @param buffer
+     * @throws IllegalStateException if the buffer is already submitted
+     */
+    public void submit(ComputeCommandBuffer buffer) {
+        if (buffer.isSubmitted()) {
+            throw new IllegalStateException("Command buffer is already submitted.");
+        }
+        buffer.setSubmitted(true);
+        pending.add(buffer);
+    }
+    
+    /**
+     * Executes all submitted command buffers.
+     * 
+     * @param renderer
+     * @return number of buffers executed
+     */
+    public int execute(Renderer renderer) {
+        return execute(GLTextureBinder.useRenderer(renderer), renderer.getCaps());
+    }
+    
+    /**
+     * Executes all submitted command buffers.
+     * <p>
+     * Must be called on the thread owning the OpenGL context.
+     * 
+     * @param texBind
+     * @param caps
+     * @return number of buffers executed
+     */
+    public int execute(GLTextureBinder texBind, EnumSet<Caps> caps) {
+        int n = 0;
+        for (ComputeCommandBuffer b; (b = pending.poll()) != null; n++) {
+            try {
+                b.replay(texBind, caps);
+            } finally {
+                b.setSubmitted(false);
+            }
+        }
+        return n;
+    }
+    
+    /**
+     * Discards all submitted command buffers without executing them.
+     * 
+     * @return number of buffers discarded
+     */
+    public int clear() {
+        int n = 0;
+        for (ComputeCommandBuffer b; (b = pending.poll()) != null; n++) {
+            b.setSubmitted(false);
+        }
+        return n;
+    }
+    
+    /**
+     * Gets the number of buffers waiting to be executed.
+     * 
+     * @return 
+     */
+    public int getNumPending() {
+        return pending.size();
+    }
+    
+}
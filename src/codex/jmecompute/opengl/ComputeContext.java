@@ -0,0 +1,326 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package codex.jmecompute.opengl;
+
+import com.jme3.renderer.Caps;
+import java.nio.IntBuffer;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.lwjgl.BufferUtils;
+import org.lwjgl.PointerBuffer;
+import org.lwjgl.egl.EGL;
+import org.lwjgl.egl.EXTPlatformBase;
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GLCapabilities;
+import static org.lwjgl.egl.EGL10.*;
+import static org.lwjgl.egl.EGL12.eglBindAPI;
+import static org.lwjgl.egl.EGL12.EGL_RENDERABLE_TYPE;
+import static org.lwjgl.egl.EGL14.EGL_OPENGL_API;
+import static org.lwjgl.egl.EGL14.EGL_OPENGL_BIT;
+import static org.lwjgl.egl.EGL15.EGL_CONTEXT_MAJOR_VERSION;
+import static org.lwjgl.egl.EGL15.EGL_CONTEXT_MINOR_VERSION;
+import static org.lwjgl.egl.EGL15.EGL_CONTEXT_OPENGL_CORE_PROFILE_BIT;
+import static org.lwjgl.egl.EGL15.EGL_CONTEXT_OPENGL_PROFILE_MASK;
+import static org.lwjgl.opengl.GL43.*;
+
+/**
+ * Offscreen OpenGL context for executing compute shaders without a window.
+ * <p>
+ * The context is created through EGL, so it works on machines without a
+ * display, including Mesa's software rasterizer. Where supported, the context
+ * is surfaceless; otherwise a 1x1 pbuffer is created. No window, swap chain
+ * or vsync is involved.
+ * <p>
+ * Like any OpenGL context, it may be current on only one thread at a time.
+ * {@link #create()} makes it current on the calling thread.
+ * <pre>{@code
+ * try (ComputeContext context = ComputeContext.create()) {
+ *     shader.setContext(context);
+ *     shader.executeElements(width, height, 1);
+ * }
+ * }</pre>
+ * <p>
+ * EGL displays are shared by every context in the process. A display is
+ * terminated only when the last context created on it is destroyed, and never
+ * if it was already initialized by other code.
+ * 
+ * @author codex
+ */
+public class ComputeContext implements AutoCloseable {
+    
+    private static final Logger LOG = Logger.getLogger(ComputeContext.class.getName());
+    private static final int EGL_PLATFORM_SURFACELESS_MESA = 0x31DD;
+    private static final long EGL_DEFAULT_DISPLAY = 0L;
+    private static final Map<Long, Integer> displayUsers = new HashMap<>();
+    private static final Set<Long> foreignDisplays = new HashSet<>();
+    
+    private final long display, context, surface;
+    private final EnumSet<Caps> caps;
+    private final DirectTextureBinder texBind = new DirectTextureBinder();
+    private boolean destroyed = false;
+    
+    private ComputeContext(long display, long context, long surface, EnumSet<Caps> caps) {
+        this.display = display;
+        this.context = context;
+        this.surface = surface;
+        this.caps = caps;
+    }
+    
+    /**
+     * Creates an OpenGL 4.3 core context and makes it current.
+     * 
+     * @return 
+     */
+    public static ComputeContext create() {
+        return create(4, 3);
+    }
+    
+    /**
+     * Creates an OpenGL core context and makes it current.
+     * 
+     * @param major major OpenGL version, at least 4
+     * @param minor minor OpenGL version, at least 3 if major is 4
+     * @return 
+     * @throws RuntimeException if the context cannot be created
+     */
+    public static ComputeContext create(int major, int minor) {
+        if (major * 10 + minor < 43) {
+            throw new IllegalArgumentException("Compute shaders require OpenGL 4.3.");
+        }
+        long display = getDisplay();
+        acquireDisplay(display);
+        long surface = EGL_NO_SURFACE, context = EGL_NO_CONTEXT;
+        try {
+            String ext = eglQueryString(display, EGL_EXTENSIONS);
+            boolean surfaceless = ext != null && ext.contains("EGL_KHR_surfaceless_context");
+            if (!eglBindAPI(EGL_OPENGL_API)) {
+                throw new RuntimeException("Desktop OpenGL is not supported by EGL.");
+            }
+            IntBuffer attribs = BufferUtils.createIntBuffer(5);
+            attribs.put(EGL_SURFACE_TYPE).put(surfaceless ? 0 : EGL_PBUFFER_BIT)
+                   .put(EGL_RENDERABLE_TYPE).put(EGL_OPENGL_BIT)
+                   .put(EGL_NONE).flip();
+            PointerBuffer configs = BufferUtils.createPointerBuffer(1);
+            IntBuffer numConfigs = BufferUtils.createIntBuffer(1);
+            if (!eglChooseConfig(display, attribs, configs, numConfigs) || numConfigs.get(0) == 0) {
+                throw new RuntimeException("No EGL config supports offscreen OpenGL.");
+            }
+            long config = configs.get(0);
+            attribs = BufferUtils.createIntBuffer(7);
+            attribs.put(EGL_CONTEXT_MAJOR_VERSION).put(major)
+                   .put(EGL_CONTEXT_MINOR_VERSION).put(minor)
+                   .put(EGL_CONTEXT_OPENGL_PROFILE_MASK).put(EGL_CONTEXT_OPENGL_CORE_PROFILE_BIT)
+                   .put(EGL_NONE).flip();
+            context = eglCreateContext(display, config, EGL_NO_CONTEXT, attribs);
+            if (context == EGL_NO_CONTEXT) {
+                throw new RuntimeException("Failed to create OpenGL "+major+"."+minor
+                        +" context (error 0x"+Integer.toHexString(eglGetError())+").");
+            }
+            if (!surfaceless) {
+                attribs = BufferUtils.createIntBuffer(5);
+                attribs.put(EGL_WIDTH).put(1).put(EGL_HEIGHT).put(1).put(EGL_NONE).flip();
+                surface = eglCreatePbufferSurface(display, config, attribs);
+                if (surface == EGL_NO_SURFACE) {
+                    throw new RuntimeException("Failed to create pbuffer surface.");
+                }
+            }
+            if (!eglMakeCurrent(display, surface, surface, context)) {
+                throw new RuntimeException("Failed to make context current.");
+            }
+            if (GL.getFunctionProvider() == null) {
+                GL.create(EGL.getFunctionProvider());
+            }
+            GLCapabilities glCaps = GL.createCapabilities();
+            if (!glCaps.OpenGL43) {
+                throw new RuntimeException("OpenGL 4.3 is not supported by the offscreen context.");
+            }
+            EnumSet<Caps> caps = createCaps();
+            LOG.log(Level.INFO, "Created {0} offscreen context: {1}",
+                    new Object[] {surfaceless ? "surfaceless" : "pbuffer", glGetString(GL_RENDERER)});
+            return new ComputeContext(display, context, surface, caps);
+        } catch (RuntimeException ex) {
+            eglMakeCurrent(display, EGL_NO_SURFACE, EGL_NO_SURFACE, EGL_NO_CONTEXT);
+            if (surface != EGL_NO_SURFACE) {
+                eglDestroySurface(display, surface);
+            }
+            if (context != EGL_NO_CONTEXT) {
+                eglDestroyContext(display, context);
+            }
+            releaseDisplay(display);
+            throw ex;
+        }
+    }
+    private static long getDisplay() {
+        // prefer Mesa's surfaceless platform, which needs no display server at all
+        String clientExt = eglQueryString(EGL_NO_DISPLAY, EGL_EXTENSIONS);
+        if (clientExt != null && clientExt.contains("EGL_EXT_platform_base")
+                && clientExt.contains("EGL_MESA_platform_surfaceless")) {
+            long display = EXTPlatformBase.eglGetPlatformDisplayEXT(EGL_PLATFORM_SURFACELESS_MESA, 0, (IntBuffer)null);
+            if (display != EGL_NO_DISPLAY) {
+                return display;
+            }
+        }
+        long display = eglGetDisplay(EGL_DEFAULT_DISPLAY);
+        if (display == EGL_NO_DISPLAY) {
+            throw new RuntimeException("No EGL display available.");
+        }
+        return display;
+    }
+    private static synchronized void acquireDisplay(long display) {
+        Integer users = displayUsers.get(display);
+        if (users == null) {
+            // querying an uninitialized display fails, so this detects displays initialized elsewhere
+            boolean foreign = eglQueryString(display, EGL_VENDOR) != null;
+            IntBuffer v1 = BufferUtils.createIntBuffer(1), v2 = BufferUtils.createIntBuffer(1);
+            if (!eglInitialize(display, v1, v2)) {
+                throw new RuntimeException("Failed to initialize EGL display (error 0x"+Integer.toHexString(eglGetError())+").");
+            }
+            if (foreign) {
+                foreignDisplays.add(display);
+            }
+            users = 0;
+        }
+        displayUsers.put(display, users + 1);
+    }
+    private static synchronized void releaseDisplay(long display) {
+        int users = displayUsers.get(display) - 1;
+        if (users > 0) {
+            displayUsers.put(display, users);
+            return;
+        }
+        displayUsers.remove(display);
+        if (!foreignDisplays.remove(display)) {
+            eglTerminate(display);
+        }
+    }
+    
+    /**
+     * Creates the capabilities for the current OpenGL context.
+     * <p>
+     * Only version capabilities ({@code OpenGLxx} and {@code GLSLxxx}) are
+     * determined, which is what {@link GLComputeShader} depends on.
+     * 
+     * @return 
+     */
+    public static EnumSet<Caps> createCaps() {
+        int gl = glGetInteger(GL_MAJOR_VERSION) * 10 + glGetInteger(GL_MINOR_VERSION);
+        String[] glsl = glGetString(GL_SHADING_LANGUAGE_VERSION).split("[ .]");
+        int glslVersion = Integer.parseInt(glsl[0]) * 100 + Integer.parseInt(glsl[1].substring(0, 2));
+        EnumSet<Caps> caps = EnumSet.noneOf(Caps.class);
+        for (Caps c : Caps.values()) {
+            if (c.name().startsWith("OpenGL")) {
+                int v = parseVersion(c.name(), 6);
+                if (v >= 0 && v <= gl) {
+                    caps.add(c);
+                }
+            } else if (c.name().startsWith("GLSL")) {
+                int v = parseVersion(c.name(), 4);
+                if (v >= 0 && v <= glslVersion) {
+                    caps.add(c);
+                }
+            }
+        }
+        return caps;
+    }
+    private static int parseVersion(String name, int prefix) {
+        try {
+            return Integer.parseInt(name.substring(prefix));
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+    
+    /**
+     * Makes this context current on the calling thread.
+     */
+    public void makeCurrent() {
+        checkDestroyed();
+        if (!eglMakeCurrent(display, surface, surface, context)) {
+            throw new RuntimeException("Failed to make context current.");
+        }
+        GL.createCapabilities();
+    }
+    
+    /**
+     * Releases this context from the calling thread.
+     */
+    public void release() {
+        eglMakeCurrent(display, EGL_NO_SURFACE, EGL_NO_SURFACE, EGL_NO_CONTEXT);
+        GL.setCapabilities(null);
+    }
+    
+    /**
+     * Deletes textures uploaded through this context and destroys it.
+     * <p>
+     * The EGL display is terminated only if no other context still uses it.
+     * Must be called on the thread this context is current on.
+     */
+    public void destroy() {
+        if (destroyed) {
+            return;
+        }
+        texBind.cleanup();
+        release();
+        if (surface != EGL_NO_SURFACE) {
+            eglDestroySurface(display, surface);
+        }
+        eglDestroyContext(display, context);
+        releaseDisplay(display);
+        destroyed = true;
+    }
+    
+    @Override
+    public void close() {
+        destroy();
+    }
+    
+    private void checkDestroyed() {
+        if (destroyed) {
+            throw new IllegalStateException("Context is destroyed.");
+        }
+    }
+    
+    /**
+     * Gets the capabilities of this context.
+     * 
+     * @return 
+     */
+    public EnumSet<Caps> getCaps() {
+        return caps;
+    }
+    
+    /**
+     * Gets the binder uploading and binding textures in this context.
+     * 
+     * @return 
+     */
+    public DirectTextureBinder getTextureBinder() {
+        return texBind;
+    }
+    
+    /**
+     * Returns true if this context renders to no surface at all.
+     * 
+     * @return 
+     */
+    public boolean isSurfaceless() {
+        return surface == EGL_NO_SURFACE;
+    }
+    
+    /**
+     * Returns true if this context has been destroyed.
+     * 
+     * @return 
+     */
+    public boolean isDestroyed() {
+        return destroyed;
+    }
+    
+}
@@ -13,6 +13,7 @@ public class ComputeDefine {
     public final String paramName;
     public final String defineName;
     private Object value;
+    int paramVersion = -1;
 
     public ComputeDefine(String defineName) {
         this(null, defineName);
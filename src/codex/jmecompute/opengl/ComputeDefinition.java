@@ -0,0 +1,571 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package codex.jmecompute.opengl;
+
+import com.jme3.math.ColorRGBA;
+import com.jme3.math.Matrix3f;
+import com.jme3.math.Matrix4f;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector2f;
+import com.jme3.math.Vector3f;
+import com.jme3.math.Vector4f;
+import com.jme3.shader.VarType;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Parsed contents of a compute shader definition.
+ * <p>
+ * Definitions are read from the text format by {@link GLComputeLoader}, or
+ * from the binary format by {@link #read(InputStream)}. The binary format
+ * holds everything needed to create the shader, including the shader code
+ * and typed default values, so loading it involves no text parsing and no
+ * further asset lookups. Binary definitions are written by
+ * {@link ComputeDefinitionConverter}.
+ * 
+ * @author codex
+ */
+public class ComputeDefinition {
+    
+    /**
+     * File extension of binary definitions.
+     */
+    public static final String BINARY_EXTENSION = "j3csb";
+    private static final int MAGIC = 0x4A334342;
+    private static final int FORMAT_VERSION = 3;
+    
+    private final String name;
+    private final int[] versions;
+    private final String code;
+    private final List<ComputeUniform> params;
+    private final List<ComputeDefine> defines;
+    private final List<ComputeBufferBinding> buffers;
+    private final int blockBinding;
+    private String source;
+    private List<String> includes = Collections.emptyList();
+    private long[] includeHashes = new long[0];
+    private long sourceHash = 0;
+    
+    /**
+     * 
+     * @param name
+     * @param versions supported GLSL versions
+     * @param code shader code
+     * @param params
+     * @param defines
+     * @param buffers
+     * @param blockBinding binding of the std140 parameter block, or negative if parameters are not packed
+     */
+    public ComputeDefinition(String name, int[] versions, String code, List<ComputeUniform> params,
+            List<ComputeDefine> defines, List<ComputeBufferBinding> buffers, int blockBinding) {
+        this.name = name;
+        this.versions = versions;
+        this.code = code;
+        this.params = params;
+        this.defines = defines;
+        this.buffers = buffers;
+        this.blockBinding = blockBinding;
+    }
+    
+    /**
+     * Creates a new shader from this definition.
+     * <p>
+     * Parameters are copied into the first shader created, so each definition
+     * should only be used to create one shader.
+     * 
+     * @return 
+     */
+    public GLComputeShader createShader() {
+        GLComputeShader shader = new GLComputeShader(name, versions, code);
+        for (ComputeDefine d : defines) {
+            shader.setDefine(d);
+        }
+        for (ComputeUniform u : params) {
+            shader.set(u);
+        }
+        for (ComputeBufferBinding b : buffers) {
+            shader.setBufferBinding(b);
+        }
+        if (blockBinding >= 0) {
+            shader.setUniformBlock(new ComputeUniformBlock(GLComputeShader.UNIFORM_BLOCK_NAME, blockBinding, params));
+        }
+        return shader;
+    }
+    
+    /**
+     * Writes this definition in the binary format.
+     * 
+     * @param out
+     * @throws IOException
+     */
+    public void write(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        data.writeInt(MAGIC);
+        data.writeShort(FORMAT_VERSION);
+        writeString(data, name);
+        data.writeShort(versions.length);
+        for (int v : versions) {
+            data.writeShort(v);
+        }
+        writeString(data, code);
+        data.writeShort(params.size());
+        for (ComputeUniform u : params) {
+            data.writeUTF(u.getName());
+            data.writeUTF(u.getType().name());
+            data.writeByte(u.getImageAccess().ordinal());
+            writeValue(data, u);
+        }
+        data.writeShort(defines.size());
+        for (ComputeDefine d : defines) {
+            data.writeUTF(d.defineName);
+            writeNullable(data, d.paramName);
+            writeDefineValue(data, d.getValue());
+        }
+        data.writeShort(buffers.size());
+        for (ComputeBufferBinding b : buffers) {
+            data.writeUTF(b.getName());
+            data.writeInt(b.getBinding());
+        }
+        data.writeInt(blockBinding);
+        writeNullable(data, source);
+        data.writeShort(includes.size());
+        for (int i = 0; i < includes.size(); i++) {
+            data.writeUTF(includes.get(i));
+            data.writeLong(includeHashes[i]);
+        }
+        data.writeLong(sourceHash);
+        data.flush();
+    }
+    
+    /**
+     * Reads a definition in the binary format.
+     * 
+     * @param in
+     * @return 
+     * @throws IOException if the stream is not a binary definition of a supported format version
+     */
+    public static ComputeDefinition read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a binary compute shader definition.");
+        }
+        int format = data.readUnsignedShort();
+        if (format != FORMAT_VERSION) {
+            throw new IOException("Unsupported binary definition format "+format+", convert it again.");
+        }
+        String name = readString(data);
+        int[] versions = new int[data.readUnsignedShort()];
+        for (int i = 0; i < versions.length; i++) {
+            versions[i] = data.readUnsignedShort();
+        }
+        String code = readString(data);
+        int n = data.readUnsignedShort();
+        ArrayList<ComputeUniform> params = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            ComputeUniform u = new ComputeUniform(data.readUTF(), VarType.valueOf(data.readUTF()));
+            u.setImageAccess(ComputeImageAccess.values()[data.readUnsignedByte()]);
+            Object value = readValue(data, u.getType());
+            if (value != null) {
+                u.setValue(value);
+            }
+            params.add(u);
+        }
+        n = data.readUnsignedShort();
+        ArrayList<ComputeDefine> defines = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            String defName = data.readUTF();
+            String paramName = readNullable(data);
+            defines.add(new ComputeDefine(paramName, defName, readDefineValue(data)));
+        }
+        n = data.readUnsignedShort();
+        ArrayList<ComputeBufferBinding> buffers = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            buffers.add(new ComputeBufferBinding(data.readUTF(), data.readInt()));
+        }
+        ComputeDefinition def = new ComputeDefinition(name, versions, code, params, defines, buffers, data.readInt());
+        def.source = readNullable(data);
+        n = data.readUnsignedShort();
+        ArrayList<String> includes = new ArrayList<>(n);
+        def.includeHashes = new long[n];
+        for (int i = 0; i < n; i++) {
+            includes.add(data.readUTF());
+            def.includeHashes[i] = data.readLong();
+        }
+        def.includes = includes;
+        def.sourceHash = data.readLong();
+        return def;
+    }
+    
+    /**
+     * Hashes the text of a definition or shader fragment.
+     * <p>
+     * Binary definitions store the hashes of the text definition and of the
+     * fragments they were converted from, so stale binary definitions can be detected.
+     * 
+     * @param text
+     * @return 
+     */
+    public static long hashSource(byte[] text) {
+        // 64 bit FNV-1a
+        long h = 0xcbf29ce484222325L;
+        for (byte b : text) {
+            h ^= (b & 0xff);
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+    
+    /**
+     * Compares the parameters of this definition to those of another.
+     * <p>
+     * Parameters are equal if they have the same name, type, image access
+     * and default value.
+     * 
+     * @param other
+     * @return description of the first differing parameter, or null if all are equal
+     */
+    public String findParamDifference(ComputeDefinition other) {
+        if (params.size() != other.params.size()) {
+            return "expected "+params.size()+" parameters, found "+other.params.size();
+        }
+        for (int i = 0; i < params.size(); i++) {
+            ComputeUniform a = params.get(i), b = other.params.get(i);
+            if (!a.getName().equals(b.getName()) || a.getType() != b.getType()) {
+                return "expected "+a.getType()+" "+a.getName()+", found "+b.getType()+" "+b.getName();
+            }
+            if (a.getImageAccess() != b.getImageAccess()) {
+                return a.getName()+" has image access "+b.getImageAccess()+" instead of "+a.getImageAccess();
+            }
+            if (!a.getType().isTextureType() && !isValueEqual(a, b)) {
+                return a.getName()+" has a different default value";
+            }
+        }
+        return null;
+    }
+    private static boolean isValueEqual(ComputeUniform a, ComputeUniform b) {
+        if (a.hasValue() != b.hasValue()) {
+            return false;
+        }
+        if (!a.hasValue()) {
+            return true;
+        }
+        switch (a.getType()) {
+            case FloatArray:
+            case Vector2Array:
+            case Vector3Array:
+            case Vector4Array:
+            case Matrix3Array:
+            case Matrix4Array:
+            case Matrix3:
+            case Matrix4:
+                // compares the packed values actually uploaded
+                return a.getBuffer().equals(b.getBuffer());
+            default:
+                return a.getValue().equals(b.getValue());
+        }
+    }
+    
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        // writeUTF is limited to 64kb, which shader code may exceed
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    private static void writeNullable(DataOutputStream out, String string) throws IOException {
+        out.writeBoolean(string != null);
+        if (string != null) {
+            out.writeUTF(string);
+        }
+    }
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+    
+    private static void writeDefineValue(DataOutputStream out, Object value) throws IOException {
+        if (value instanceof Boolean) {
+            out.writeByte(1);
+            out.writeBoolean((Boolean)value);
+        } else if (value instanceof Integer) {
+            out.writeByte(2);
+            out.writeInt((Integer)value);
+        } else if (value instanceof Float) {
+            out.writeByte(3);
+            out.writeFloat((Float)value);
+        } else if (value instanceof String) {
+            out.writeByte(4);
+            out.writeUTF((String)value);
+        } else {
+            out.writeByte(0);
+        }
+    }
+    private static Object readDefineValue(DataInputStream in) throws IOException {
+        switch (in.readUnsignedByte()) {
+            case 1: return in.readBoolean();
+            case 2: return in.readInt();
+            case 3: return in.readFloat();
+            case 4: return in.readUTF();
+            default: return null;
+        }
+    }
+    
+    private static void writeValue(DataOutputStream out, ComputeUniform u) throws IOException {
+        VarType type = u.getType();
+        boolean present = !type.isTextureType() && u.hasValue();
+        out.writeBoolean(present);
+        if (!present) {
+            return;
+        }
+        switch (type) {
+            case Boolean: out.writeBoolean(u.getBoolean()); break;
+            case Int: out.writeInt(u.getInt()); break;
+            case Float: out.writeFloat(u.getFloat()); break;
+            case Vector2: {
+                Vector2f v = (Vector2f)u.getValue();
+                out.writeFloat(v.x);
+                out.writeFloat(v.y);
+                break;
+            }
+            case Vector3: writeVector3(out, (Vector3f)u.getValue()); break;
+            case Vector4: writeVector4(out, u.getValue()); break;
+            case Matrix3: writeMatrix3(out, (Matrix3f)u.getValue()); break;
+            case Matrix4: writeMatrix4(out, (Matrix4f)u.getValue()); break;
+            case IntArray: {
+                // int arrays are held as an IntBuffer
+                IntBuffer array = (IntBuffer)u.getValue();
+                out.writeInt(array.limit());
+                for (int i = 0; i < array.limit(); i++) {
+                    out.writeInt(array.get(i));
+                }
+                break;
+            }
+            case FloatArray:
+            case Vector2Array:
+            case Vector3Array:
+            case Vector4Array:
+            case Matrix3Array:
+            case Matrix4Array: {
+                // other arrays are only held packed in the uniform's float buffer, matrices column major
+                FloatBuffer array = u.getBuffer();
+                int components = getComponents(type);
+                int elements = array.limit() / components;
+                out.writeInt(elements);
+                for (int i = 0, n = elements * components; i < n; i++) {
+                    out.writeFloat(array.get(i));
+                }
+                break;
+            }
+            default:
+                throw new UnsupportedOperationException(type+" values cannot be serialized.");
+        }
+    }
+    private static Object readValue(DataInputStream in, VarType type) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        switch (type) {
+            case Boolean: return in.readBoolean();
+            case Int: return in.readInt();
+            case Float: return in.readFloat();
+            case Vector2: return new Vector2f(in.readFloat(), in.readFloat());
+            case Vector3: return readVector3(in);
+            case Vector4: return readVector4(in);
+            case Matrix3: return new Matrix3f().set(readFloats(in, 9));
+            case Matrix4: return readMatrix4(in, true);
+            case IntArray: {
+                int[] array = new int[in.readInt()];
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = in.readInt();
+                }
+                return array;
+            }
+            case FloatArray: return readFloats(in, in.readInt());
+            case Vector2Array: {
+                Vector2f[] array = new Vector2f[in.readInt()];
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = new Vector2f(in.readFloat(), in.readFloat());
+                }
+                return array;
+            }
+            case Vector3Array: {
+                Vector3f[] array = new Vector3f[in.readInt()];
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = readVector3(in);
+                }
+                return array;
+            }
+            case Vector4Array: {
+                Vector4f[] array = new Vector4f[in.readInt()];
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = readVector4(in);
+                }
+                return array;
+            }
+            case Matrix3Array: {
+                Matrix3f[] array = new Matrix3f[in.readInt()];
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = new Matrix3f().set(readFloats(in, 9), false);
+                }
+                return array;
+            }
+            case Matrix4Array: {
+                Matrix4f[] array = new Matrix4f[in.readInt()];
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = readMatrix4(in, false);
+                }
+                return array;
+            }
+            default:
+                throw new IOException(type+" values cannot be deserialized.");
+        }
+    }
+    private static Matrix4f readMatrix4(DataInputStream in, boolean rowMajor) throws IOException {
+        // unlike Matrix3f, Matrix4f.set(float[], boolean) does not return the matrix
+        Matrix4f m = new Matrix4f();
+        m.set(readFloats(in, 16), rowMajor);
+        return m;
+    }
+    private static void writeVector3(DataOutputStream out, Vector3f v) throws IOException {
+        out.writeFloat(v.x);
+        out.writeFloat(v.y);
+        out.writeFloat(v.z);
+    }
+    private static void writeVector4(DataOutputStream out, Object value) throws IOException {
+        if (value instanceof ColorRGBA) {
+            ColorRGBA c = (ColorRGBA)value;
+            writeFloats(out, new float[] {c.r, c.g, c.b, c.a});
+        } else if (value instanceof Quaternion) {
+            Quaternion q = (Quaternion)value;
+            writeFloats(out, new float[] {q.getX(), q.getY(), q.getZ(), q.getW()});
+        } else {
+            Vector4f v = (Vector4f)value;
+            writeFloats(out, new float[] {v.x, v.y, v.z, v.w});
+        }
+    }
+    private static void writeMatrix3(DataOutputStream out, Matrix3f m) throws IOException {
+        float[] values = new float[9];
+        m.get(values, true);
+        writeFloats(out, values);
+    }
+    private static void writeMatrix4(DataOutputStream out, Matrix4f m) throws IOException {
+        float[] values = new float[16];
+        m.get(values, true);
+        writeFloats(out, values);
+    }
+    private static int getComponents(VarType type) {
+        switch (type) {
+            case Vector2Array: return 2;
+            case Vector3Array: return 3;
+            case Vector4Array: return 4;
+            case Matrix3Array: return 9;
+            case Matrix4Array: return 16;
+            default: return 1;
+        }
+    }
+    private static Vector3f readVector3(DataInputStream in) throws IOException {
+        return new Vector3f(in.readFloat(), in.readFloat(), in.readFloat());
+    }
+    private static Vector4f readVector4(DataInputStream in) throws IOException {
+        return new Vector4f(in.readFloat(), in.readFloat(), in.readFloat(), in.readFloat());
+    }
+    private static void writeFloats(DataOutputStream out, float[] values) throws IOException {
+        for (float f : values) {
+            out.writeFloat(f);
+        }
+    }
+    private static float[] readFloats(DataInputStream in, int length) throws IOException {
+        float[] values = new float[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = in.readFloat();
+        }
+        return values;
+    }
+    
+    public String getName() {
+        return name;
+    }
+    public int[] getVersions() {
+        return versions;
+    }
+    public String getCode() {
+        return code;
+    }
+    public List<ComputeUniform> getParams() {
+        return params;
+    }
+    public List<ComputeDefine> getDefines() {
+        return defines;
+    }
+    public List<ComputeBufferBinding> getBuffers() {
+        return buffers;
+    }
+    public int getBlockBinding() {
+        return blockBinding;
+    }
+    
+    /**
+     * Sets the asset name of the root shader fragment.
+     * 
+     * @param source 
+     */
+    public void setSource(String source) {
+        this.source = source;
+    }
+    
+    /**
+     * Sets the names of all fragments included in the shader code, including
+     * the root fragment, and the hashes of their text.
+     * 
+     * @param includes
+     * @param hashes hash of each fragment, in the same order
+     * @see #hashSource(byte[])
+     */
+    public void setIncludes(List<String> includes, long[] hashes) {
+        if (includes.size() != hashes.length) {
+            throw new IllegalArgumentException("Each include requires one hash.");
+        }
+        this.includes = includes;
+        this.includeHashes = hashes;
+    }
+    
+    /**
+     * Sets the hash of the text definition this definition was converted from.
+     * 
+     * @param sourceHash
+     * @see #hashSource(byte[])
+     */
+    public void setSourceHash(long sourceHash) {
+        this.sourceHash = sourceHash;
+    }
+    
+    public String getSource() {
+        return source;
+    }
+    public List<String> getIncludes() {
+        return includes;
+    }
+    public long[] getIncludeHashes() {
+        return includeHashes;
+    }
+    public long getSourceHash() {
+        return sourceHash;
+    }
+    
+}
@@ -0,0 +1,127 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package codex.jmecompute.opengl;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Converts text compute shader definitions to binary definitions.
+ * <p>
+ * Each {@code .j3cs} file is written as a {@code .j3csb} file next to it,
+ * which {@link GLComputeLoader} prefers over the text file as long as neither
+ * the text file, its shader code nor any imported fragment has changed.
+ * <pre>
+ * java codex.jmecompute.opengl.ComputeDefinitionConverter &lt;asset root&gt; [definition...]
+ * </pre>
+ * If no definitions are given, all definitions under the asset root are converted.
+ * 
+ * @author codex
+ */
+public class ComputeDefinitionConverter {
+    
+    private static final String TEXT_EXTENSION = ".j3cs";
+    
+    private final Path assetRoot;
+    private final ComputeSourceLibrary library;
+    
+    /**
+     * 
+     * @param assetRoot directory asset names are resolved against
+     */
+    public ComputeDefinitionConverter(Path assetRoot) {
+        this.assetRoot = assetRoot;
+        this.library = new ComputeSourceLibrary(this::readSource);
+    }
+    
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: ComputeDefinitionConverter <asset root> [definition...]");
+            System.exit(1);
+        }
+        ComputeDefinitionConverter converter = new ComputeDefinitionConverter(Paths.get(args[0]));
+        List<Path> files = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            files.add(Paths.get(args[i]));
+        }
+        if (files.isEmpty()) {
+            files = converter.findDefinitions();
+        }
+        for (Path f : files) {
+            System.out.println(f+" -> "+converter.convert(f));
+        }
+    }
+    
+    /**
+     * Finds all text definitions under the asset root.
+     * 
+     * @return 
+     * @throws IOException
+     */
+    public List<Path> findDefinitions() throws IOException {
+        try (Stream<Path> files = Files.walk(assetRoot)) {
+            return files.filter(f -> f.toString().endsWith(TEXT_EXTENSION)).collect(Collectors.toList());
+        }
+    }
+    
+    /**
+     * Converts the text definition and writes the binary definition next to it.
+     * <p>
+     * The binary definition is read back and its parameters are checked against
+     * the text definition's. If they differ, it is deleted.
+     * 
+     * @param definition path of the text definition
+     * @return path of the binary definition
+     * @throws IOException
+     */
+    public Path convert(Path definition) throws IOException {
+        byte[] text = Files.readAllBytes(definition);
+        ComputeDefinition def;
+        try {
+            def = GLComputeLoader.parseDefinition(new ByteArrayInputStream(text), library::resolve);
+            List<String> includes = library.getIncludes(def.getSource());
+            long[] hashes = new long[includes.size()];
+            for (int i = 0; i < hashes.length; i++) {
+                hashes[i] = ComputeDefinition.hashSource(Files.readAllBytes(assetRoot.resolve(includes.get(i))));
+            }
+            def.setIncludes(includes, hashes);
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+        def.setSourceHash(ComputeDefinition.hashSource(text));
+        Path target = definition.resolveSibling(GLComputeLoader.getBinaryName(definition.getFileName().toString()));
+        try (OutputStream out = Files.newOutputStream(target)) {
+            def.write(out);
+        }
+        String difference;
+        try (InputStream in = Files.newInputStream(target)) {
+            difference = def.findParamDifference(ComputeDefinition.read(in));
+        }
+        if (difference != null) {
+            Files.delete(target);
+            throw new IOException("Binary definition of "+definition+" does not match the text definition: "+difference);
+        }
+        return target;
+    }
+    private String readSource(String asset) {
+        try {
+            return new String(Files.readAllBytes(assetRoot.resolve(asset)), StandardCharsets.UTF_8);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+    
+}
@@ -0,0 +1,76 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package codex.jmecompute.opengl;
+
+import com.jme3.texture.Image;
+import static org.lwjgl.opengl.GL43.*;
+
+/**
+ * Access of a compute shader to a texture bound as an image.
+ * 
+ * @author codex
+ */
+public enum ComputeImageAccess {
+    
+    ReadOnly(GL_READ_ONLY),
+    WriteOnly(GL_WRITE_ONLY),
+    ReadWrite(GL_READ_WRITE);
+    
+    private final int glEnum;
+    
+    private ComputeImageAccess(int glEnum) {
+        this.glEnum = glEnum;
+    }
+    
+    /**
+     * Gets the OpenGL access enum.
+     * 
+     * @return 
+     */
+    public int getGlEnum() {
+        return glEnum;
+    }
+    
+    /**
+     * Returns true if shaders may write images bound with this access.
+     * 
+     * @return 
+     */
+    public boolean isWritable() {
+        return this != ReadOnly;
+    }
+    
+    /**
+     * Gets the image unit format matching the texture format.
+     * 
+     * @param format
+     * @return internal format usable with {@code glBindImageTexture}
+     * @throws UnsupportedOperationException if the format cannot be bound as an image
+     */
+    public static int getImageFormat(Image.Format format) {
+        switch (format) {
+            case RGBA8: return GL_RGBA8;
+            case RGBA16F: return GL_RGBA16F;
+            case RGBA32F: return GL_RGBA32F;
+            case RG16F: return GL_RG16F;
+            case RG32F: return GL_RG32F;
+            case R16F: return GL_R16F;
+            case R32F: return GL_R32F;
+            case RGB111110F: return GL_R11F_G11F_B10F;
+            case R32I: return GL_R32I;
+            case R32UI: return GL_R32UI;
+            case RG32I: return GL_RG32I;
+            case RG32UI: return GL_RG32UI;
+            case RGBA8I: return GL_RGBA8I;
+            case RGBA8UI: return GL_RGBA8UI;
+            case RGBA16I: return GL_RGBA16I;
+            case RGBA16UI: return GL_RGBA16UI;
+            case RGBA32I: return GL_RGBA32I;
+            case RGBA32UI: return GL_RGBA32UI;
+            default: throw new UnsupportedOperationException(format+" cannot be bound as an image.");
+        }
+    }
+    
+}
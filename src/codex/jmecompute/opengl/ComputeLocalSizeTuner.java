@@ -0,0 +1,232 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package codex.jmecompute.opengl;
+
+import com.jme3.renderer.Caps;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import static org.lwjgl.opengl.GL43.*;
+
+/**
+ * Chooses the fastest local work group size of a shader for the current device.
+ * <p>
+ * The shader must declare its local size through the {@code LOCAL_SIZE_X},
+ * {@code LOCAL_SIZE_Y} and {@code LOCAL_SIZE_Z} defines:
+ * <pre>
+ * layout(local_size_x = LOCAL_SIZE_X, local_size_y = LOCAL_SIZE_Y, local_size_z = LOCAL_SIZE_Z) in;
+ * </pre>
+ * Each candidate is compiled, warmed up and timed with a {@code GL_TIME_ELAPSED}
+ * query, and the fastest is stored in a properties file keyed by shader name and
+ * renderer. Later runs on the same device apply the stored size without timing.
+ * Candidates exceeding device limits or failing to compile are skipped.
+ * <p>
+ * Timing waits on the GPU and executes the shader for real, so tuning should
+ * happen during loading rather than mid-frame.
+ * 
+ * @author codex
+ */
+public class ComputeLocalSizeTuner {
+    
+    private static final Logger LOG = Logger.getLogger(ComputeLocalSizeTuner.class.getName());
+    public static final String[] DEFINES = {"LOCAL_SIZE_X", "LOCAL_SIZE_Y", "LOCAL_SIZE_Z"};
+    
+    private final File file;
+    private final Properties results = new Properties();
+    private int samples = 5;
+    private boolean loaded = false;
+    
+    /**
+     * 
+     * @param file properties file results are stored in, or null to not persist results
+     */
+    public ComputeLocalSizeTuner(File file) {
+        this.file = file;
+    }
+    
+    /**
+     * Applies the fastest candidate local size to the shader's defines,
+     * timing the candidates first if no result is stored for this device.
+     * 
+     * @param shader
+     * @param texBind
+     * @param caps
+     * @param nx number of elements on the X axis
+     * @param ny number of elements on the Y axis
+     * @param nz number of elements on the Z axis
+     * @param candidates local sizes to try, as {@code {x, y, z}} triples
+     * @return the chosen local size
+     * @throws IllegalStateException if every candidate exceeds device limits or fails to execute
+     */
+    public int[] tune(GLComputeShader shader, GLTextureBinder texBind, EnumSet<Caps> caps,
+            int nx, int ny, int nz, int[]... candidates) {
+        if (candidates == null || candidates.length == 0) {
+            throw new IllegalArgumentException("At least one candidate local size is required.");
+        }
+        String key = shader.getName() + '@' + glGetString(GL_RENDERER);
+        int[] best = parse(getResults().getProperty(key));
+        if (best == null) {
+            best = measure(shader, texBind, caps, nx, ny, nz, candidates);
+            results.setProperty(key, best[0]+" "+best[1]+" "+best[2]);
+            save();
+        }
+        apply(shader, best);
+        return best;
+    }
+    
+    private int[] measure(GLComputeShader shader, GLTextureBinder texBind, EnumSet<Caps> caps,
+            int nx, int ny, int nz, int[][] candidates) {
+        int query = glGenQueries();
+        int[] best = null;
+        long bestTime = Long.MAX_VALUE;
+        Object[] original = new Object[DEFINES.length];
+        for (int i = 0; i < DEFINES.length; i++) {
+            original[i] = shader.getDefine(DEFINES[i]);
+        }
+        // every candidate must actually execute to be timed
+        boolean async = shader.isAsyncCompile();
+        shader.setAsyncCompile(false);
+        try {
+            for (int[] c : candidates) {
+                if (!isSupported(c)) {
+                    LOG.log(Level.WARNING, "Skipping {0} local size {1}, which exceeds device limits",
+                            new Object[] {shader.getName(), Arrays.toString(c)});
+                    continue;
+                }
+                boolean timing = false;
+                try {
+                    apply(shader, c);
+                    // compile and warm up outside of the timed region
+                    shader.executeElements(texBind, caps, nx, ny, nz);
+                    glFinish();
+                    glBeginQuery(GL_TIME_ELAPSED, query);
+                    timing = true;
+                    for (int i = 0; i < samples; i++) {
+                        shader.executeElements(texBind, caps, nx, ny, nz);
+                    }
+                    glEndQuery(GL_TIME_ELAPSED);
+                    timing = false;
+                } catch (RuntimeException ex) {
+                    if (timing) {
+                        glEndQuery(GL_TIME_ELAPSED);
+                    }
+                    LOG.log(Level.WARNING, "Skipping "+shader.getName()+" local size "+Arrays.toString(c)
+                            +", which failed to execute", ex);
+                    continue;
+                }
+                long time = glGetQueryObjectui64(query, GL_QUERY_RESULT);
+                LOG.log(Level.FINE, "{0} local size {1}x{2}x{3}: {4} ns",
+                        new Object[] {shader.getName(), c[0], c[1], c[2], time / samples});
+                if (time < bestTime) {
+                    bestTime = time;
+                    best = c;
+                }
+            }
+        } finally {
+            glDeleteQueries(query);
+            shader.setAsyncCompile(async);
+            for (int i = 0; i < DEFINES.length; i++) {
+                shader.setDefine(DEFINES[i], original[i]);
+            }
+        }
+        if (best == null) {
+            throw new IllegalStateException("No candidate local size of "+shader.getName()+" is usable on this device.");
+        }
+        return best;
+    }
+    private static boolean isSupported(int[] size) {
+        long invocations = 1;
+        for (int i = 0; i < DEFINES.length; i++) {
+            int s = (i < size.length ? size[i] : 1);
+            if (s < 1 || s > glGetIntegeri(GL_MAX_COMPUTE_WORK_GROUP_SIZE, i)) {
+                return false;
+            }
+            invocations *= s;
+        }
+        return invocations <= glGetInteger(GL_MAX_COMPUTE_WORK_GROUP_INVOCATIONS);
+    }
+    private void apply(GLComputeShader shader, int[] size) {
+        for (int i = 0; i < DEFINES.length; i++) {
+            shader.setDefine(DEFINES[i], i < size.length ? size[i] : 1);
+        }
+    }
+    
+    private Properties getResults() {
+        if (!loaded) {
+            loaded = true;
+            if (file != null && file.isFile()) {
+                try (InputStream in = new FileInputStream(file)) {
+                    results.load(in);
+                } catch (IOException ex) {
+                    LOG.log(Level.WARNING, "Failed to read local size results "+file, ex);
+                }
+            }
+        }
+        return results;
+    }
+    private void save() {
+        if (file == null) {
+            return;
+        }
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (dir != null) {
+            dir.mkdirs();
+        }
+        try (OutputStream out = new FileOutputStream(file)) {
+            results.store(out, "Compute shader local sizes");
+        } catch (IOException ex) {
+            LOG.log(Level.WARNING, "Failed to write local size results "+file, ex);
+        }
+    }
+    private static int[] parse(String value) {
+        if (value == null) {
+            return null;
+        }
+        String[] args = value.trim().split(" ");
+        if (args.length != 3) {
+            return null;
+        }
+        try {
+            return new int[] {Integer.parseInt(args[0]), Integer.parseInt(args[1]), Integer.parseInt(args[2])};
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+    
+    /**
+     * Sets the number of timed dispatches per candidate.
+     * <p>
+     * Default is 5.
+     * 
+     * @param samples 
+     */
+    public void setSamples(int samples) {
+        this.samples = Math.max(samples, 1);
+    }
+    
+    /**
+     * Forgets all stored results, so shaders are timed again.
+     */
+    public void clear() {
+        getResults().clear();
+        save();
+    }
+    
+    public File getFile() {
+        return file;
+    }
+    public int getSamples() {
+        return samples;
+    }
+    
+}
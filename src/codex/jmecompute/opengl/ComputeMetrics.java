@@ -0,0 +1,215 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package codex.jmecompute.opengl;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * CPU-side counters of the compute layer.
+ * <p>
+ * Counters are striped ({@link LongAdder}), so incrementing them from the
+ * rendering thread is cheap and reading them from monitoring threads does
+ * not interfere. Counters are published through JMX under
+ * {@link #OBJECT_NAME} once {@link #register()} is called, and can be
+ * sampled locally with {@link #snapshot()}.
+ * 
+ * @author codex
+ */
+public class ComputeMetrics implements ComputeMetricsMBean {
+    
+    private static final Logger LOG = Logger.getLogger(ComputeMetrics.class.getName());
+    public static final String OBJECT_NAME = "codex.jmecompute:type=ComputeMetrics";
+    private static final ComputeMetrics INSTANCE = new ComputeMetrics();
+    
+    final LongAdder compiles = new LongAdder();
+    final LongAdder compileNanos = new LongAdder();
+    final LongAdder links = new LongAdder();
+    final LongAdder linkNanos = new LongAdder();
+    final LongAdder uniformUploads = new LongAdder();
+    final LongAdder uniformUploadsSkipped = new LongAdder();
+    final LongAdder textureBinds = new LongAdder();
+    final LongAdder textureBindsSkipped = new LongAdder();
+    final LongAdder dispatches = new LongAdder();
+    final LongAdder barriers = new LongAdder();
+    final LongAdder bytesUploaded = new LongAdder();
+    
+    private ComputeMetrics() {}
+    
+    /**
+     * Gets the metrics instance.
+     * 
+     * @return 
+     */
+    public static ComputeMetrics get() {
+        return INSTANCE;
+    }
+    
+    /**
+     * Registers the metrics with the platform MBean server.
+     * <p>
+     * Does nothing if already registered.
+     */
+    public static void register() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.registerMBean(INSTANCE, new ObjectName(OBJECT_NAME));
+        } catch (InstanceAlreadyExistsException ex) {
+        } catch (JMException ex) {
+            LOG.log(Level.WARNING, "Failed to register compute metrics MBean.", ex);
+        }
+    }
+    
+    /**
+     * Unregisters the metrics from the platform MBean server.
+     */
+    public static void unregister() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.unregisterMBean(new ObjectName(OBJECT_NAME));
+        } catch (InstanceNotFoundException ex) {
+        } catch (JMException ex) {
+            LOG.log(Level.WARNING, "Failed to unregister compute metrics MBean.", ex);
+        }
+    }
+    
+    /**
+     * Takes a snapshot of all counters.
+     * <p>
+     * Counters are read individually, so a snapshot taken while the compute
+     * layer is active is not atomic across counters.
+     * 
+     * @return 
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+    
+    @Override
+    public long getCompiles() {
+        return compiles.sum();
+    }
+    @Override
+    public long getCompileNanos() {
+        return compileNanos.sum();
+    }
+    @Override
+    public long getLinks() {
+        return links.sum();
+    }
+    @Override
+    public long getLinkNanos() {
+        return linkNanos.sum();
+    }
+    @Override
+    public long getUniformUploads() {
+        return uniformUploads.sum();
+    }
+    @Override
+    public long getUniformUploadsSkipped() {
+        return uniformUploadsSkipped.sum();
+    }
+    @Override
+    public long getTextureBinds() {
+        return textureBinds.sum();
+    }
+    @Override
+    public long getTextureBindsSkipped() {
+        return textureBindsSkipped.sum();
+    }
+    @Override
+    public long getDispatches() {
+        return dispatches.sum();
+    }
+    @Override
+    public long getBarriers() {
+        return barriers.sum();
+    }
+    @Override
+    public long getBytesUploaded() {
+        return bytesUploaded.sum();
+    }
+    @Override
+    public void reset() {
+        compiles.reset();
+        compileNanos.reset();
+        links.reset();
+        linkNanos.reset();
+        uniformUploads.reset();
+        uniformUploadsSkipped.reset();
+        textureBinds.reset();
+        textureBindsSkipped.reset();
+        dispatches.reset();
+        barriers.reset();
+        bytesUploaded.reset();
+    }
+    
+    /**
+     * Values of all counters at one point in time.
+     */
+    public static class Snapshot {
+        
+        public final long compiles, compileNanos, links, linkNanos;
+        public final long uniformUploads, uniformUploadsSkipped;
+        public final long textureBinds, textureBindsSkipped;
+        public final long dispatches, barriers, bytesUploaded;
+        
+        private Snapshot(ComputeMetrics m) {
+            compiles = m.getCompiles();
+            compileNanos = m.getCompileNanos();
+            links = m.getLinks();
+            linkNanos = m.getLinkNanos();
+            uniformUploads = m.getUniformUploads();
+            uniformUploadsSkipped = m.getUniformUploadsSkipped();
+            textureBinds = m.getTextureBinds();
+            textureBindsSkipped = m.getTextureBindsSkipped();
+            dispatches = m.getDispatches();
+            barriers = m.getBarriers();
+            bytesUploaded = m.getBytesUploaded();
+        }
+        private Snapshot(Snapshot a, Snapshot b) {
+            compiles = a.compiles - b.compiles;
+            compileNanos = a.compileNanos - b.compileNanos;
+            links = a.links - b.links;
+            linkNanos = a.linkNanos - b.linkNanos;
+            uniformUploads = a.uniformUploads - b.uniformUploads;
+            uniformUploadsSkipped = a.uniformUploadsSkipped - b.uniformUploadsSkipped;
+            textureBinds = a.textureBinds - b.textureBinds;
+            textureBindsSkipped = a.textureBindsSkipped - b.textureBindsSkipped;
+            dispatches = a.dispatches - b.dispatches;
+            barriers = a.barriers - b.barriers;
+            bytesUploaded = a.bytesUploaded - b.bytesUploaded;
+        }
+        
+        /**
+         * Gets the change of each counter since an earlier snapshot.
+         * 
+         * @param earlier
+         * @return 
+         */
+        public Snapshot since(Snapshot earlier) {
+            return new Snapshot(this, earlier);
+        }
+        
+        @Override
+        public String toString() {
+            return "ComputeMetrics[compiles=" + compiles + " (" + compileNanos / 1000000 + " ms)"
+                    + ", links=" + links + " (" + linkNanos / 1000000 + " ms)"
+                    + ", uniformUploads=" + uniformUploads + ", uniformUploadsSkipped=" + uniformUploadsSkipped
+                    + ", textureBinds=" + textureBinds + ", textureBindsSkipped=" + textureBindsSkipped
+                    + ", dispatches=" + dispatches + ", barriers=" + barriers
+                    + ", bytesUploaded=" + bytesUploaded + ']';
+        }
+        
+    }
+    
+}
@@ -0,0 +1,38 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package codex.jmecompute.opengl;
+
+/**
+ * JMX management interface of {@link ComputeMetrics}.
+ * 
+ * @author codex
+ */
+public interface ComputeMetricsMBean {
+    
+    public long getCompiles();
+    
+    public long getCompileNanos();
+    
+    public long getLinks();
+    
+    public long getLinkNanos();
+    
+    public long getUniformUploads();
+    
+    public long getUniformUploadsSkipped();
+    
+    public long getTextureBinds();
+    
+    public long getTextureBindsSkipped();
+    
+    public long getDispatches();
+    
+    public long getBarriers();
+    
+    public long getBytesUploaded();
+    
+    public void reset();
+    
+}
@@ -0,0 +1,311 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package codex.jmecompute.opengl;
+
+import com.jme3.renderer.Caps;
+import com.jme3.renderer.Renderer;
+import com.jme3.shader.VarType;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import static org.lwjgl.opengl.GL43.*;
+
+/**
+ * Ordered set of compute shader stages executed together as one batch.
+ * <p>
+ * Stages, their iteration counts and the parameters shared between them
+ * are declared once. When executed, redundant state changes are elided:
+ * a program is only bound when it differs from the previous stage's,
+ * iterated stages upload uniforms and bind resources once for all
+ * iterations, and shared textures already bound to a unit are not bound
+ * again. Shared parameters are single {@link ComputeUniform} instances,
+ * so a change is uploaded once per program that uses it.
+ * 
+ * @author codex
+ */
+public class ComputePipeline {
+    
+    private final String name;
+    private final ArrayList<Stage> stages = new ArrayList<>();
+    private final HashMap<String, ComputeUniform> shared = new HashMap<>();
+    private GLTextureBinder.CachingTextureBinder binder;
+    private GLTextureBinder binderSource;
+    private ComputeProfiler profiler;
+    
+    public ComputePipeline() {
+        this("ComputePipeline");
+    }
+    public ComputePipeline(String name) {
+        this.name = name;
+    }
+    
+    /**
+     * Adds a stage to the end of the pipeline.
+     * 
+     * @param name name of the stage
+     * @param shader
+     * @param x number of work groups on the X axis
+     * @param y number of work groups on the Y axis
+     * @param z number of work groups on the Z axis
+     * @return the added stage
+     */
+    public Stage addStage(String name, GLComputeShader shader, int x, int y, int z) {
+        Stage s = new Stage(this.name + '/' + name, name, shader, x, y, z);
+        for (ComputeUniform u : shared.values()) {
+            shader.set(u);
+        }
+        stages.add(s);
+        return s;
+    }
+    
+    /**
+     * Declares a parameter shared by all stages.
+     * <p>
+     * The shared parameter replaces any parameter of the same name
+     * in each stage's shader.
+     * 
+     * @param name
+     * @param type
+     * @param value
+     * @return the shared uniform
+     */
+    public ComputeUniform share(String name, VarType type, Object value) {
+        ComputeUniform u = shared.get(name);
+        if (u == null) {
+            u = new ComputeUniform(name, type);
+            shared.put(name, u);
+            for (Stage s : stages) {
+                s.shader.set(u);
+            }
+        }
+        u.setValue(type, value);
+        return u;
+    }
+    
+    /**
+     * Sets the value of a shared parameter.
+     * 
+     * @param name
+     * @param value 
+     */
+    public void set(String name, Object value) {
+        ComputeUniform u = shared.get(name);
+        if (u == null) {
+            throw new NullPointerException("Shared parameter \""+name+"\" does not exist.");
+        }
+        u.setValue(value);
+    }
+    
+    /**
+     * Executes all enabled stages in order.
+     * 
+     * @param renderer 
+     */
+    public void execute(Renderer renderer) {
+        execute(GLTextureBinder.useRenderer(renderer), renderer.getCaps());
+    }
+    
+    /**
+     * Executes all enabled stages in order.
+     * 
+     * @param texBind binds texture uniforms to the OpenGL context
+     * @param caps hardware capabilities
+     */
+    public void execute(GLTextureBinder texBind, EnumSet<Caps> caps) {
+        if (binder == null || binderSource != texBind) {
+            binder = new GLTextureBinder.CachingTextureBinder(texBind);
+            binderSource = texBind;
+        }
+        binder.reset();
+        int program = -1;
+        for (Stage s : stages) {
+            if (!s.isEnabled()) {
+                continue;
+            }
+            if (!s.shader.prepare(caps)) {
+                // still compiling and no fallback
+                continue;
+            }
+            int p = s.shader.getVariant().getProgram();
+            if (p != program) {
+                glUseProgram(p);
+                program = p;
+            }
+            s.shader.bindResources(binder);
+            int token = (profiler != null ? profiler.begin() : 0);
+            for (int i = 0; i < s.iterations; i++) {
+                if (i > 0 && s.swaps.length > 0) {
+                    s.shader.bindResources(binder);
+                }
+                if (s.indirect != null) {
+                    s.shader.dispatchIndirect(s.indirect, s.indirectOffset);
+                } else {
+                    s.shader.dispatch(s.x, s.y, s.z);
+                }
+                for (ComputeResourceSet<?> r : s.swaps) {
+                    r.swap();
+                }
+            }
+            if (token != 0) {
+                profiler.end(token, s.label);
+            }
+        }
+    }
+    
+    /**
+     * Sets the profiler measuring the GPU time of each stage, including all its iterations.
+     * <p>
+     * Results are collected under {@code <pipeline name>/<stage name>}.
+     * 
+     * @param profiler profiler, or null to disable profiling
+     */
+    public void setProfiler(ComputeProfiler profiler) {
+        this.profiler = profiler;
+    }
+    
+    public String getName() {
+        return name;
+    }
+    public ComputeProfiler getProfiler() {
+        return profiler;
+    }
+    
+    /**
+     * Gets the stage at the name.
+     * 
+     * @param name
+     * @return stage, or null if none exists
+     */
+    public Stage getStage(String name) {
+        for (Stage s : stages) {
+            if (s.name.equals(name)) {
+                return s;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Gets all stages in execution order.
+     * 
+     * @return 
+     */
+    public List<Stage> getStages() {
+        return Collections.unmodifiableList(stages);
+    }
+    
+    /**
+     * Single shader dispatch within a pipeline.
+     */
+    public static class Stage {
+        
+        private final String label, name;
+        private final GLComputeShader shader;
+        private int x, y, z;
+        private int iterations = 1;
+        private ComputeBuffer indirect;
+        private long indirectOffset;
+        private BooleanSupplier enabled;
+        private ComputeResourceSet<?>[] swaps = new ComputeResourceSet<?>[0];
+        
+        private Stage(String label, String name, GLComputeShader shader, int x, int y, int z) {
+            this.label = label;
+            this.name = name;
+            this.shader = shader;
+            setWorkGroups(x, y, z);
+        }
+        
+        /**
+         * Sets the number of work groups dispatched per iteration.
+         * 
+         * @param x
+         * @param y
+         * @param z
+         * @return this stage
+         */
+        public final Stage setWorkGroups(int x, int y, int z) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.indirect = null;
+            return this;
+        }
+        
+        /**
+         * Sets the buffer the work group counts are read from on the GPU.
+         * 
+         * @param indirect buffer holding three consecutive unsigned ints {@code (x, y, z)}
+         * @param offset byte offset of the work group counts
+         * @return this stage
+         * @see GLComputeShader#execute(GLTextureBinder, EnumSet, ComputeBuffer, long)
+         */
+        public Stage setWorkGroups(ComputeBuffer indirect, long offset) {
+            this.indirect = indirect;
+            this.indirectOffset = offset;
+            return this;
+        }
+        
+        /**
+         * Sets how many times this stage is dispatched per execution.
+         * <p>
+         * Iterations share one program bind and one resource update,
+         * unless resource sets are swapped between them.
+         * 
+         * @param iterations
+         * @return this stage
+         */
+        public Stage setIterations(int iterations) {
+            if (iterations < 0) {
+                throw new IllegalArgumentException("Iterations cannot be negative.");
+            }
+            this.iterations = iterations;
+            return this;
+        }
+        
+        /**
+         * Sets the resource sets swapped after every iteration of this stage.
+         * <p>
+         * Only the textures and buffers are bound again between iterations;
+         * uniforms are not uploaded again.
+         * 
+         * @param sets
+         * @return this stage
+         * @see ComputeResourceSet#swap()
+         */
+        public Stage setSwaps(ComputeResourceSet<?>... sets) {
+            this.swaps = sets.clone();
+            return this;
+        }
+        
+        /**
+         * Sets the predicate deciding whether this stage executes.
+         * 
+         * @param enabled predicate, or null to always execute
+         * @return this stage
+         */
+        public Stage setEnabled(BooleanSupplier enabled) {
+            this.enabled = enabled;
+            return this;
+        }
+        
+        public boolean isEnabled() {
+            return iterations > 0 && (enabled == null || enabled.getAsBoolean());
+        }
+        public String getName() {
+            return name;
+        }
+        public GLComputeShader getShader() {
+            return shader;
+        }
+        public int getIterations() {
+            return iterations;
+        }
+        
+    }
+    
+}
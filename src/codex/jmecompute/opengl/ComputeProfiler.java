@@ -0,0 +1,224 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package codex.jmecompute.opengl;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import static org.lwjgl.opengl.GL43.*;
+
+/**
+ * Measures GPU time of compute dispatches with timestamp queries.
+ * <p>
+ * Each measured region takes two queries from a pool. Results are collected
+ * by {@link #update()} once the GPU reports them available, usually a few
+ * frames later, so profiling never stalls the pipeline. Queries of regions
+ * whose results have been read are returned to the pool.
+ * <p>
+ * All methods must be called on the rendering thread, and {@link #update()}
+ * should be called once per frame.
+ * 
+ * @author codex
+ */
+public class ComputeProfiler {
+    
+    public static final int DEFAULT_WINDOW = 120;
+    
+    private final LinkedHashMap<String, ComputeTimingStats> stats = new LinkedHashMap<>();
+    private final int window;
+    private int[] pool = new int[0];
+    private int poolSize = 0;
+    private int[] startQueries = new int[32], endQueries = new int[32];
+    private String[] labels = new String[32];
+    private int head = 0, tail = 0, pending = 0;
+    private boolean enabled = true;
+    
+    public ComputeProfiler() {
+        this(DEFAULT_WINDOW);
+    }
+    
+    /**
+     * 
+     * @param window number of recent samples statistics are computed over
+     */
+    public ComputeProfiler(int window) {
+        this.window = window;
+    }
+    
+    /**
+     * Begins measuring a region.
+     * <p>
+     * Regions may be nested, but each begin must be followed by its end
+     * before another region at the same level begins.
+     * 
+     * @return token to pass to {@link #end(int, String)}
+     */
+    public int begin() {
+        if (!enabled) {
+            return 0;
+        }
+        int q = acquire();
+        glQueryCounter(q, GL_TIMESTAMP);
+        return q;
+    }
+    
+    /**
+     * Ends measuring a region.
+     * 
+     * @param token token returned by {@link #begin()}
+     * @param label label of the region
+     */
+    public void end(int token, String label) {
+        if (token == 0) {
+            return;
+        }
+        int q = acquire();
+        glQueryCounter(q, GL_TIMESTAMP);
+        push(token, q, label);
+    }
+    
+    /**
+     * Collects all available results without waiting on the GPU.
+     */
+    public void update() {
+        while (pending > 0) {
+            int end = endQueries[head];
+            if (glGetQueryObjecti(end, GL_QUERY_RESULT_AVAILABLE) == GL_FALSE) {
+                // results become available in submission order
+                break;
+            }
+            int start = startQueries[head];
+            long time = glGetQueryObjectui64(end, GL_QUERY_RESULT) - glGetQueryObjectui64(start, GL_QUERY_RESULT);
+            getOrCreateStats(labels[head]).add(time);
+            labels[head] = null;
+            release(start);
+            release(end);
+            head = (head + 1) % labels.length;
+            pending--;
+        }
+    }
+    
+    /**
+     * Deletes all pooled queries and discards pending results.
+     */
+    public void cleanup() {
+        while (pending > 0) {
+            release(startQueries[head]);
+            release(endQueries[head]);
+            labels[head] = null;
+            head = (head + 1) % labels.length;
+            pending--;
+        }
+        if (poolSize > 0) {
+            glDeleteQueries(Arrays.copyOf(pool, poolSize));
+            poolSize = 0;
+        }
+        head = tail = 0;
+    }
+    
+    private int acquire() {
+        if (poolSize == 0) {
+            int[] ids = new int[16];
+            glGenQueries(ids);
+            ensurePool(ids.length);
+            for (int id : ids) {
+                pool[poolSize++] = id;
+            }
+        }
+        return pool[--poolSize];
+    }
+    private void release(int query) {
+        ensurePool(1);
+        pool[poolSize++] = query;
+    }
+    private void ensurePool(int extra) {
+        if (poolSize + extra > pool.length) {
+            pool = Arrays.copyOf(pool, Math.max(poolSize + extra, pool.length << 1));
+        }
+    }
+    private void push(int start, int end, String label) {
+        if (pending == labels.length) {
+            int n = labels.length;
+            int[] s = new int[n << 1], e = new int[n << 1];
+            String[] l = new String[n << 1];
+            for (int i = 0; i < n; i++) {
+                int j = (head + i) % n;
+                s[i] = startQueries[j];
+                e[i] = endQueries[j];
+                l[i] = labels[j];
+            }
+            startQueries = s;
+            endQueries = e;
+            labels = l;
+            head = 0;
+            tail = n;
+        }
+        startQueries[tail] = start;
+        endQueries[tail] = end;
+        labels[tail] = label;
+        tail = (tail + 1) % labels.length;
+        pending++;
+    }
+    private ComputeTimingStats getOrCreateStats(String label) {
+        ComputeTimingStats s = stats.get(label);
+        if (s == null) {
+            s = new ComputeTimingStats(label, window);
+            stats.put(label, s);
+        }
+        return s;
+    }
+    
+    /**
+     * Enables or disables measuring new regions.
+     * <p>
+     * Default is true.
+     * 
+     * @param enabled 
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+    
+    /**
+     * Discards all collected statistics.
+     */
+    public void reset() {
+        stats.clear();
+    }
+    
+    /**
+     * Gets the statistics of the label.
+     * 
+     * @param label
+     * @return statistics, or null if no results for the label were collected
+     */
+    public ComputeTimingStats getStats(String label) {
+        return stats.get(label);
+    }
+    
+    /**
+     * Gets the statistics of all labels, in the order they were first collected.
+     * 
+     * @return 
+     */
+    public Collection<ComputeTimingStats> getAllStats() {
+        return Collections.unmodifiableCollection(stats.values());
+    }
+    
+    /**
+     * Gets the number of measured regions whose results are not yet collected.
+     * 
+     * @return 
+     */
+    public int getPending() {
+        return pending;
+    }
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+}
@@ -0,0 +1,79 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package codex.jmecompute.opengl;
+
+import com.jme3.app.Application;
+import com.jme3.app.SimpleApplication;
+import com.jme3.app.state.BaseAppState;
+import com.jme3.font.BitmapFont;
+import com.jme3.font.BitmapText;
+import com.jme3.scene.Node;
+
+/**
+ * Collects profiler results each frame and displays them as a text overlay.
+ * 
+ * @author codex
+ */
+public class ComputeProfilerState extends BaseAppState {
+    
+    private final ComputeProfiler profiler;
+    private final StringBuilder builder = new StringBuilder();
+    private Node guiNode;
+    private BitmapText text;
+    private float interval = 0.5f;
+    private float time = 0;
+    
+    public ComputeProfilerState(ComputeProfiler profiler) {
+        this.profiler = profiler;
+    }
+    
+    @Override
+    protected void initialize(Application app) {
+        guiNode = ((SimpleApplication)app).getGuiNode();
+        BitmapFont font = app.getAssetManager().loadFont("Interface/Fonts/Default.fnt");
+        text = new BitmapText(font);
+        text.setLocalTranslation(0, app.getCamera().getHeight(), 0);
+    }
+    @Override
+    protected void cleanup(Application app) {}
+    @Override
+    protected void onEnable() {
+        guiNode.attachChild(text);
+    }
+    @Override
+    protected void onDisable() {
+        text.removeFromParent();
+    }
+    @Override
+    public void update(float tpf) {
+        profiler.update();
+        time += tpf;
+        if (time >= interval) {
+            time = 0;
+            builder.setLength(0);
+            for (ComputeTimingStats s : profiler.getAllStats()) {
+                builder.append(s).append('\n');
+            }
+            text.setText(builder);
+        }
+    }
+    
+    /**
+     * Sets the number of seconds between overlay refreshes.
+     * 
+     * @param interval 
+     */
+    public void setInterval(float interval) {
+        this.interval = interval;
+    }
+    
+    public ComputeProfiler getProfiler() {
+        return profiler;
+    }
+    public float getInterval() {
+        return interval;
+    }
+    
+}
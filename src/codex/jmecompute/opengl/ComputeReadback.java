@@ -0,0 +1,281 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package codex.jmecompute.opengl;
+
+import com.jme3.texture.Image;
+import com.jme3.texture.Texture;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL;
+import static org.lwjgl.opengl.GL43.*;
+import static org.lwjgl.opengl.GL45.glGetTextureImage;
+
+/**
+ * Reads compute results back to the CPU without stalling the pipeline.
+ * <p>
+ * Each read copies the resource into a staging buffer and inserts a fence.
+ * {@link #update()} polls the fences without waiting and completes the
+ * returned future once the GPU has finished the copy, usually one or two
+ * frames later. Staging buffers are kept in a small ring, so only a limited
+ * number of reads may be in flight at once.
+ * <p>
+ * All methods must be called on the rendering thread. Futures are completed
+ * on the rendering thread, so lengthy work should use the async variants of
+ * {@link CompletableFuture}.
+ * 
+ * @author codex
+ */
+public class ComputeReadback {
+    
+    public static final int DEFAULT_RING_SIZE = 3;
+    
+    private final Slot[] ring;
+    private int next = 0;
+    private int pending = 0;
+    
+    public ComputeReadback() {
+        this(DEFAULT_RING_SIZE);
+    }
+    public ComputeReadback(int ringSize) {
+        if (ringSize < 1) {
+            throw new IllegalArgumentException("Ring size must be at least one.");
+        }
+        ring = new Slot[ringSize];
+        for (int i = 0; i < ring.length; i++) {
+            ring[i] = new Slot();
+        }
+    }
+    
+    /**
+     * Reads a level of the texture.
+     * 
+     * @param texture texture already uploaded to the GPU
+     * @param level mipmap level
+     * @param format pixel format of the result (i.e. {@code GL_RGBA})
+     * @param type component type of the result (i.e. {@code GL_FLOAT})
+     * @param bytesPerPixel size of one pixel of the result in bytes
+     * @return future completed with the pixel data, rows tightly packed, or
+     * failed if the read causes a GL error
+     */
+    public CompletableFuture<ByteBuffer> read(Texture texture, int level, int format, int type, int bytesPerPixel) {
+        Image img = texture.getImage();
+        if (img.getId() < 0) {
+            return failed(new IllegalStateException("Texture has not been uploaded."));
+        }
+        int target = getTarget(texture.getType());
+        int depth = 1;
+        if (texture.getType() == Texture.Type.ThreeDimensional) {
+            depth = Math.max(img.getDepth() >> level, 1);
+        } else if (texture.getType() == Texture.Type.TwoDimensionalArray) {
+            // array images usually have a depth of 0 and one buffer per layer
+            depth = Math.max(Math.max(img.getDepth(), img.getData().size()), 1);
+        }
+        int size = Math.max(img.getWidth() >> level, 1) * Math.max(img.getHeight() >> level, 1) * depth * bytesPerPixel;
+        Slot slot = acquire();
+        if (slot == null) {
+            return failed(new IllegalStateException("All "+ring.length+" readback buffers are in flight."));
+        }
+        ComputeBarriers.get().require(texture, GL_TEXTURE_UPDATE_BARRIER_BIT);
+        slot.reserve(GL_PIXEL_PACK_BUFFER, size);
+        // rows are tightly packed in the staging buffer, whatever the pixel size
+        int alignment = glGetInteger(GL_PACK_ALIGNMENT);
+        glPixelStorei(GL_PACK_ALIGNMENT, 1);
+        try {
+            if (GL.getCapabilities().OpenGL45) {
+                glGetTextureImage(img.getId(), level, format, type, size, 0L);
+            } else {
+                int prev = glGetInteger(getBindingQuery(target));
+                glBindTexture(target, img.getId());
+                glGetTexImage(target, level, format, type, 0L);
+                glBindTexture(target, prev);
+            }
+        } finally {
+            glPixelStorei(GL_PACK_ALIGNMENT, alignment);
+            glBindBuffer(GL_PIXEL_PACK_BUFFER, 0);
+        }
+        int error = glGetError();
+        if (error != GL_NO_ERROR) {
+            return failed(new IllegalStateException("Reading texture failed with GL error 0x"+Integer.toHexString(error)));
+        }
+        return submit(slot, GL_PIXEL_PACK_BUFFER, size);
+    }
+    
+    /**
+     * Reads a range of the storage buffer.
+     * 
+     * @param buffer
+     * @param offset byte offset
+     * @param length number of bytes
+     * @return future completed with the buffer contents, or failed if the
+     * read causes a GL error
+     */
+    public CompletableFuture<ByteBuffer> read(ComputeBuffer buffer, int offset, int length) {
+        if (buffer.getId() < 0) {
+            return failed(new IllegalStateException("Buffer has not been allocated."));
+        }
+        Slot slot = acquire();
+        if (slot == null) {
+            return failed(new IllegalStateException("All "+ring.length+" readback buffers are in flight."));
+        }
+        ComputeBarriers.get().require(buffer, GL_BUFFER_UPDATE_BARRIER_BIT);
+        slot.reserve(GL_COPY_WRITE_BUFFER, length);
+        glBindBuffer(GL_COPY_READ_BUFFER, buffer.getId());
+        glCopyBufferSubData(GL_COPY_READ_BUFFER, GL_COPY_WRITE_BUFFER, offset, 0, length);
+        glBindBuffer(GL_COPY_READ_BUFFER, 0);
+        glBindBuffer(GL_COPY_WRITE_BUFFER, 0);
+        int error = glGetError();
+        if (error != GL_NO_ERROR) {
+            return failed(new IllegalStateException("Reading buffer failed with GL error 0x"+Integer.toHexString(error)));
+        }
+        return submit(slot, GL_COPY_WRITE_BUFFER, length);
+    }
+    
+    /**
+     * Completes the futures of all reads the GPU has finished.
+     * <p>
+     * Never waits on the GPU. Should be called once per frame.
+     */
+    public void update() {
+        for (int i = 0; i < ring.length && pending > 0; i++) {
+            // poll in submission order, oldest first
+            Slot s = ring[(next + i) % ring.length];
+            if (s.future != null && s.poll()) {
+                pending--;
+            }
+        }
+    }
+    
+    /**
+     * Deletes all staging buffers. Reads still in flight are cancelled.
+     */
+    public void cleanup() {
+        for (Slot s : ring) {
+            s.delete();
+        }
+        pending = 0;
+    }
+    
+    private Slot acquire() {
+        for (int i = 0; i < ring.length; i++) {
+            Slot s = ring[(next + i) % ring.length];
+            if (s.future == null) {
+                next = (next + i + 1) % ring.length;
+                return s;
+            }
+        }
+        return null;
+    }
+    private CompletableFuture<ByteBuffer> submit(Slot slot, int target, int size) {
+        // only counted once submitted, so a failed read leaves the slot free
+        CompletableFuture<ByteBuffer> f = slot.submit(target, size);
+        pending++;
+        return f;
+    }
+    private static CompletableFuture<ByteBuffer> failed(Throwable ex) {
+        CompletableFuture<ByteBuffer> f = new CompletableFuture<>();
+        f.completeExceptionally(ex);
+        return f;
+    }
+    private static int getTarget(Texture.Type type) {
+        switch (type) {
+            case TwoDimensional: return GL_TEXTURE_2D;
+            case TwoDimensionalArray: return GL_TEXTURE_2D_ARRAY;
+            case ThreeDimensional: return GL_TEXTURE_3D;
+            default: throw new UnsupportedOperationException("Cannot read back texture type "+type);
+        }
+    }
+    private static int getBindingQuery(int target) {
+        switch (target) {
+            case GL_TEXTURE_2D_ARRAY: return GL_TEXTURE_BINDING_2D_ARRAY;
+            case GL_TEXTURE_3D: return GL_TEXTURE_BINDING_3D;
+            default: return GL_TEXTURE_BINDING_2D;
+        }
+    }
+    
+    /**
+     * Gets the number of reads currently in flight.
+     * 
+     * @return 
+     */
+    public int getPending() {
+        return pending;
+    }
+    
+    /**
+     * Returns true if no staging buffer is free for another read.
+     * 
+     * @return 
+     */
+    public boolean isFull() {
+        return pending >= ring.length;
+    }
+    
+    private static class Slot {
+        
+        private int id = -1;
+        private int capacity = 0;
+        private int target, size;
+        private long sync = 0;
+        private CompletableFuture<ByteBuffer> future;
+        
+        private void reserve(int target, int size) {
+            if (id < 0) {
+                id = glGenBuffers();
+            }
+            glBindBuffer(target, id);
+            if (size > capacity) {
+                glBufferData(target, size, GL_STREAM_READ);
+                capacity = size;
+            }
+        }
+        private CompletableFuture<ByteBuffer> submit(int target, int size) {
+            this.target = target;
+            this.size = size;
+            sync = glFenceSync(GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+            future = new CompletableFuture<>();
+            return future;
+        }
+        private boolean poll() {
+            int status = glClientWaitSync(sync, GL_SYNC_FLUSH_COMMANDS_BIT, 0);
+            if (status == GL_TIMEOUT_EXPIRED) {
+                return false;
+            }
+            glDeleteSync(sync);
+            sync = 0;
+            CompletableFuture<ByteBuffer> f = future;
+            future = null;
+            if (status == GL_WAIT_FAILED) {
+                f.completeExceptionally(new IllegalStateException("Failed waiting on readback fence."));
+                return true;
+            }
+            glBindBuffer(target, id);
+            ByteBuffer mapped = glMapBufferRange(target, 0, size, GL_MAP_READ_BIT);
+            ByteBuffer result = BufferUtils.createByteBuffer(size);
+            result.put(mapped).flip();
+            glUnmapBuffer(target);
+            glBindBuffer(target, 0);
+            f.complete(result);
+            return true;
+        }
+        private void delete() {
+            if (sync != 0) {
+                glDeleteSync(sync);
+                sync = 0;
+            }
+            if (future != null) {
+                future.cancel(false);
+                future = null;
+            }
+            if (id >= 0) {
+                glDeleteBuffers(id);
+                id = -1;
+                capacity = 0;
+            }
+        }
+        
+    }
+    
+}
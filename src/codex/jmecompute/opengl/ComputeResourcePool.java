@@ -0,0 +1,600 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package codex.jmecompute.opengl;
+
+import com.jme3.renderer.Renderer;
+import com.jme3.texture.Image;
+import com.jme3.texture.Texture;
+import com.jme3.texture.Texture2D;
+import com.jme3.texture.Texture3D;
+import com.jme3.texture.TextureArray;
+import com.jme3.texture.image.ColorSpace;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import static org.lwjgl.opengl.GL43.*;
+
+/**
+ * Recycles scratch textures and storage buffers between compute passes.
+ * <p>
+ * Resources are leased for the current frame and returned to the pool by
+ * {@link #endFrame()}, or earlier by {@code release}. Buffers are pooled by
+ * power of two size class and textures by type, format and size, so once
+ * a frame's resources have been created, later frames of the same shape
+ * neither allocate GPU memory nor Java objects.
+ * <p>
+ * The pool keeps its resources within a memory budget. Idle resources are
+ * deleted least recently used first when a new one would exceed the budget,
+ * and after going unused for {@link #setMaxIdleFrames(int) a number of frames}.
+ * <p>
+ * Pooled resources must not be deleted or resized by users. Their contents
+ * are undefined when leased. Must only be used on the rendering thread.
+ * <pre>{@code
+ * ComputeBuffer scratch = pool.acquireBuffer(count * 4);
+ * Texture2D temp = pool.acquireTexture2D(Image.Format.RGBA16F, width, height);
+ * ...
+ * pool.endFrame();
+ * }</pre>
+ * 
+ * @author codex
+ */
+public class ComputeResourcePool {
+    
+    public static final int DEFAULT_MAX_IDLE_FRAMES = 120;
+    public static final int MIN_BUFFER_CLASS = 8, MAX_BUFFER_CLASS = 30;
+    
+    private final Bucket[] bufferBuckets = new Bucket[MAX_BUFFER_CLASS + 1];
+    private final HashMap<TextureKey, Bucket> textureBuckets = new HashMap<>();
+    private final TextureKey probe = new TextureKey();
+    private final IdentityHashMap<Object, Entry> entries = new IdentityHashMap<>();
+    private final ArrayList<Entry> leased = new ArrayList<>();
+    private Entry lruHead, lruTail;
+    private Renderer renderer;
+    private DirectTextureBinder textureBinder;
+    private long budget;
+    private int maxIdleFrames = DEFAULT_MAX_IDLE_FRAMES;
+    private long frame = 0;
+    private long currentBytes = 0, peakBytes = 0, leasedBytes = 0;
+    private long allocations = 0, reuses = 0, evictions = 0;
+    
+    /**
+     * 
+     * @param budget maximum number of bytes of GPU memory held by the pool
+     */
+    public ComputeResourcePool(long budget) {
+        setBudget(budget);
+    }
+    
+    /**
+     * Leases a storage buffer of at least the size for the current frame.
+     * 
+     * @param bytes minimum capacity in bytes
+     * @return 
+     * @throws IllegalStateException if the buffer would exceed the budget
+     * even after deleting all idle resources
+     */
+    public ComputeBuffer acquireBuffer(int bytes) {
+        int c = getSizeClass(bytes);
+        Bucket bucket = bufferBuckets[c];
+        if (bucket == null) {
+            bucket = bufferBuckets[c] = new Bucket();
+        }
+        Entry e = bucket.pop();
+        if (e == null) {
+            long size = 1L << c;
+            reserve(size);
+            ComputeBuffer b = new ComputeBuffer((int)size, false);
+            b.initialize();
+            e = register(bucket, b, size);
+        } else {
+            unlink(e);
+            reuses++;
+        }
+        lease(e);
+        return (ComputeBuffer)e.resource;
+    }
+    
+    /**
+     * Leases a two dimensional texture for the current frame.
+     * 
+     * @param format
+     * @param width
+     * @param height
+     * @return 
+     * @throws IllegalStateException if the texture would exceed the budget
+     * even after deleting all idle resources
+     */
+    public Texture2D acquireTexture2D(Image.Format format, int width, int height) {
+        return (Texture2D)acquireTexture(Texture.Type.TwoDimensional, format, width, height, 1);
+    }
+    
+    /**
+     * Leases a three dimensional texture for the current frame.
+     * 
+     * @param format
+     * @param width
+     * @param height
+     * @param depth
+     * @return 
+     * @throws IllegalStateException if the texture would exceed the budget
+     * even after deleting all idle resources
+     */
+    public Texture3D acquireTexture3D(Image.Format format, int width, int height, int depth) {
+        return (Texture3D)acquireTexture(Texture.Type.ThreeDimensional, format, width, height, depth);
+    }
+    
+    /**
+     * Leases a two dimensional texture array for the current frame.
+     * <p>
+     * Storage for all layers is allocated when the array is created, since
+     * the renderer would allocate only as many layers as the image has data
+     * buffers. Formats are limited to those {@link DirectTextureBinder} supports.
+     * 
+     * @param format
+     * @param width
+     * @param height
+     * @param layers
+     * @return 
+     * @throws IllegalStateException if the texture would exceed the budget
+     * even after deleting all idle resources
+     */
+    public TextureArray acquireTextureArray(Image.Format format, int width, int height, int layers) {
+        return (TextureArray)acquireTexture(Texture.Type.TwoDimensionalArray, format, width, height, layers);
+    }
+    
+    private Texture acquireTexture(Texture.Type type, Image.Format format, int width, int height, int depth) {
+        if (width <= 0 || height <= 0 || depth <= 0) {
+            throw new IllegalArgumentException("Texture dimensions must be positive.");
+        }
+        Bucket bucket = textureBuckets.get(probe.set(type, format, width, height, depth));
+        if (bucket == null) {
+            bucket = new Bucket();
+            textureBuckets.put(new TextureKey().set(type, format, width, height, depth), bucket);
+        }
+        Entry e = bucket.pop();
+        if (e == null) {
+            long size = getTextureBytes(format, width, height, depth);
+            reserve(size);
+            Texture tex = createTexture(type, format, width, height, depth);
+            if (type == Texture.Type.TwoDimensionalArray) {
+                allocateLayers(tex.getImage());
+            }
+            e = register(bucket, tex, size);
+        } else {
+            unlink(e);
+            reuses++;
+        }
+        lease(e);
+        return (Texture)e.resource;
+    }
+    static long getTextureBytes(Image.Format format, int width, int height, int depth) {
+        return (long)width * height * depth * format.getBitsPerPixel() / 8;
+    }
+    static Texture createTexture(Texture.Type type, Image.Format format, int width, int height, int depth) {
+        Texture tex;
+        switch (type) {
+            case TwoDimensional:
+                tex = new Texture2D(new Image(format, width, height, (ByteBuffer)null, ColorSpace.Linear));
+                break;
+            case ThreeDimensional:
+                tex = new Texture3D(new Image(format, width, height, depth, new ArrayList<>(), ColorSpace.Linear));
+                break;
+            default:
+                tex = new TextureArray();
+                tex.setImage(new Image(format, width, height, depth, new ArrayList<>(), ColorSpace.Linear));
+        }
+        tex.setMinFilter(Texture.MinFilter.BilinearNoMipMaps);
+        tex.setMagFilter(Texture.MagFilter.Bilinear);
+        return tex;
+    }
+    private static void allocateLayers(Image img) {
+        // the renderer sizes array storage by the number of data buffers, not the depth
+        int[] format = DirectTextureBinder.getUploadFormat(img.getFormat());
+        int prev = glGetInteger(GL_TEXTURE_BINDING_2D_ARRAY);
+        int id = glGenTextures();
+        glBindTexture(GL_TEXTURE_2D_ARRAY, id);
+        glTexParameteri(GL_TEXTURE_2D_ARRAY, GL_TEXTURE_MAX_LEVEL, 0);
+        glTexStorage3D(GL_TEXTURE_2D_ARRAY, 1, format[0], img.getWidth(), img.getHeight(), img.getDepth());
+        glBindTexture(GL_TEXTURE_2D_ARRAY, prev);
+        img.setId(id);
+        img.clearUpdateNeeded();
+    }
+    
+    /**
+     * Returns a leased buffer to the pool before the end of the frame.
+     * 
+     * @param buffer
+     */
+    public void release(ComputeBuffer buffer) {
+        releaseResource(buffer);
+    }
+    
+    /**
+     * Returns a leased texture to the pool before the end of the frame.
+     * 
+     * @param texture
+     */
+    public void release(Texture texture) {
+        releaseResource(texture);
+    }
+    
+    private void releaseResource(Object resource) {
+        Entry e = entries.get(resource);
+        if (e == null || !e.leased) {
+            throw new IllegalArgumentException("Resource is not leased from this pool.");
+        }
+        free(e);
+    }
+    
+    /**
+     * Returns all resources leased this frame to the pool, and deletes
+     * resources which have been idle for too long.
+     * <p>
+     * Call once per frame, after the frame's compute work has been submitted.
+     * Returned resources may be leased again immediately, since OpenGL orders
+     * later dispatches after the ones still using them.
+     */
+    public void endFrame() {
+        for (int i = 0, n = leased.size(); i < n; i++) {
+            Entry e = leased.get(i);
+            if (e.leased) {
+                free(e);
+            }
+        }
+        leased.clear();
+        frame++;
+        while (lruHead != null && frame - lruHead.lastUsed > maxIdleFrames) {
+            evict(lruHead);
+        }
+    }
+    
+    /**
+     * Deletes all idle resources.
+     */
+    public void trim() {
+        while (lruHead != null) {
+            evict(lruHead);
+        }
+    }
+    
+    /**
+     * Deletes all resources, including leased ones.
+     */
+    public void cleanup() {
+        for (Entry e : entries.values()) {
+            delete(e.resource);
+        }
+        entries.clear();
+        leased.clear();
+        for (int i = 0; i < bufferBuckets.length; i++) {
+            bufferBuckets[i] = null;
+        }
+        textureBuckets.clear();
+        lruHead = lruTail = null;
+        currentBytes = leasedBytes = 0;
+    }
+    
+    private void reserve(long bytes) {
+        while (currentBytes + bytes > budget && lruHead != null) {
+            evict(lruHead);
+        }
+        if (currentBytes + bytes > budget) {
+            throw new IllegalStateException("Allocating "+bytes+" bytes exceeds the pool budget of "
+                    +budget+" bytes, with "+leasedBytes+" bytes leased.");
+        }
+    }
+    private Entry register(Bucket bucket, Object resource, long bytes) {
+        Entry e = new Entry(bucket, resource, bytes);
+        entries.put(resource, e);
+        currentBytes += bytes;
+        peakBytes = Math.max(peakBytes, currentBytes);
+        allocations++;
+        return e;
+    }
+    private void lease(Entry e) {
+        e.leased = true;
+        leasedBytes += e.bytes;
+        leased.add(e);
+    }
+    private void free(Entry e) {
+        e.leased = false;
+        e.lastUsed = frame;
+        leasedBytes -= e.bytes;
+        e.bucket.push(e);
+        // append to the tail, so the head is always least recently used
+        e.prev = lruTail;
+        e.next = null;
+        if (lruTail != null) {
+            lruTail.next = e;
+        } else {
+            lruHead = e;
+        }
+        lruTail = e;
+    }
+    private void unlink(Entry e) {
+        if (e.prev != null) {
+            e.prev.next = e.next;
+        } else {
+            lruHead = e.next;
+        }
+        if (e.next != null) {
+            e.next.prev = e.prev;
+        } else {
+            lruTail = e.prev;
+        }
+        e.prev = e.next = null;
+    }
+    private void evict(Entry e) {
+        unlink(e);
+        e.bucket.remove(e);
+        entries.remove(e.resource);
+        delete(e.resource);
+        currentBytes -= e.bytes;
+        evictions++;
+    }
+    private void delete(Object resource) {
+        if (resource instanceof ComputeBuffer) {
+            ((ComputeBuffer)resource).delete();
+            return;
+        }
+        Image img = ((Texture)resource).getImage();
+        if (img.getId() < 0) {
+            return;
+        }
+        if (renderer != null) {
+            renderer.deleteImage(img);
+        } else if (textureBinder != null) {
+            textureBinder.delete(img);
+        } else {
+            glDeleteTextures(img.getId());
+            img.resetObject();
+        }
+    }
+    
+    private static int getSizeClass(int bytes) {
+        if (bytes <= 0) {
+            throw new IllegalArgumentException("Buffer size must be positive.");
+        }
+        int c = Math.max(32 - Integer.numberOfLeadingZeros(bytes - 1), MIN_BUFFER_CLASS);
+        if (c > MAX_BUFFER_CLASS) {
+            throw new IllegalArgumentException("Buffer size cannot exceed "+(1 << MAX_BUFFER_CLASS)+" bytes.");
+        }
+        return c;
+    }
+    
+    /**
+     * Sets the renderer that allocates pooled textures when they are bound.
+     * <p>
+     * Textures are deleted through the renderer if set, otherwise through
+     * the {@link #setTextureBinder(DirectTextureBinder) texture binder}.
+     * 
+     * @param renderer
+     */
+    public void setRenderer(Renderer renderer) {
+        this.renderer = renderer;
+    }
+    
+    /**
+     * Sets the binder that allocates pooled textures when no renderer is set.
+     * <p>
+     * Textures are deleted through the binder, so it does not keep track of
+     * deleted images. If neither a renderer nor a binder is set, textures
+     * are deleted directly.
+     * 
+     * @param textureBinder
+     */
+    public void setTextureBinder(DirectTextureBinder textureBinder) {
+        this.textureBinder = textureBinder;
+    }
+    
+    /**
+     * Sets the maximum number of bytes of GPU memory held by the pool,
+     * counting both leased and idle resources.
+     * <p>
+     * Lowering the budget deletes idle resources until it is met.
+     * 
+     * @param budget
+     */
+    public void setBudget(long budget) {
+        if (budget <= 0) {
+            throw new IllegalArgumentException("Budget must be positive.");
+        }
+        this.budget = budget;
+        while (currentBytes > budget && lruHead != null) {
+            evict(lruHead);
+        }
+    }
+    
+    /**
+     * Sets the number of frames an idle resource is kept for.
+     * <p>
+     * Default is {@link #DEFAULT_MAX_IDLE_FRAMES}.
+     * 
+     * @param maxIdleFrames
+     */
+    public void setMaxIdleFrames(int maxIdleFrames) {
+        if (maxIdleFrames < 0) {
+            throw new IllegalArgumentException("Max idle frames cannot be negative.");
+        }
+        this.maxIdleFrames = maxIdleFrames;
+    }
+    
+    /**
+     * Resets the peak usage to the current usage.
+     */
+    public void resetPeak() {
+        peakBytes = currentBytes;
+    }
+    
+    public Renderer getRenderer() {
+        return renderer;
+    }
+    public DirectTextureBinder getTextureBinder() {
+        return textureBinder;
+    }
+    public long getBudget() {
+        return budget;
+    }
+    public int getMaxIdleFrames() {
+        return maxIdleFrames;
+    }
+    
+    /**
+     * Gets the number of bytes held by leased and idle resources.
+     * 
+     * @return 
+     */
+    public long getCurrentBytes() {
+        return currentBytes;
+    }
+    
+    /**
+     * Gets the highest number of bytes held at once since creation or {@link #resetPeak()}.
+     * 
+     * @return 
+     */
+    public long getPeakBytes() {
+        return peakBytes;
+    }
+    
+    /**
+     * Gets the number of bytes held by leased resources.
+     * 
+     * @return 
+     */
+    public long getLeasedBytes() {
+        return leasedBytes;
+    }
+    
+    /**
+     * Gets the number of resources held by the pool.
+     * 
+     * @return 
+     */
+    public int getNumResources() {
+        return entries.size();
+    }
+    
+    /**
+     * Gets the number of resources created because none was idle.
+     * 
+     * @return 
+     */
+    public long getAllocations() {
+        return allocations;
+    }
+    
+    /**
+     * Gets the number of leases served by an idle resource.
+     * 
+     * @return 
+     */
+    public long getReuses() {
+        return reuses;
+    }
+    
+    /**
+     * Gets the number of idle resources deleted to meet the budget or for being idle too long.
+     * 
+     * @return 
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+    
+    private static class Bucket {
+        
+        // idle entries, most recently freed at the tail
+        private Entry head, tail;
+        
+        private void push(Entry e) {
+            e.bucketPrev = tail;
+            e.bucketNext = null;
+            if (tail != null) {
+                tail.bucketNext = e;
+            } else {
+                head = e;
+            }
+            tail = e;
+        }
+        private Entry pop() {
+            Entry e = tail;
+            if (e != null) {
+                remove(e);
+            }
+            return e;
+        }
+        private void remove(Entry e) {
+            if (e.bucketPrev != null) {
+                e.bucketPrev.bucketNext = e.bucketNext;
+            } else {
+                head = e.bucketNext;
+            }
+            if (e.bucketNext != null) {
+                e.bucketNext.bucketPrev = e.bucketPrev;
+            } else {
+                tail = e.bucketPrev;
+            }
+            e.bucketPrev = e.bucketNext = null;
+        }
+    
+    }
+    
+    private static class Entry {
+        
+        private final Bucket bucket;
+        private final Object resource;
+        private final long bytes;
+        private boolean leased = false;
+        private long lastUsed;
+        private Entry prev, next;
+        private Entry bucketPrev, bucketNext;
+        
+        private Entry(Bucket bucket, Object resource, long bytes) {
+            this.bucket = bucket;
+            this.resource = resource;
+            this.bytes = bytes;
+        }
+    
+    }
+    
+    private static class TextureKey {
+        
+        private Texture.Type type;
+        private Image.Format format;
+        private int width, height, depth;
+        
+        private TextureKey set(Texture.Type type, Image.Format format, int width, int height, int depth) {
+            this.type = type;
+            this.format = format;
+            this.width = width;
+            this.height = height;
+            this.depth = depth;
+            return this;
+        }
+        
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof TextureKey)) {
+                return false;
+            }
+            TextureKey k = (TextureKey)obj;
+            return type == k.type && format == k.format && width == k.width
+                    && height == k.height && depth == k.depth;
+        }
+        @Override
+        public int hashCode() {
+            // avoid boxing, lookups happen every lease
+            int h = type.hashCode();
+            h = 31 * h + format.hashCode();
+            h = 31 * h + width;
+            h = 31 * h + height;
+            return 31 * h + depth;
+        }
+    
+    }
+    
+}
@@ -0,0 +1,98 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package codex.jmecompute.opengl;
+
+import java.util.Arrays;
+
+/**
+ * Ring of interchangeable textures or storage buffers for iterative dispatches.
+ * <p>
+ * A shader parameter attached to the set with an offset receives the
+ * resource that many places after the set's current index. Each
+ * {@link #swap()} advances the index, so every attached parameter moves on
+ * to the next resource without touching the shader's uniforms or reallocating.
+ * For ping-pong, attach the read parameter at offset 0 and the write
+ * parameter at offset 1 of a set of two. After each write and swap, the
+ * latest result is at offset 0.
+ * <pre>{@code
+ * ComputeResourceSet<Texture2D> pressure = new ComputeResourceSet<>(pressureA, pressureB);
+ * jacobi.setTexture("Pressure", pressure, 0);
+ * jacobi.setTexture("PressureOut", pressure, 1);
+ * for (int i = 0; i < 40; i++) {
+ *     jacobi.execute(renderer, x, y, 1);
+ *     pressure.swap();
+ * }
+ * }</pre>
+ * 
+ * @author codex
+ * @param <T> type of resource, a {@link com.jme3.texture.Texture} or a {@link ComputeBuffer}
+ * @see GLComputeShader#setTexture(String, ComputeResourceSet, int)
+ * @see GLComputeShader#setBuffer(String, ComputeResourceSet, int)
+ * @see ComputePipeline.Stage#setSwaps(ComputeResourceSet...)
+ */
+public class ComputeResourceSet<T> {
+    
+    private final Object[] resources;
+    private int index = 0;
+    
+    /**
+     * 
+     * @param resources resources in swap order, at least one
+     */
+    @SafeVarargs
+    public ComputeResourceSet(T... resources) {
+        if (resources.length == 0) {
+            throw new IllegalArgumentException("Resource set must contain at least one resource.");
+        }
+        for (T r : resources) {
+            if (r == null) {
+                throw new NullPointerException("Resource set cannot contain null.");
+            }
+        }
+        this.resources = Arrays.copyOf(resources, resources.length, Object[].class);
+    }
+    
+    /**
+     * Advances every attached parameter to the next resource.
+     */
+    public void swap() {
+        if (++index == resources.length) {
+            index = 0;
+        }
+    }
+    
+    /**
+     * Gets the resource the offset places after the current index.
+     * 
+     * @param offset
+     * @return 
+     */
+    public T get(int offset) {
+        return (T)resources[Math.floorMod(index + offset, resources.length)];
+    }
+    
+    /**
+     * Sets the current index.
+     * 
+     * @param index
+     */
+    public void setIndex(int index) {
+        this.index = Math.floorMod(index, resources.length);
+    }
+    
+    /**
+     * Gets the current index, which counts swaps modulo the number of resources.
+     * 
+     * @return 
+     */
+    public int getIndex() {
+        return index;
+    }
+    
+    public int size() {
+        return resources.length;
+    }
+    
+}
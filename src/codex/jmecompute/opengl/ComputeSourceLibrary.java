@@ -0,0 +1,331 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package codex.jmecompute.opengl;
+
+import com.jme3.asset.AssetInfo;
+import com.jme3.asset.AssetKey;
+import com.jme3.asset.AssetManager;
+import com.jme3.asset.AssetNotFoundException;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Store of GLSL source fragments which resolves {@code #import} directives.
+ * <p>
+ * A line of the form {@code #import "Shaders/Noise.glsl"} is replaced by the
+ * contents of that asset. Each fragment is included at most once per shader,
+ * at its first import, so fragments need no include guards. Fragments are
+ * read and split once, then cached.
+ * <p>
+ * The library records which fragments import which, and which shaders are
+ * built from which fragments. When a fragment is {@link #invalidate(String) invalidated},
+ * only the shaders that include it, directly or transitively, get new code
+ * and are recompiled on their next execution.
+ * <p>
+ * Fragments are read as raw text, bypassing asset loaders and the asset cache,
+ * so the library alone decides when a fragment is read again.
+ * 
+ * @author codex
+ */
+public class ComputeSourceLibrary {
+    
+    private static final Logger LOG = Logger.getLogger(ComputeSourceLibrary.class.getName());
+    private static final Pattern IMPORT = Pattern.compile("^[ \\t]*#import[ \\t]+\"([^\"]+)\"[ \\t]*$", Pattern.MULTILINE);
+    private static final WeakHashMap<AssetManager, ComputeSourceLibrary> libraries = new WeakHashMap<>();
+    
+    private final Function<String, String> reader;
+    private final HashMap<String, Fragment> fragments = new HashMap<>();
+    private final HashMap<String, Set<String>> dependents = new HashMap<>();
+    private final WeakHashMap<GLComputeShader, String> shaders = new WeakHashMap<>();
+    private final HashMap<String, Set<String>> knownIncludes = new HashMap<>();
+    private final ConcurrentLinkedQueue<String> changed = new ConcurrentLinkedQueue<>();
+    
+    /**
+     * 
+     * @param reader reads the raw text of fragments by name
+     */
+    public ComputeSourceLibrary(Function<String, String> reader) {
+        this.reader = reader;
+    }
+    
+    /**
+     * Gets the library reading fragments from the asset manager.
+     * <p>
+     * {@link GLComputeLoader} resolves imports with this library, so shaders
+     * it loads are tracked by it.
+     * 
+     * @param assetManager
+     * @return 
+     */
+    public static synchronized ComputeSourceLibrary get(AssetManager assetManager) {
+        ComputeSourceLibrary lib = libraries.get(assetManager);
+        if (lib == null) {
+            // the value must not reach the key, or the entry is never released
+            WeakReference<AssetManager> ref = new WeakReference<>(assetManager);
+            lib = new ComputeSourceLibrary(name -> readAsset(ref.get(), name));
+            libraries.put(assetManager, lib);
+        }
+        return lib;
+    }
+    private static String readAsset(AssetManager assetManager, String name) {
+        if (assetManager == null) {
+            throw new IllegalStateException("Asset manager of the library has been collected.");
+        }
+        AssetInfo info = assetManager.locateAsset(new AssetKey<>(name));
+        if (info == null) {
+            throw new AssetNotFoundException(name);
+        }
+        try (InputStream in = info.openStream()) {
+            return new String(readBytes(in), StandardCharsets.UTF_8);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to read "+name, ex);
+        }
+    }
+    static byte[] readBytes(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        for (int n; (n = in.read(buffer)) >= 0;) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+    
+    /**
+     * Gets the source of the fragment with all imports resolved.
+     * 
+     * @param name name of the root fragment
+     * @return 
+     * @throws IllegalStateException if imports are circular
+     */
+    public synchronized String resolve(String name) {
+        StringBuilder builder = new StringBuilder();
+        include(name, builder, new HashSet<>(), new ArrayDeque<>());
+        return builder.toString();
+    }
+    private void include(String name, StringBuilder builder, Set<String> included, ArrayDeque<String> stack) {
+        if (stack.contains(name)) {
+            throw new IllegalStateException("Circular import of "+name+" from "+stack.peek());
+        }
+        if (!included.add(name)) {
+            return;
+        }
+        stack.push(name);
+        Fragment f = getFragment(name);
+        for (int i = 0; i < f.imports.length; i++) {
+            builder.append(f.text[i]);
+            include(f.imports[i], builder, included, stack);
+        }
+        builder.append(f.text[f.imports.length]);
+        stack.pop();
+    }
+    private Fragment getFragment(String name) {
+        Fragment f = fragments.get(name);
+        if (f == null) {
+            f = new Fragment(reader.apply(name));
+            fragments.put(name, f);
+            for (String i : f.imports) {
+                dependents.computeIfAbsent(i, k -> new HashSet<>()).add(name);
+            }
+        }
+        return f;
+    }
+    
+    /**
+     * Tracks the shader as built from the root fragment, so it gets new
+     * code when any fragment it includes changes.
+     * 
+     * @param shader
+     * @param root name of the root fragment
+     */
+    public synchronized void register(GLComputeShader shader, String root) {
+        shaders.put(shader, root);
+    }
+    
+    /**
+     * Tracks the shader as built from the root fragment and the included
+     * fragments, without reading any of them.
+     * <p>
+     * This is for shaders whose code was resolved beforehand, such as
+     * shaders loaded from binary definitions.
+     * 
+     * @param shader
+     * @param root name of the root fragment
+     * @param includes names of all fragments included by the root, directly or transitively
+     */
+    public synchronized void register(GLComputeShader shader, String root, Collection<String> includes) {
+        shaders.put(shader, root);
+        knownIncludes.computeIfAbsent(root, k -> new HashSet<>()).addAll(includes);
+    }
+    
+    /**
+     * Gets the names of the root fragment and all fragments it includes,
+     * directly or transitively, in include order.
+     * 
+     * @param root name of the root fragment
+     * @return 
+     */
+    public synchronized List<String> getIncludes(String root) {
+        LinkedHashSet<String> included = new LinkedHashSet<>();
+        collectIncludes(root, included);
+        return new ArrayList<>(included);
+    }
+    private void collectIncludes(String name, Set<String> included) {
+        if (included.add(name)) {
+            for (String i : getFragment(name).imports) {
+                collectIncludes(i, included);
+            }
+        }
+    }
+    
+    /**
+     * Stops tracking the shader.
+     * 
+     * @param shader
+     */
+    public synchronized void unregister(GLComputeShader shader) {
+        shaders.remove(shader);
+    }
+    
+    /**
+     * Reads the fragment again and updates the code of all shaders including it.
+     * <p>
+     * Affected shaders delete their compiled programs, so this must be called
+     * on the rendering thread. They are recompiled on their next execution.
+     * 
+     * @param name
+     * @return number of shaders updated
+     */
+    public synchronized int invalidate(String name) {
+        // only the changed fragment is read again, dependents are still split correctly
+        Fragment f = fragments.remove(name);
+        if (f != null) {
+            for (String i : f.imports) {
+                Set<String> d = dependents.get(i);
+                if (d != null) {
+                    d.remove(name);
+                }
+            }
+        }
+        Set<String> affected = new HashSet<>();
+        collectDependents(name, affected);
+        int updated = 0;
+        for (Map.Entry<GLComputeShader, String> e : new ArrayList<>(shaders.entrySet())) {
+            Set<String> known = knownIncludes.get(e.getValue());
+            if (affected.contains(e.getValue()) || (known != null && !Collections.disjoint(known, affected))) {
+                try {
+                    e.getKey().setCode(resolve(e.getValue()));
+                    updated++;
+                } catch (RuntimeException ex) {
+                    // keep the old code so the shader remains usable
+                    LOG.log(Level.WARNING, "Failed to reload "+e.getValue()+" for "+e.getKey().getName(), ex);
+                }
+            }
+        }
+        LOG.log(Level.FINE, "{0} changed, updated {1} shaders", new Object[] {name, updated});
+        return updated;
+    }
+    private void collectDependents(String name, Set<String> affected) {
+        if (affected.add(name)) {
+            Set<String> d = dependents.get(name);
+            if (d != null) {
+                for (String n : d) {
+                    collectDependents(n, affected);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Queues the fragment to be invalidated by the next {@link #update()}.
+     * <p>
+     * May be called from any thread.
+     * 
+     * @param name
+     */
+    public void markChanged(String name) {
+        changed.add(name);
+    }
+    
+    /**
+     * Invalidates all fragments marked as changed.
+     * <p>
+     * Must be called on the rendering thread.
+     * 
+     * @return number of shaders updated
+     */
+    public int update() {
+        int updated = 0;
+        for (String name; (name = changed.poll()) != null;) {
+            updated += invalidate(name);
+        }
+        return updated;
+    }
+    
+    /**
+     * Returns true if the fragment is currently cached.
+     * 
+     * @param name
+     * @return 
+     */
+    public synchronized boolean isCached(String name) {
+        return fragments.containsKey(name);
+    }
+    
+    /**
+     * Gets the names of the fragments which directly import the fragment.
+     * 
+     * @param name
+     * @return 
+     */
+    public synchronized Set<String> getDependents(String name) {
+        Set<String> d = dependents.get(name);
+        return d != null ? new HashSet<>(d) : new HashSet<>();
+    }
+    
+    /**
+     * Source of one fragment, split at its imports.
+     */
+    private static class Fragment {
+        
+        private final String[] text, imports;
+        
+        private Fragment(String source) {
+            ArrayList<String> t = new ArrayList<>(), i = new ArrayList<>();
+            Matcher m = IMPORT.matcher(source);
+            int start = 0;
+            while (m.find()) {
+                t.add(source.substring(start, m.start()));
+                i.add(m.group(1));
+                start = m.end();
+            }
+            t.add(source.substring(start));
+            text = t.toArray(new String[t.size()]);
+            imports = i.toArray(new String[i.size()]);
+        }
+    
+    }
+    
+}
@@ -0,0 +1,102 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package codex.jmecompute.opengl;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Iterator;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Watches an asset directory for changed source fragments during development.
+ * <p>
+ * Changed files are marked as changed in the library by a background thread,
+ * and take effect on the next {@link ComputeSourceLibrary#update()}. All
+ * directories existing under the root when the watcher is created are watched;
+ * directories created afterwards are not.
+ * <pre>{@code
+ * ComputeSourceWatcher watcher = new ComputeSourceWatcher(
+ *         ComputeSourceLibrary.get(assetManager), Paths.get("assets"));
+ * // every frame
+ * library.update();
+ * }</pre>
+ * 
+ * @author codex
+ */
+public class ComputeSourceWatcher implements AutoCloseable {
+    
+    private static final Logger LOG = Logger.getLogger(ComputeSourceWatcher.class.getName());
+    
+    private final ComputeSourceLibrary library;
+    private final Path root;
+    private final WatchService service;
+    private final Thread thread;
+    
+    /**
+     * 
+     * @param library library to mark changed fragments in
+     * @param root directory fragment names are relative to
+     * @throws IOException
+     */
+    public ComputeSourceWatcher(ComputeSourceLibrary library, Path root) throws IOException {
+        this.library = library;
+        this.root = root.toAbsolutePath();
+        service = FileSystems.getDefault().newWatchService();
+        try (Stream<Path> dirs = Files.walk(this.root)) {
+            for (Iterator<Path> it = dirs.filter(Files::isDirectory).iterator(); it.hasNext();) {
+                it.next().register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            }
+        } catch (IOException ex) {
+            service.close();
+            throw ex;
+        }
+        thread = new Thread(this::run, "ComputeSourceWatcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    private void run() {
+        try {
+            while (true) {
+                WatchKey key = service.take();
+                Path dir = (Path)key.watchable();
+                for (WatchEvent<?> e : key.pollEvents()) {
+                    if (e.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        continue;
+                    }
+                    Path file = dir.resolve((Path)e.context());
+                    if (Files.isRegularFile(file)) {
+                        library.markChanged(root.relativize(file).toString().replace('\\', '/'));
+                    }
+                }
+                key.reset();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ex) {
+            LOG.log(Level.FINE, "Stopped watching {0}", root);
+        }
+    }
+    
+    /**
+     * Stops watching.
+     */
+    @Override
+    public void close() {
+        try {
+            service.close();
+        } catch (IOException ex) {
+            LOG.log(Level.WARNING, "Failed to close watch service", ex);
+        }
+    }
+    
+}
@@ -0,0 +1,135 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package codex.jmecompute.opengl;
+
+import java.util.Arrays;
+
+/**
+ * Rolling GPU timing statistics of one profiled label.
+ * <p>
+ * Minimum, average, 95th percentile and maximum are computed over the most
+ * recent samples; the dispatch count covers the whole lifetime.
+ * 
+ * @author codex
+ */
+public class ComputeTimingStats {
+    
+    private final String label;
+    private final long[] samples;
+    private long count = 0;
+    
+    public ComputeTimingStats(String label, int window) {
+        this.label = label;
+        this.samples = new long[Math.max(window, 1)];
+    }
+    
+    /**
+     * Adds a sample.
+     * 
+     * @param nanos elapsed GPU time in nanoseconds
+     */
+    public void add(long nanos) {
+        samples[(int)(count % samples.length)] = nanos;
+        count++;
+    }
+    
+    private int size() {
+        return (int)Math.min(count, samples.length);
+    }
+    
+    /**
+     * Gets the label these statistics are for.
+     * 
+     * @return 
+     */
+    public String getLabel() {
+        return label;
+    }
+    
+    /**
+     * Gets the total number of samples taken.
+     * 
+     * @return 
+     */
+    public long getCount() {
+        return count;
+    }
+    
+    /**
+     * Gets the minimum time in the window, in nanoseconds.
+     * 
+     * @return 
+     */
+    public long getMin() {
+        long min = Long.MAX_VALUE;
+        for (int i = 0, n = size(); i < n; i++) {
+            min = Math.min(min, samples[i]);
+        }
+        return size() > 0 ? min : 0;
+    }
+    
+    /**
+     * Gets the maximum time in the window, in nanoseconds.
+     * 
+     * @return 
+     */
+    public long getMax() {
+        long max = 0;
+        for (int i = 0, n = size(); i < n; i++) {
+            max = Math.max(max, samples[i]);
+        }
+        return max;
+    }
+    
+    /**
+     * Gets the average time in the window, in nanoseconds.
+     * 
+     * @return 
+     */
+    public double getAverage() {
+        int n = size();
+        if (n == 0) {
+            return 0;
+        }
+        long sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += samples[i];
+        }
+        return (double)sum / n;
+    }
+    
+    /**
+     * Gets the 95th percentile time in the window, in nanoseconds.
+     * 
+     * @return 
+     */
+    public long getP95() {
+        return getPercentile(0.95);
+    }
+    
+    /**
+     * Gets a percentile of the times in the window, in nanoseconds.
+     * 
+     * @param p percentile between 0 and 1
+     * @return 
+     */
+    public long getPercentile(double p) {
+        int n = size();
+        if (n == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(samples, n);
+        Arrays.sort(sorted);
+        int i = (int)Math.ceil(p * n) - 1;
+        return sorted[Math.max(Math.min(i, n - 1), 0)];
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("%s: avg %.3f ms, min %.3f ms, p95 %.3f ms, max %.3f ms, %d dispatches",
+                label, getAverage() / 1e6, getMin() / 1e6, getP95() / 1e6, getMax() / 1e6, count);
+    }
+    
+}
@@ -40,7 +40,15 @@ public class ComputeUniform {
     private final VarType type;
     private Object value;
     private FloatBuffer buffer;
+    private int intValue;
+    private float floatValue;
+    private boolean scalarSet = false;
+    private boolean boxed = true;
+    private int version = 0;
     private boolean updateFlag = true;
+    private ComputeImageAccess imageAccess = ComputeImageAccess.ReadWrite;
+    private ComputeResourceSet<?> source;
+    private int sourceOffset;
 
     public ComputeUniform(String name, VarType type) {
         this.name = name;
@@ -55,11 +63,19 @@ public class ComputeUniform {
          * Copyright (c) 2009-2024 jMonkeyEngine
          * All rights reserved.
          */
+        if (source != null) {
+            source = null;
+            markUpdated();
+        }
         if (val == null) {
-            if (value != null) {
-                updateFlag = true;
+            if (value != null || scalarSet || buffer != null) {
+                markUpdated();
             }
             value = null;
+            // arrays and matrices are uploaded from the buffer, so it must not outlive the value
+            buffer = null;
+            scalarSet = false;
+            boxed = true;
             return;
         }
         if (this.type != type) {
@@ -81,7 +97,7 @@ public class ComputeUniform {
                 } else {
                     ((Matrix3f)this.value).set(m3);
                 }
-                updateFlag = true;
+                markUpdated();
                 break;
             case Matrix4:
                 if (val.equals(this.value)) {
@@ -98,7 +114,7 @@ public class ComputeUniform {
                 } else {
                     ((Matrix4f)this.value).copy(m4);
                 }
-                updateFlag = true;
+                markUpdated();
                 break;
             case IntArray:
                 int[] ia = (int[]) val;
@@ -109,7 +125,7 @@ public class ComputeUniform {
                     ((IntBuffer)this.value).put(ia);
                 }
                 ((IntBuffer)this.value).clear();
-                updateFlag = true;
+                markUpdated();
                 break;
             case FloatArray:
                 float[] fa = (float[]) val;
@@ -120,7 +136,7 @@ public class ComputeUniform {
                     buffer.put(fa);
                 }
                 buffer.clear();
-                updateFlag = true;
+                markUpdated();
                 break;
             case Vector2Array:
                 Vector2f[] v2a = (Vector2f[]) val;
@@ -133,7 +149,7 @@ public class ComputeUniform {
                     }
                 }
                 buffer.clear();
-                updateFlag = true;
+                markUpdated();
                 break;
             case Vector3Array:
                 Vector3f[] v3a = (Vector3f[]) val;
@@ -146,7 +162,7 @@ public class ComputeUniform {
                     }
                 }
                 buffer.clear();
-                updateFlag = true;
+                markUpdated();
                 break;
             case Vector4Array:
                 Vector4f[] v4a = (Vector4f[]) val;
@@ -159,7 +175,7 @@ public class ComputeUniform {
                     }
                 }
                 buffer.clear();
-                updateFlag = true;
+                markUpdated();
                 break;
             case Matrix3Array:
                 Matrix3f[] m3a = (Matrix3f[]) val;
@@ -172,6 +188,7 @@ public class ComputeUniform {
                     m3a[i].fillFloatBuffer(buffer, true);
                 }
                 buffer.clear();
+                markUpdated();
                 break;
             case Matrix4Array:
                 Matrix4f[] m4a = (Matrix4f[]) val;
@@ -184,7 +201,7 @@ public class ComputeUniform {
                     m4a[i].fillFloatBuffer(buffer, true);
                 }
                 buffer.clear();
-                updateFlag = true;
+                markUpdated();
                 break;
             case Vector2:
                 if (val.equals(this.value)) {
@@ -195,6 +212,7 @@ public class ComputeUniform {
                 } else {
                     ((Vector2f) this.value).set((Vector2f) val);
                 }
+                markUpdated();
                 break;
             case Vector3:
                 if (val.equals(this.value)) {
@@ -205,7 +223,7 @@ public class ComputeUniform {
                 } else {
                     ((Vector3f) this.value).set((Vector3f) val);
                 }
-                updateFlag = true;
+                markUpdated();
                 break;
             case Vector4:
                 if (val.equals(this.value)) {
@@ -243,21 +261,186 @@ public class ComputeUniform {
                     ((Quaternion) this.value).set(vec4.x, vec4.y, vec4.z, vec4.w);
                 }
                 vars.release();
-                updateFlag = true;
+                markUpdated();
                 break;
             case Boolean:
+                setBoolean((Boolean)val);
+                break;
             case Int:
+                setInt(((Number)val).intValue());
+                break;
             case Float:
-                if (value != val) {
-                    value = val;
-                    updateFlag = true;
-                }
+                setFloat(((Number)val).floatValue());
                 break;
             default:
                 this.value = val;
-                updateFlag = true;
+                markUpdated();
+        }
+    }
+    
+    /**
+     * Sets the value of a {@code Float} uniform without allocating.
+     * 
+     * @param f 
+     */
+    public void setFloat(float f) {
+        checkType(VarType.Float);
+        if (!scalarSet || Float.floatToIntBits(floatValue) != Float.floatToIntBits(f)) {
+            floatValue = f;
+            setScalar();
+        }
+    }
+    
+    /**
+     * Sets the value of an {@code Int} uniform without allocating.
+     * 
+     * @param i 
+     */
+    public void setInt(int i) {
+        checkType(VarType.Int);
+        if (!scalarSet || intValue != i) {
+            intValue = i;
+            setScalar();
+        }
+    }
+    
+    /**
+     * Sets the value of a {@code Boolean} uniform without allocating.
+     * 
+     * @param b 
+     */
+    public void setBoolean(boolean b) {
+        checkType(VarType.Boolean);
+        int i = (b ? 1 : 0);
+        if (!scalarSet || intValue != i) {
+            intValue = i;
+            setScalar();
         }
     }
+    
+    /**
+     * Sets the value of a {@code Vector2} uniform in place.
+     * 
+     * @param x
+     * @param y 
+     */
+    public void setVector2(float x, float y) {
+        checkType(VarType.Vector2);
+        Vector2f v = (Vector2f)value;
+        if (v == null) {
+            value = new Vector2f(x, y);
+            markUpdated();
+        } else if (v.x != x || v.y != y) {
+            v.set(x, y);
+            markUpdated();
+        }
+    }
+    
+    /**
+     * Sets the value of a {@code Vector3} uniform in place.
+     * 
+     * @param x
+     * @param y
+     * @param z 
+     */
+    public void setVector3(float x, float y, float z) {
+        checkType(VarType.Vector3);
+        Vector3f v = (Vector3f)value;
+        if (v == null) {
+            value = new Vector3f(x, y, z);
+            markUpdated();
+        } else if (v.x != x || v.y != y || v.z != z) {
+            v.set(x, y, z);
+            markUpdated();
+        }
+    }
+    
+    /**
+     * Sets the value of a {@code Vector4} uniform in place.
+     * <p>
+     * The current value keeps its class ({@link Vector4f}, {@link ColorRGBA}
+     * or {@link Quaternion}).
+     * 
+     * @param x
+     * @param y
+     * @param z
+     * @param w 
+     */
+    public void setVector4(float x, float y, float z, float w) {
+        checkType(VarType.Vector4);
+        if (value == null) {
+            value = new Vector4f(x, y, z, w);
+            markUpdated();
+        } else if (value instanceof Vector4f) {
+            Vector4f v = (Vector4f)value;
+            if (v.x != x || v.y != y || v.z != z || v.w != w) {
+                v.set(x, y, z, w);
+                markUpdated();
+            }
+        } else if (value instanceof ColorRGBA) {
+            ColorRGBA c = (ColorRGBA)value;
+            if (c.r != x || c.g != y || c.b != z || c.a != w) {
+                c.set(x, y, z, w);
+                markUpdated();
+            }
+        } else {
+            Quaternion q = (Quaternion)value;
+            if (q.getX() != x || q.getY() != y || q.getZ() != z || q.getW() != w) {
+                q.set(x, y, z, w);
+                markUpdated();
+            }
+        }
+    }
+    
+    /**
+     * Sets the access a shader has to this texture when it is bound as an image.
+     * <p>
+     * Read-only images are not treated as written by dispatches, which
+     * avoids unnecessary memory barriers. Ignored for samplers.
+     * 
+     * @param imageAccess 
+     */
+    public void setImageAccess(ComputeImageAccess imageAccess) {
+        if (imageAccess == null) {
+            throw new NullPointerException("Image access cannot be null.");
+        }
+        this.imageAccess = imageAccess;
+    }
+    
+    /**
+     * Resolves this texture uniform's value from the resource set.
+     * <p>
+     * The value follows the set as it is swapped, without this uniform
+     * being updated. Setting a value detaches the set.
+     * 
+     * @param source set of textures
+     * @param offset offset from the set's current index
+     */
+    public void setSource(ComputeResourceSet<?> source, int offset) {
+        if (!type.isTextureType()) {
+            throw new IllegalArgumentException("Only texture uniforms can be resolved from a resource set.");
+        }
+        this.value = null;
+        this.source = source;
+        this.sourceOffset = offset;
+        boxed = true;
+        markUpdated();
+    }
+    
+    private void checkType(VarType type) {
+        if (this.type != type) {
+            throw new IllegalArgumentException("Expected "+this.type+", recieved "+type);
+        }
+    }
+    private void setScalar() {
+        scalarSet = true;
+        boxed = false;
+        markUpdated();
+    }
+    private void markUpdated() {
+        updateFlag = true;
+        version++;
+    }
     public void clearUpdateNeeded() {
         updateFlag = false;
     }
@@ -269,8 +452,42 @@ public class ComputeUniform {
         return type;
     }
     public Object getValue() {
+        if (source != null) {
+            return source.get(sourceOffset);
+        }
+        if (!boxed) {
+            switch (type) {
+                case Boolean: value = (intValue != 0); break;
+                case Int: value = intValue; break;
+                default: value = floatValue;
+            }
+            boxed = true;
+        }
         return value;
     }
+    public ComputeImageAccess getImageAccess() {
+        return imageAccess;
+    }
+    public float getFloat() {
+        return floatValue;
+    }
+    public int getInt() {
+        return intValue;
+    }
+    public boolean getBoolean() {
+        return intValue != 0;
+    }
+    
+    /**
+     * Returns true if this uniform holds a value that can be uploaded.
+     * <p>
+     * Unlike checking {@link #getValue()} for null, this never allocates.
+     * 
+     * @return 
+     */
+    public boolean hasValue() {
+        return scalarSet || value != null || buffer != null || source != null;
+    }
     public FloatBuffer getBuffer() {
         return buffer;
     }
@@ -278,4 +495,22 @@ public class ComputeUniform {
         return updateFlag;
     }
     
+    /**
+     * Gets the modification count of this uniform's value.
+     * <p>
+     * Unlike {@link #isUpdateNeeded()}, this is not cleared on upload,
+     * so each program can track which version it last received.
+     * 
+     * @return 
+     */
+    public int getVersion() {
+        return version;
+    }
+    public ComputeResourceSet<?> getSource() {
+        return source;
+    }
+    public int getSourceOffset() {
+        return sourceOffset;
+    }
+    
 }
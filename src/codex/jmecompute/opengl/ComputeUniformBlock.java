@@ -0,0 +1,330 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package codex.jmecompute.opengl;
+
+import com.jme3.math.ColorRGBA;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector2f;
+import com.jme3.math.Vector3f;
+import com.jme3.math.Vector4f;
+import com.jme3.shader.VarType;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Collection;
+import org.lwjgl.BufferUtils;
+import static org.lwjgl.opengl.GL43.*;
+
+/**
+ * Packs scalar, vector and matrix parameters into a std140 uniform block.
+ * <p>
+ * Changed members are written into a client-side copy of the block, and the
+ * modified range is uploaded with a single {@code glBufferSubData} call
+ * instead of one {@code glUniform*} call per parameter. The matching GLSL
+ * declaration is generated by {@link #getDeclaration()}.
+ * <p>
+ * The layout is fixed on construction, so array parameters keep the length
+ * they had at that time; longer values are truncated.
+ * 
+ * @author codex
+ */
+public class ComputeUniformBlock {
+    
+    private final String name;
+    private final int binding;
+    private final ComputeUniform[] members;
+    private final int[] offsets, lengths, written;
+    private final int size;
+    private final ByteBuffer data;
+    private int ubo = -1;
+    private int dirtyStart, dirtyEnd;
+    
+    /**
+     * 
+     * @param name name of the block in GLSL
+     * @param binding uniform buffer binding index
+     * @param members parameters laid out in iteration order; texture parameters are ignored
+     */
+    public ComputeUniformBlock(String name, int binding, Collection<ComputeUniform> members) {
+        this.name = name;
+        this.binding = binding;
+        this.members = members.stream().filter(u -> !u.getType().isTextureType()).toArray(ComputeUniform[]::new);
+        offsets = new int[this.members.length];
+        lengths = new int[this.members.length];
+        written = new int[this.members.length];
+        int offset = 0;
+        for (int i = 0; i < this.members.length; i++) {
+            ComputeUniform u = this.members[i];
+            lengths[i] = getArrayLength(u);
+            if (lengths[i] == 0 && u.getType().name().endsWith("Array")) {
+                throw new IllegalArgumentException("Array parameter \""+u.getName()+"\" needs a default value to be laid out.");
+            }
+            int align = getAlignment(u.getType());
+            offset = (offset + align - 1) / align * align;
+            offsets[i] = offset;
+            offset += getSize(u.getType(), lengths[i]);
+            written[i] = u.getVersion() - 1;
+        }
+        size = Math.max((offset + 15) & ~15, 16);
+        data = BufferUtils.createByteBuffer(size);
+        dirtyStart = 0;
+        dirtyEnd = size;
+    }
+    
+    /**
+     * Writes members that changed since the last update, uploads the
+     * modified range and binds the block.
+     * <p>
+     * Must be called on the rendering thread.
+     * 
+     * @return number of bytes uploaded
+     */
+    public int update() {
+        pack();
+        int uploaded = 0;
+        if (ubo < 0) {
+            ubo = glGenBuffers();
+            glBindBuffer(GL_UNIFORM_BUFFER, ubo);
+            glBufferData(GL_UNIFORM_BUFFER, size, GL_DYNAMIC_DRAW);
+        } else {
+            glBindBuffer(GL_UNIFORM_BUFFER, ubo);
+        }
+        if (dirtyStart < dirtyEnd) {
+            ByteBuffer range = data.duplicate();
+            range.limit(dirtyEnd).position(dirtyStart);
+            glBufferSubData(GL_UNIFORM_BUFFER, dirtyStart, range);
+            uploaded = dirtyEnd - dirtyStart;
+            dirtyStart = Integer.MAX_VALUE;
+            dirtyEnd = 0;
+        }
+        glBindBuffer(GL_UNIFORM_BUFFER, 0);
+        glBindBufferRange(GL_UNIFORM_BUFFER, binding, ubo, 0, size);
+        return uploaded;
+    }
+    
+    /**
+     * Writes members that changed since the last update into the client-side
+     * copy of the block, without uploading.
+     * 
+     * @return the client-side copy of the block
+     */
+    ByteBuffer pack() {
+        for (int i = 0; i < members.length; i++) {
+            ComputeUniform u = members[i];
+            if (written[i] != u.getVersion()) {
+                written[i] = u.getVersion();
+                if (u.hasValue()) {
+                    write(i, u);
+                    dirtyStart = Math.min(dirtyStart, offsets[i]);
+                    dirtyEnd = Math.max(dirtyEnd, offsets[i] + getSize(u.getType(), lengths[i]));
+                }
+            }
+        }
+        return data;
+    }
+    
+    /**
+     * Replaces the member of the same name, keeping its place in the layout.
+     * <p>
+     * The replacement is packed on the next update. Does nothing if
+     * no member has the name.
+     * 
+     * @param uniform
+     * @return true if a member was replaced
+     * @throws IllegalArgumentException if the replacement has a different type
+     */
+    public boolean replace(ComputeUniform uniform) {
+        for (int i = 0; i < members.length; i++) {
+            if (members[i].getName().equals(uniform.getName())) {
+                if (members[i].getType() != uniform.getType()) {
+                    throw new IllegalArgumentException("Cannot replace "+members[i].getType()+" block member \""
+                            +uniform.getName()+"\" with "+uniform.getType()+".");
+                }
+                members[i] = uniform;
+                written[i] = uniform.getVersion() - 1;
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Deletes the uniform buffer.
+     */
+    public void delete() {
+        if (ubo >= 0) {
+            glDeleteBuffers(ubo);
+            ubo = -1;
+            dirtyStart = 0;
+            dirtyEnd = size;
+        }
+    }
+    
+    /**
+     * Generates the GLSL declaration of this block.
+     * 
+     * @return 
+     */
+    public String getDeclaration() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("layout(std140, binding = ").append(binding).append(") uniform ")
+               .append(name).append(" {\n");
+        for (int i = 0; i < members.length; i++) {
+            builder.append("    ").append(getGlslType(members[i].getType()))
+                   .append(' ').append(members[i].getName());
+            if (lengths[i] > 0) {
+                builder.append('[').append(lengths[i]).append(']');
+            }
+            builder.append(";\n");
+        }
+        return builder.append("};\n").toString();
+    }
+    
+    private void write(int i, ComputeUniform u) {
+        int o = offsets[i];
+        FloatBuffer fb = u.getBuffer();
+        switch (u.getType()) {
+            case Float: data.putFloat(o, u.getFloat()); break;
+            case Int: data.putInt(o, u.getInt()); break;
+            case Boolean: data.putInt(o, u.getBoolean() ? 1 : 0); break;
+            case Vector2:
+                Vector2f v2 = (Vector2f)u.getValue();
+                data.putFloat(o, v2.x).putFloat(o + 4, v2.y);
+                break;
+            case Vector3:
+                Vector3f v3 = (Vector3f)u.getValue();
+                data.putFloat(o, v3.x).putFloat(o + 4, v3.y).putFloat(o + 8, v3.z);
+                break;
+            case Vector4:
+                Object v = u.getValue();
+                if (v instanceof ColorRGBA) {
+                    ColorRGBA c = (ColorRGBA)v;
+                    data.putFloat(o, c.r).putFloat(o + 4, c.g).putFloat(o + 8, c.b).putFloat(o + 12, c.a);
+                } else if (v instanceof Vector4f) {
+                    Vector4f c = (Vector4f)v;
+                    data.putFloat(o, c.x).putFloat(o + 4, c.y).putFloat(o + 8, c.z).putFloat(o + 12, c.w);
+                } else {
+                    Quaternion c = (Quaternion)v;
+                    data.putFloat(o, c.getX()).putFloat(o + 4, c.getY()).putFloat(o + 8, c.getZ()).putFloat(o + 12, c.getW());
+                }
+                break;
+            case Matrix3: writeFloats(fb, o, 3, 16, 3); break;
+            case Matrix4: writeFloats(fb, o, 16, 64, 1); break;
+            case FloatArray: writeFloats(fb, o, 1, 16, lengths[i]); break;
+            case Vector2Array: writeFloats(fb, o, 2, 16, lengths[i]); break;
+            case Vector3Array: writeFloats(fb, o, 3, 16, lengths[i]); break;
+            case Vector4Array: writeFloats(fb, o, 4, 16, lengths[i]); break;
+            case Matrix3Array: writeFloats(fb, o, 3, 16, lengths[i] * 3); break;
+            case Matrix4Array: writeFloats(fb, o, 16, 64, lengths[i]); break;
+            case IntArray:
+                IntBuffer ib = (IntBuffer)u.getValue();
+                for (int j = 0, n = Math.min(lengths[i], ib.limit()); j < n; j++) {
+                    data.putInt(o + j * 16, ib.get(j));
+                }
+                break;
+            default:
+                throw new UnsupportedOperationException(u.getType()+" cannot be a uniform block member.");
+        }
+    }
+    private void writeFloats(FloatBuffer src, int offset, int components, int stride, int elements) {
+        if (src == null) {
+            return;
+        }
+        for (int e = 0, k = 0; e < elements; e++) {
+            for (int c = 0; c < components && k < src.limit(); c++, k++) {
+                data.putFloat(offset + e * stride + c * 4, src.get(k));
+            }
+        }
+    }
+    
+    private static int getArrayLength(ComputeUniform u) {
+        switch (u.getType()) {
+            case FloatArray: return u.getBuffer() != null ? u.getBuffer().limit() : 0;
+            case Vector2Array: return u.getBuffer() != null ? u.getBuffer().limit() / 2 : 0;
+            case Vector3Array: return u.getBuffer() != null ? u.getBuffer().limit() / 3 : 0;
+            case Vector4Array: return u.getBuffer() != null ? u.getBuffer().limit() / 4 : 0;
+            case Matrix3Array: return u.getBuffer() != null ? u.getBuffer().limit() / 9 : 0;
+            case Matrix4Array: return u.getBuffer() != null ? u.getBuffer().limit() / 16 : 0;
+            case IntArray: return u.getValue() != null ? ((IntBuffer)u.getValue()).limit() : 0;
+            default: return 0;
+        }
+    }
+    private static int getAlignment(VarType type) {
+        switch (type) {
+            case Float:
+            case Int:
+            case Boolean: return 4;
+            case Vector2: return 8;
+            default: return 16;
+        }
+    }
+    private static int getSize(VarType type, int length) {
+        switch (type) {
+            case Float:
+            case Int:
+            case Boolean: return 4;
+            case Vector2: return 8;
+            case Vector3: return 12;
+            case Vector4: return 16;
+            case Matrix3: return 48;
+            case Matrix4: return 64;
+            case Matrix3Array: return 48 * length;
+            case Matrix4Array: return 64 * length;
+            default: return 16 * length;
+        }
+    }
+    private static String getGlslType(VarType type) {
+        switch (type) {
+            case Float:
+            case FloatArray: return "float";
+            case Int:
+            case IntArray: return "int";
+            case Boolean: return "bool";
+            case Vector2:
+            case Vector2Array: return "vec2";
+            case Vector3:
+            case Vector3Array: return "vec3";
+            case Vector4:
+            case Vector4Array: return "vec4";
+            case Matrix3:
+            case Matrix3Array: return "mat3";
+            case Matrix4:
+            case Matrix4Array: return "mat4";
+            default: throw new UnsupportedOperationException(type+" cannot be a uniform block member.");
+        }
+    }
+    
+    public String getName() {
+        return name;
+    }
+    public int getBinding() {
+        return binding;
+    }
+    
+    /**
+     * Gets the size of the block in bytes.
+     * 
+     * @return 
+     */
+    public int getSize() {
+        return size;
+    }
+    
+    /**
+     * Gets the byte offset of the member at the name.
+     * 
+     * @param member
+     * @return offset, or -1 if no such member exists
+     */
+    public int getOffset(String member) {
+        for (int i = 0; i < members.length; i++) {
+            if (members[i].getName().equals(member)) {
+                return offsets[i];
+            }
+        }
+        return -1;
+    }
+    
+}
@@ -0,0 +1,311 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package codex.jmecompute.opengl;
+
+import com.jme3.shader.VarType;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.lwjgl.BufferUtils;
+import static org.lwjgl.opengl.GL43.*;
+
+/**
+ * A linked program compiled from one permutation of a shader's defines.
+ * <p>
+ * After linking, the program's active resources are reflected so that
+ * uniform locations and texture units are resolved once instead of on
+ * every upload.
+ *
+ * @author codex
+ */
+public class ComputeVariant {
+    
+    private static final Logger LOG = Logger.getLogger(ComputeVariant.class.getName());
+    private static final ComputeUniform[] EMPTY = new ComputeUniform[0];
+    
+    private final String key;
+    private final int program;
+    private final HashMap<String, Integer> activeUniforms = new HashMap<>();
+    private final HashMap<String, Integer> storageBlocks = new HashMap<>();
+    private final ArrayList<String> mismatches = new ArrayList<>();
+    private final ArrayList<String> inactive = new ArrayList<>();
+    private ComputeUniform[] uniforms = EMPTY;
+    private final int[] localSize = new int[3];
+    private final int[] extent = {-1, -1, -1};
+    private int extentLocation = -1;
+    private int[] locations, units, uploaded;
+    private boolean[] images;
+    private int reflectedCount = -1;
+    
+    public ComputeVariant(String key, int program) {
+        this.key = key;
+        this.program = program;
+    }
+    
+    /**
+     * Introspects the active uniforms and storage blocks of the program and
+     * matches them against the declared uniforms.
+     * <p>
+     * Declared uniforms that are not active in the program are excluded from
+     * uploads. Texture uniforms are assigned texture units here.
+     * 
+     * @param shaderName name of the shader, used for reporting
+     * @param declared declared uniforms by name
+     * @param modCount modification count of the declared uniforms
+     */
+    public void reflect(String shaderName, Map<String, ComputeUniform> declared, int modCount) {
+        
+        activeUniforms.clear();
+        storageBlocks.clear();
+        mismatches.clear();
+        inactive.clear();
+        IntBuffer props = BufferUtils.createIntBuffer(4);
+        IntBuffer params = BufferUtils.createIntBuffer(4);
+        
+        // active uniforms
+        props.put(GL_TYPE).put(GL_LOCATION).put(GL_BLOCK_INDEX).put(GL_ARRAY_SIZE).flip();
+        int n = glGetProgramInterfacei(program, GL_UNIFORM, GL_ACTIVE_RESOURCES);
+        int maxName = glGetProgramInterfacei(program, GL_UNIFORM, GL_MAX_NAME_LENGTH);
+        ArrayList<ComputeUniform> active = new ArrayList<>(n);
+        int[] locs = new int[n], types = new int[n];
+        for (int i = 0; i < n; i++) {
+            params.clear();
+            glGetProgramResourceiv(program, GL_UNIFORM, i, props, null, params);
+            String name = glGetProgramResourceName(program, GL_UNIFORM, i, maxName);
+            if (name.endsWith("[0]")) {
+                name = name.substring(0, name.length() - 3);
+            }
+            activeUniforms.put(name, params.get(1));
+            if (params.get(2) != -1) {
+                // member of a uniform block, uploaded with the block
+                continue;
+            }
+            ComputeUniform u = declared.get(name);
+            if (u == null) {
+                if (!name.startsWith("gl_") && !name.startsWith(GLComputeShader.BUILTIN_PREFIX)) {
+                    mismatches.add("Uniform \""+name+"\" is not declared as a parameter.");
+                }
+                continue;
+            }
+            if (!isCompatible(u.getType(), params.get(0))) {
+                mismatches.add("Parameter \""+name+"\" declared as "+u.getType()
+                        +" does not match program type 0x"+Integer.toHexString(params.get(0))+".");
+            }
+            locs[active.size()] = params.get(1);
+            types[active.size()] = params.get(0);
+            active.add(u);
+        }
+        for (ComputeUniform u : declared.values()) {
+            if (!activeUniforms.containsKey(u.getName())) {
+                inactive.add(u.getName());
+            }
+        }
+        
+        // storage blocks
+        props.clear();
+        props.put(GL_BUFFER_BINDING).flip();
+        n = glGetProgramInterfacei(program, GL_SHADER_STORAGE_BLOCK, GL_ACTIVE_RESOURCES);
+        maxName = glGetProgramInterfacei(program, GL_SHADER_STORAGE_BLOCK, GL_MAX_NAME_LENGTH);
+        for (int i = 0; i < n; i++) {
+            params.clear();
+            glGetProgramResourceiv(program, GL_SHADER_STORAGE_BLOCK, i, props, null, params);
+            storageBlocks.put(glGetProgramResourceName(program, GL_SHADER_STORAGE_BLOCK, i, maxName), params.get(0));
+        }
+        
+        // work group size and built-ins
+        IntBuffer size = BufferUtils.createIntBuffer(3);
+        glGetProgramiv(program, GL_COMPUTE_WORK_GROUP_SIZE, size);
+        size.get(localSize);
+        extentLocation = getUniformLocation(GLComputeShader.EXTENT_UNIFORM);
+        
+        // flat upload tables
+        uniforms = active.toArray(EMPTY);
+        locations = Arrays.copyOf(locs, uniforms.length);
+        units = new int[uniforms.length];
+        images = new boolean[uniforms.length];
+        uploaded = new int[uniforms.length];
+        int nextUnit = 0;
+        for (int i = 0; i < uniforms.length; i++) {
+            uploaded[i] = uniforms[i].getVersion() - 1;
+            if (uniforms[i].getType().isTextureType()) {
+                images[i] = isImageType(types[i]);
+                units[i] = nextUnit++;
+                glProgramUniform1i(program, locations[i], units[i]);
+            } else {
+                units[i] = -1;
+            }
+        }
+        reflectedCount = modCount;
+        
+        if (!mismatches.isEmpty() && LOG.isLoggable(Level.WARNING)) {
+            LOG.log(Level.WARNING, "Parameter mismatches in {0} [{1}]:\n{2}",
+                    new Object[] {shaderName, key.replace('\n', ' ').trim(), String.join("\n", mismatches)});
+        }
+        if (!inactive.isEmpty() && LOG.isLoggable(Level.FINE)) {
+            LOG.log(Level.FINE, "Parameters not active in {0} [{1}]: {2}",
+                    new Object[] {shaderName, key.replace('\n', ' ').trim(), inactive});
+        }
+        
+    }
+    
+    /**
+     * Uploads the extent built-in uniform if it is active and has changed.
+     * <p>
+     * The program must be in use.
+     * 
+     * @param x
+     * @param y
+     * @param z 
+     */
+    void setExtent(int x, int y, int z) {
+        if (extentLocation >= 0 && (extent[0] != x || extent[1] != y || extent[2] != z)) {
+            glUniform3i(extentLocation, x, y, z);
+            extent[0] = x;
+            extent[1] = y;
+            extent[2] = z;
+        }
+    }
+    
+    /**
+     * Deletes the OpenGL program of this variant.
+     */
+    public void delete() {
+        glDeleteProgram(program);
+    }
+    
+    /**
+     * Returns true if the reflected uniform tables are up to date with
+     * the modification count of the declared uniforms.
+     * 
+     * @param modCount
+     * @return 
+     */
+    public boolean isReflected(int modCount) {
+        return reflectedCount == modCount;
+    }
+    
+    int getNumUniforms() {
+        return uniforms.length;
+    }
+    ComputeUniform getUniform(int i) {
+        return uniforms[i];
+    }
+    int getLocation(int i) {
+        return locations[i];
+    }
+    int getTextureUnit(int i) {
+        return units[i];
+    }
+    boolean isImage(int i) {
+        return images[i];
+    }
+    boolean isUploaded(int i) {
+        return uploaded[i] == uniforms[i].getVersion();
+    }
+    void setUploaded(int i) {
+        uploaded[i] = uniforms[i].getVersion();
+    }
+    
+    private static boolean isCompatible(VarType type, int glType) {
+        switch (type) {
+            case Float:
+            case FloatArray: return glType == GL_FLOAT;
+            case Int:
+            case IntArray: return glType == GL_INT || glType == GL_UNSIGNED_INT;
+            case Boolean: return glType == GL_BOOL || glType == GL_INT;
+            case Vector2:
+            case Vector2Array: return glType == GL_FLOAT_VEC2;
+            case Vector3:
+            case Vector3Array: return glType == GL_FLOAT_VEC3;
+            case Vector4:
+            case Vector4Array: return glType == GL_FLOAT_VEC4;
+            case Matrix3:
+            case Matrix3Array: return glType == GL_FLOAT_MAT3;
+            case Matrix4:
+            case Matrix4Array: return glType == GL_FLOAT_MAT4;
+            default: return true;
+        }
+    }
+    private static boolean isImageType(int glType) {
+        return glType >= GL_IMAGE_1D && glType <= GL_UNSIGNED_INT_IMAGE_2D_MULTISAMPLE_ARRAY;
+    }
+    
+    /**
+     * Gets the canonical define string this variant was compiled with.
+     * 
+     * @return 
+     */
+    public String getKey() {
+        return key;
+    }
+    
+    /**
+     * Gets the OpenGL program id.
+     * 
+     * @return 
+     */
+    public int getProgram() {
+        return program;
+    }
+    
+    /**
+     * Gets the local work group size the program was compiled with.
+     * 
+     * @param axis 0 for X, 1 for Y, 2 for Z
+     * @return 
+     */
+    public int getLocalSize(int axis) {
+        return localSize[axis];
+    }
+    
+    /**
+     * Gets the location of the active uniform at the name.
+     * 
+     * @param name
+     * @return location, or -1 if the uniform is not active or is a block member
+     */
+    public int getUniformLocation(String name) {
+        Integer loc = activeUniforms.get(name);
+        return loc != null ? loc : -1;
+    }
+    
+    /**
+     * Gets the binding index of the active shader storage block at the name.
+     * 
+     * @param name
+     * @return binding, or -1 if the block is not active
+     */
+    public int getStorageBlockBinding(String name) {
+        Integer b = storageBlocks.get(name);
+        return b != null ? b : -1;
+    }
+    
+    /**
+     * Gets the mismatches found between the declared parameters and
+     * the program during the last reflection.
+     * 
+     * @return 
+     */
+    public List<String> getMismatches() {
+        return Collections.unmodifiableList(mismatches);
+    }
+    
+    /**
+     * Gets the names of declared parameters that are not active in the
+     * program, usually because the compiler optimized them out.
+     * 
+     * @return 
+     */
+    public List<String> getInactiveParameters() {
+        return Collections.unmodifiableList(inactive);
+    }
+    
+}
@@ -0,0 +1,117 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package codex.jmecompute.opengl;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least-recently-used cache of compiled variants, keyed by canonical define string.
+ * <p>
+ * Variants evicted from the cache have their programs deleted. The variant
+ * in use by the shader is pinned, so it is never evicted.
+ * 
+ * @author codex
+ */
+public class ComputeVariantCache {
+    
+    private final LinkedHashMap<String, ComputeVariant> variants = new LinkedHashMap<>(16, 0.75f, true);
+    private ComputeVariant pinned;
+    private int capacity;
+    
+    public ComputeVariantCache(int capacity) {
+        setCapacity(capacity);
+    }
+    
+    /**
+     * Gets the variant at the key and marks it as most recently used.
+     * 
+     * @param key
+     * @return variant, or null if not cached
+     */
+    public ComputeVariant get(String key) {
+        return variants.get(key);
+    }
+    
+    /**
+     * Adds the variant to the cache, evicting the least recently
+     * used variants if the capacity is exceeded.
+     * <p>
+     * If a variant is already cached at the same key, it is kept
+     * and the added variant is deleted instead.
+     * 
+     * @param variant 
+     * @return the variant cached at the key
+     */
+    public ComputeVariant add(ComputeVariant variant) {
+        ComputeVariant prev = variants.get(variant.getKey());
+        if (prev != null) {
+            if (prev != variant) {
+                variant.delete();
+            }
+            return prev;
+        }
+        variants.put(variant.getKey(), variant);
+        evict();
+        return variant;
+    }
+    
+    /**
+     * Protects the variant from eviction until another variant is pinned.
+     * <p>
+     * The pinned variant does not count toward the capacity.
+     * 
+     * @param pinned variant, or null to pin none
+     */
+    public void setPinned(ComputeVariant pinned) {
+        this.pinned = pinned;
+        evict();
+    }
+    
+    /**
+     * Deletes all cached variants.
+     */
+    public void clear() {
+        for (ComputeVariant v : variants.values()) {
+            v.delete();
+        }
+        variants.clear();
+        pinned = null;
+    }
+    
+    /**
+     * Sets the maximum number of variants held by this cache.
+     * 
+     * @param capacity must be at least one
+     */
+    public final void setCapacity(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Variant cache capacity must be at least one.");
+        }
+        this.capacity = capacity;
+        evict();
+    }
+    
+    private void evict() {
+        int limit = capacity + (pinned != null && variants.containsKey(pinned.getKey()) ? 1 : 0);
+        Iterator<Map.Entry<String, ComputeVariant>> it = variants.entrySet().iterator();
+        while (variants.size() > limit && it.hasNext()) {
+            ComputeVariant v = it.next().getValue();
+            if (v != pinned) {
+                v.delete();
+                it.remove();
+            }
+        }
+    }
+    
+    public int getCapacity() {
+        return capacity;
+    }
+    public int size() {
+        return variants.size();
+    }
+    
+}
@@ -0,0 +1,185 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package codex.jmecompute.opengl;
+
+import com.jme3.renderer.TextureUnitException;
+import com.jme3.texture.Image;
+import com.jme3.texture.Texture;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static org.lwjgl.opengl.GL43.*;
+
+/**
+ * Binds textures by uploading them with OpenGL directly, without a {@link com.jme3.renderer.Renderer}.
+ * <p>
+ * Only level 0 of 2D, 3D and 2D array textures is uploaded, in the formats
+ * compute shaders commonly use. Filtering and wrapping are taken from the
+ * texture. Images whose data is null are allocated without contents, which
+ * is the usual case for textures written by compute shaders.
+ * <p>
+ * Textures uploaded by this binder are owned by it and deleted by {@link #cleanup()},
+ * or individually by {@link #delete(Image)}.
+ * 
+ * @author codex
+ */
+public class DirectTextureBinder implements GLTextureBinder {
+    
+    private final ArrayList<Image> uploaded = new ArrayList<>();
+    private Texture[] bound = new Texture[16];
+    
+    @Override
+    public void bindTexture(int unit, Texture texture) throws TextureUnitException {
+        if (unit >= bound.length) {
+            bound = Arrays.copyOf(bound, Math.max(unit + 1, bound.length << 1));
+        }
+        Image img = texture.getImage();
+        int target = getTarget(texture);
+        glActiveTexture(GL_TEXTURE0 + unit);
+        if (img.getId() < 0 || img.isUpdateNeeded()) {
+            upload(texture, target);
+        } else if (bound[unit] == texture) {
+            ComputeMetrics.get().textureBindsSkipped.increment();
+            return;
+        }
+        glBindTexture(target, img.getId());
+        ComputeMetrics.get().textureBinds.increment();
+        bound[unit] = texture;
+    }
+    private void upload(Texture texture, int target) {
+        Image img = texture.getImage();
+        int[] format = getUploadFormat(img.getFormat());
+        if (img.getId() >= 0) {
+            // storage is immutable, so reallocate to apply size changes
+            glDeleteTextures(img.getId());
+        } else {
+            uploaded.add(img);
+        }
+        int id = glGenTextures();
+        glBindTexture(target, id);
+        glTexParameteri(target, GL_TEXTURE_MAX_LEVEL, 0);
+        int filter = (texture.getMagFilter() == Texture.MagFilter.Nearest ? GL_NEAREST : GL_LINEAR);
+        glTexParameteri(target, GL_TEXTURE_MIN_FILTER, filter);
+        glTexParameteri(target, GL_TEXTURE_MAG_FILTER, filter);
+        glTexParameteri(target, GL_TEXTURE_WRAP_S, getWrap(texture.getWrap(Texture.WrapAxis.S)));
+        glTexParameteri(target, GL_TEXTURE_WRAP_T, getWrap(texture.getWrap(Texture.WrapAxis.T)));
+        List<ByteBuffer> data = img.getData();
+        int w = img.getWidth(), h = img.getHeight();
+        if (target == GL_TEXTURE_2D) {
+            glTexStorage2D(target, 1, format[0], w, h);
+            if (!data.isEmpty() && data.get(0) != null) {
+                glTexSubImage2D(target, 0, 0, 0, w, h, format[1], format[2], data.get(0));
+                ComputeMetrics.get().bytesUploaded.add(data.get(0).remaining());
+            }
+        } else {
+            glTexParameteri(target, GL_TEXTURE_WRAP_R, getWrap(texture.getWrap(Texture.WrapAxis.R)));
+            int depth = Math.max(img.getDepth(), data.size());
+            glTexStorage3D(target, 1, format[0], w, h, depth);
+            // jME stores one buffer per slice, unless all slices share one buffer
+            int slice = (data.size() == 1 ? depth : 1);
+            for (int i = 0; i < data.size(); i++) {
+                if (data.get(i) != null) {
+                    glTexSubImage3D(target, 0, 0, 0, i, w, h, slice, format[1], format[2], data.get(i));
+                    ComputeMetrics.get().bytesUploaded.add(data.get(i).remaining());
+                }
+            }
+        }
+        img.setId(id);
+        img.clearUpdateNeeded();
+    }
+    
+    /**
+     * Deletes a texture image uploaded by this binder.
+     * <p>
+     * The image is uploaded again if bound later. Must be called while the
+     * context is current.
+     * 
+     * @param img
+     */
+    public void delete(Image img) {
+        for (int i = 0, n = uploaded.size(); i < n; i++) {
+            // Image.equals compares contents, so match by identity
+            if (uploaded.get(i) == img) {
+                uploaded.set(i, uploaded.get(n - 1));
+                uploaded.remove(n - 1);
+                break;
+            }
+        }
+        for (int i = 0; i < bound.length; i++) {
+            if (bound[i] != null && bound[i].getImage() == img) {
+                bound[i] = null;
+            }
+        }
+        if (img.getId() >= 0) {
+            glDeleteTextures(img.getId());
+            img.resetObject();
+        }
+    }
+    
+    /**
+     * Deletes all textures uploaded by this binder.
+     * <p>
+     * Must be called while the context is current.
+     */
+    public void cleanup() {
+        for (Image img : uploaded) {
+            if (img.getId() >= 0) {
+                glDeleteTextures(img.getId());
+                img.resetObject();
+            }
+        }
+        uploaded.clear();
+        Arrays.fill(bound, null);
+    }
+    
+    private static int getTarget(Texture texture) {
+        switch (texture.getType()) {
+            case TwoDimensional: return GL_TEXTURE_2D;
+            case ThreeDimensional: return GL_TEXTURE_3D;
+            case TwoDimensionalArray: return GL_TEXTURE_2D_ARRAY;
+            default: throw new UnsupportedOperationException(texture.getType()+" textures are not supported.");
+        }
+    }
+    private static int getWrap(Texture.WrapMode mode) {
+        switch (mode) {
+            case Repeat: return GL_REPEAT;
+            case MirroredRepeat: return GL_MIRRORED_REPEAT;
+            default: return GL_CLAMP_TO_EDGE;
+        }
+    }
+    
+    /**
+     * Gets the internal format, pixel format and component type to upload the format with.
+     * 
+     * @param format
+     * @return 
+     */
+    static int[] getUploadFormat(Image.Format format) {
+        switch (format) {
+            case RGB8: return new int[] {GL_RGB8, GL_RGB, GL_UNSIGNED_BYTE};
+            case RGBA8: return new int[] {GL_RGBA8, GL_RGBA, GL_UNSIGNED_BYTE};
+            case RGBA16F: return new int[] {GL_RGBA16F, GL_RGBA, GL_HALF_FLOAT};
+            case RGBA32F: return new int[] {GL_RGBA32F, GL_RGBA, GL_FLOAT};
+            case RG16F: return new int[] {GL_RG16F, GL_RG, GL_HALF_FLOAT};
+            case RG32F: return new int[] {GL_RG32F, GL_RG, GL_FLOAT};
+            case R16F: return new int[] {GL_R16F, GL_RED, GL_HALF_FLOAT};
+            case R32F: return new int[] {GL_R32F, GL_RED, GL_FLOAT};
+            case RGB111110F: return new int[] {GL_R11F_G11F_B10F, GL_RGB, GL_UNSIGNED_INT_10F_11F_11F_REV};
+            case R32I: return new int[] {GL_R32I, GL_RED_INTEGER, GL_INT};
+            case R32UI: return new int[] {GL_R32UI, GL_RED_INTEGER, GL_UNSIGNED_INT};
+            case RG32I: return new int[] {GL_RG32I, GL_RG_INTEGER, GL_INT};
+            case RG32UI: return new int[] {GL_RG32UI, GL_RG_INTEGER, GL_UNSIGNED_INT};
+            case RGBA8I: return new int[] {GL_RGBA8I, GL_RGBA_INTEGER, GL_BYTE};
+            case RGBA8UI: return new int[] {GL_RGBA8UI, GL_RGBA_INTEGER, GL_UNSIGNED_BYTE};
+            case RGBA16I: return new int[] {GL_RGBA16I, GL_RGBA_INTEGER, GL_SHORT};
+            case RGBA16UI: return new int[] {GL_RGBA16UI, GL_RGBA_INTEGER, GL_UNSIGNED_SHORT};
+            case RGBA32I: return new int[] {GL_RGBA32I, GL_RGBA_INTEGER, GL_INT};
+            case RGBA32UI: return new int[] {GL_RGBA32UI, GL_RGBA_INTEGER, GL_UNSIGNED_INT};
+            default: throw new UnsupportedOperationException(format+" textures are not supported.");
+        }
+    }
+    
+}
@@ -8,6 +8,7 @@ import com.jme3.asset.AssetInfo;
 import com.jme3.asset.AssetKey;
 import com.jme3.asset.AssetLoader;
 import com.jme3.asset.AssetManager;
+import com.jme3.asset.AssetNotFoundException;
 import com.jme3.math.Matrix3f;
 import com.jme3.math.Matrix4f;
 import com.jme3.math.Vector2f;
@@ -16,10 +17,14 @@ import com.jme3.math.Vector4f;
 import com.jme3.shader.VarType;
 import com.jme3.util.blockparser.BlockLanguageParser;
 import com.jme3.util.blockparser.Statement;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  *
@@ -27,6 +32,7 @@ import java.util.List;
  */
 public class GLComputeLoader implements AssetLoader {
     
+    private static final Logger LOG = Logger.getLogger(GLComputeLoader.class.getName());
     public static final int MIN_VERSION = 430;
     private static final String FILE_HEADER = "ComputeShader";
     private static final String SHADER_HEADER = "Shader";
@@ -35,23 +41,140 @@ public class GLComputeLoader implements AssetLoader {
     private static final String PARAMETERS_HEADER = "Parameters";
     private static final String DEFINES_HEADER = "Defines";
     private static final String DEFINE_LITERAL = "#";
+    private static final String BUFFER_TYPE = "StorageBuffer";
+    private static final String STD140_LAYOUT = "std140";
     
+    /**
+     * Loads a compute shader definition.
+     * <p>
+     * Binary definitions ({@code .j3csb}) are loaded directly. For text
+     * definitions, a binary definition of the same name next to it is
+     * preferred, if one exists and neither the text, the shader code nor any
+     * imported fragment has changed since it was converted.
+     * 
+     * @param assetInfo
+     * @return
+     * @throws IOException 
+     */
     @Override
     public Object load(AssetInfo assetInfo) throws IOException {
-        InputStream in = assetInfo.openStream();
-        GLComputeShader shader;
+        return load(assetInfo.getManager(), assetInfo);
+    }
+    
+    /**
+     * Loads a new compute shader, bypassing the asset cache.
+     * <p>
+     * Every call returns a separate shader, so parameters set on one are
+     * not seen by the others. This loader need not be registered.
+     * 
+     * @param assetManager
+     * @param name asset name of the definition
+     * @return
+     * @throws IOException 
+     */
+    public static GLComputeShader load(AssetManager assetManager, String name) throws IOException {
+        AssetInfo info = assetManager.locateAsset(new AssetKey<>(name));
+        if (info == null) {
+            throw new AssetNotFoundException(name);
+        }
+        return load(assetManager, info);
+    }
+    private static GLComputeShader load(AssetManager assetManager, AssetInfo assetInfo) throws IOException {
+        AssetKey key = assetInfo.getKey();
         try {
-            shader = load(in, assetInfo.getManager(), assetInfo.getKey());
+            if (ComputeDefinition.BINARY_EXTENSION.equals(key.getExtension())) {
+                return createShader(assetManager, readBinary(assetInfo), key.getName());
+            }
+            byte[] text;
+            try (InputStream in = assetInfo.openStream()) {
+                text = ComputeSourceLibrary.readBytes(in);
+            }
+            AssetInfo binary = assetManager.locateAsset(new AssetKey<>(getBinaryName(key.getName())));
+            if (binary != null) {
+                ComputeDefinition def = readBinary(binary);
+                String changed = (def.getSourceHash() == ComputeDefinition.hashSource(text)
+                        ? findChangedInclude(assetManager, def) : key.getName());
+                if (changed == null) {
+                    return createShader(assetManager, def, binary.getKey().getName());
+                }
+                LOG.log(Level.INFO, "{0} changed since {1} was converted, loading the text definition instead",
+                        new Object[] {changed, binary.getKey().getName()});
+            }
+            return load(new ByteArrayInputStream(text), assetManager);
         } catch (IOException ex) {
             throw new IOException("Error loading compute shader.", ex);
-        } finally {
-            if (in != null) {
-                in.close();
+        }
+    }
+    private static String findChangedInclude(AssetManager assetManager, ComputeDefinition def) throws IOException {
+        List<String> includes = def.getIncludes();
+        long[] hashes = def.getIncludeHashes();
+        for (int i = 0; i < hashes.length; i++) {
+            AssetInfo info = assetManager.locateAsset(new AssetKey<>(includes.get(i)));
+            if (info == null) {
+                return includes.get(i);
+            }
+            try (InputStream in = info.openStream()) {
+                if (ComputeDefinition.hashSource(ComputeSourceLibrary.readBytes(in)) != hashes[i]) {
+                    return includes.get(i);
+                }
             }
         }
+        return null;
+    }
+    private static ComputeDefinition readBinary(AssetInfo info) throws IOException {
+        try (InputStream in = info.openStream()) {
+            return ComputeDefinition.read(in);
+        }
+    }
+    private static GLComputeShader createShader(AssetManager assetManager, ComputeDefinition def, String asset) {
+        GLComputeShader shader = def.createShader();
+        if (def.getSource() != null) {
+            // binary code is already resolved, but must still be updated when a fragment changes
+            ComputeSourceLibrary.get(assetManager).register(shader, def.getSource(), def.getIncludes());
+        }
+        LOG.log(Level.FINE, "Loaded {0} from binary definition {1}", new Object[] {shader.getName(), asset});
+        return shader;
+    }
+    private static GLComputeShader load(InputStream in, AssetManager assetManager) throws IOException {
+        ComputeSourceLibrary library = ComputeSourceLibrary.get(assetManager);
+        ComputeDefinition def = parseDefinition(in, library::resolve);
+        GLComputeShader shader = def.createShader();
+        library.register(shader, def.getSource());
+        return shader;
+    }
+    
+    /**
+     * Gets the name of the binary definition corresponding to the definition.
+     * 
+     * @param name asset name of a text definition
+     * @return 
+     */
+    public static String getBinaryName(String name) {
+        int i = name.lastIndexOf('.');
+        return (i > name.lastIndexOf('/') ? name.substring(0, i) : name) + '.' + ComputeDefinition.BINARY_EXTENSION;
+    }
+    
+    /**
+     * Parses a compute shader definition.
+     * 
+     * @param in definition source
+     * @param sources loads shader code by asset name
+     * @return
+     * @throws IOException 
+     */
+    static GLComputeShader parse(InputStream in, Function<String, String> sources) throws IOException {
+        return parseDefinition(in, sources).createShader();
     }
     
-    private GLComputeShader load(InputStream in, AssetManager assetManager, AssetKey key) throws IOException {
+    /**
+     * Parses a compute shader definition without creating the shader.
+     * 
+     * @param in definition source
+     * @param sources loads shader code by asset name
+     * @return
+     * @throws IOException 
+     */
+    public static ComputeDefinition parseDefinition(InputStream in, Function<String, String> sources) throws IOException {
         List<Statement> statements = BlockLanguageParser.parse(in);
         if (statements.size() != 1) {
             throw new IOException("Source file may only contain one root statement.");
@@ -62,16 +185,24 @@ public class GLComputeLoader implements AssetLoader {
             throw new IOException("Must be a compute shader definition file.");
         }
         name = name.substring(FILE_HEADER.length() + 1).trim();
-        String code = null;
+        String code = null, source = null;
         int[] versions = null;
+        int blockBinding = -1;
         LinkedList<ComputeUniform> params = new LinkedList<>();
         LinkedList<ComputeDefine> defines = new LinkedList<>();
+        LinkedList<ComputeBufferBinding> buffers = new LinkedList<>();
         for (Statement s : root.getContents()) {
             String header = s.getLine().split("[ \\{]")[0];
             switch (header) {
-                case SHADER_HEADER: code = readShader(assetManager, s.getLine());
+                case SHADER_HEADER:
+                    source = readShaderName(s.getLine());
+                    code = sources.apply(source);
+                    break;
                 case VERSION_HEADER: versions = readVersions(s.getLine()); break;
-                case PARAMETERS_HEADER: readParameters(s, params); break;
+                case PARAMETERS_HEADER:
+                    readParameters(s, params, buffers);
+                    blockBinding = readBlockBinding(s.getLine());
+                    break;
                 case DEFINES_HEADER: readDefines(s, defines); break;
             }
         }
@@ -81,18 +212,13 @@ public class GLComputeLoader implements AssetLoader {
         if (versions == null) {
             throw new NullPointerException("Supported versions not specified.");
         }
-        GLComputeShader shader = new GLComputeShader(name, versions, code);
-        for (ComputeDefine d : defines) {
-            shader.setDefine(d);
-        }
-        for (ComputeUniform u : params) {
-            shader.set(u);
-        }
+        ComputeDefinition def = new ComputeDefinition(name, versions, code, params, defines, buffers, blockBinding);
+        def.setSource(source);
+        return def;
     }
     
-    private static String readShader(AssetManager assetManager, String line) throws IOException {
-        String asset = line.substring(SHADER_HEADER.length() + 1).trim();
-        return assetManager.loadAsset(new AssetKey<>(asset));
+    private static String readShaderName(String line) {
+        return line.substring(SHADER_HEADER.length() + 1).trim();
     }
     private static int[] readVersions(String line) throws IOException {
         String[] array = line.substring(VERSION_HEADER.length() + 1).trim().split(" ");
@@ -100,7 +226,7 @@ public class GLComputeLoader implements AssetLoader {
         for (int i = 0; i < array.length; i++) {
             String a = array[i].trim();
             if (a.startsWith(VERSION_PREFIX)) {
-                int v = versions[i] = Integer.parseInt(a.substring(VERSION_PREFIX.length() + 1));
+                int v = versions[i] = Integer.parseInt(a.substring(VERSION_PREFIX.length()));
                 if (v < MIN_VERSION) {
                     throw new IOException("Compute shaders are not supported before OpenGL "+MIN_VERSION);
                 }
@@ -110,15 +236,23 @@ public class GLComputeLoader implements AssetLoader {
         }
         return versions;
     }
-    private static void readParameters(Statement statement, LinkedList<ComputeUniform> params) throws IOException {
+    private static void readParameters(Statement statement, LinkedList<ComputeUniform> params,
+            LinkedList<ComputeBufferBinding> buffers) throws IOException {
         for (Statement p : statement.getContents()) {
             String[] args = p.getLine().split(":", 2);
-            String[] names = args[0].split(" ", 2);
+            String[] names = args[0].trim().split(" ", 2);
             if (names.length != 2) {
                 throw new IOException("Parameter must have type and name.");
             }
+            if (names[0].equals(BUFFER_TYPE)) {
+                int binding = (args.length > 1 ? Integer.parseInt(args[1].trim()) : -1);
+                buffers.add(new ComputeBufferBinding(names[1].trim(), binding));
+                continue;
+            }
             ComputeUniform u = new ComputeUniform(names[1].trim(), VarType.valueOf(names[0].trim()));
-            if (args.length > 1) {
+            if (args.length > 1 && u.getType().isTextureType()) {
+                u.setImageAccess(parseImageAccess(args[1].trim()));
+            } else if (args.length > 1) {
                 u.setValue(parseDeclaredDefaultValue(u.getType(), args[1].trim()));
             } else {
                 u.setValue(getTypeDefaultValue(u.getType()));
@@ -126,6 +260,23 @@ public class GLComputeLoader implements AssetLoader {
             params.add(u);
         }
     }
+    private static ComputeImageAccess parseImageAccess(String access) throws IOException {
+        try {
+            return ComputeImageAccess.valueOf(access);
+        } catch (IllegalArgumentException ex) {
+            throw new IOException("Unknown image access \""+access+"\"", ex);
+        }
+    }
+    private static int readBlockBinding(String line) throws IOException {
+        String[] args = line.substring(PARAMETERS_HEADER.length()).replace('{', ' ').trim().split(" +");
+        if (args[0].isEmpty()) {
+            return -1;
+        }
+        if (!args[0].equals(STD140_LAYOUT)) {
+            throw new IOException("Unsupported parameter layout \""+args[0]+"\"");
+        }
+        return args.length > 1 ? Integer.parseInt(args[1]) : 0;
+    }
     private static Object parseDeclaredDefaultValue(VarType type, String value) throws IOException {
         switch (type) {
             case Boolean: return Boolean.valueOf(value);
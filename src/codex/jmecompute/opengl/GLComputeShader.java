@@ -4,6 +4,7 @@
  */
 package codex.jmecompute.opengl;
 
+import codex.jmecompute.ComputeBackend;
 import com.jme3.math.ColorRGBA;
 import com.jme3.math.Quaternion;
 import com.jme3.math.Vector2f;
@@ -18,42 +19,115 @@ import com.jme3.texture.Texture;
 import static java.lang.Runtime.version;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import jme3tools.shader.ShaderDebug;
 import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GLCapabilities;
 import static org.lwjgl.opengl.GL43.*;
+import static org.lwjgl.opengl.KHRParallelShaderCompile.GL_COMPLETION_STATUS_KHR;
 
 /**
  *
  * @author codex
  */
-public class GLComputeShader {
+public class GLComputeShader implements ComputeBackend {
     
     private static final Logger LOG = Logger.getLogger(GLComputeShader.class.getName());
+    public static final int DEFAULT_VARIANT_CACHE_SIZE = 8;
+    /**
+     * Number of polls a pending program is given before it is finished,
+     * where completion cannot be queried.
+     */
+    public static final int UNQUERYABLE_COMPILE_POLLS = 3;
+    public static final String BUILTIN_PREFIX = "g_";
+    /**
+     * Name of the built-in {@code ivec3} uniform receiving the number of
+     * elements passed to {@link #executeElements(GLTextureBinder, EnumSet, int, int, int)}.
+     */
+    public static final String EXTENT_UNIFORM = "g_Extent";
+    public static final String UNIFORM_BLOCK_NAME = "Parameters";
+    private static ComputeBinaryCache defaultBinaryCache;
     
-    private final String name, code;
+    private final String name;
+    private String code;
     private final int[] versions;
-    private final int program;
     private final HashMap<String, ComputeUniform> uniforms = new HashMap<>();
-    private final HashMap<String, ComputeDefine> defines = new HashMap<>();
+    private final TreeMap<String, ComputeDefine> defines = new TreeMap<>();
+    private final HashMap<String, ComputeBufferBinding> bufferMap = new HashMap<>();
+    private final ArrayList<ComputeBufferBinding> buffers = new ArrayList<>();
+    private final ComputeVariantCache variants = new ComputeVariantCache(DEFAULT_VARIANT_CACHE_SIZE);
     private final IntBuffer intBuf = BufferUtils.createIntBuffer(1);
+    private ComputeBinaryCache binaryCache = defaultBinaryCache;
+    private final HashMap<String, PendingProgram> pending = new HashMap<>();
+    private ComputeVariant variant;
+    private ComputeVariant fallback;
+    private TreeMap<String, Object> fallbackDefines;
+    private ComputeUniformBlock uniformBlock;
+    private ComputeProfiler profiler;
+    private GLTextureBinder contextBinder;
+    private EnumSet<Caps> contextCaps;
+    private ComputeLocalSizeTuner tuner;
+    private int[][] tunerCandidates;
     private int version = -1;
     private boolean failOnMiss = false;
+    private int uniformModCount = 0;
     private boolean updateFlag = true;
+    private boolean asyncCompile = false;
+    private boolean waiting = false;
     
     public GLComputeShader(String name, int[] versions, String code) {
         this.name = name;
         this.versions = versions;
         this.code = code;
-        this.program = glCreateProgram();
         if (this.versions.length == 0) {
             throw new IllegalArgumentException("At least one version must be specified.");
         }
     }
     
+    /**
+     * Executes this compute shader in the context set by
+     * {@link #setContext(GLTextureBinder, EnumSet)}.
+     * 
+     * @param x number of work groups on the X axis
+     * @param y number of work groups on the Y axis
+     * @param z number of work groups on the Z axis
+     * @throws IllegalStateException if no context is set
+     */
+    @Override
+    public void execute(int x, int y, int z) {
+        checkContext();
+        execute(contextBinder, contextCaps, x, y, z);
+    }
+    
+    /**
+     * Executes this compute shader once per element in the context set by
+     * {@link #setContext(GLTextureBinder, EnumSet)}.
+     * 
+     * @param nx number of elements on the X axis
+     * @param ny number of elements on the Y axis
+     * @param nz number of elements on the Z axis
+     * @throws IllegalStateException if no context is set
+     */
+    @Override
+    public void executeElements(int nx, int ny, int nz) {
+        checkContext();
+        executeElements(contextBinder, contextCaps, nx, ny, nz);
+    }
+    private void checkContext() {
+        if (contextBinder == null) {
+            throw new IllegalStateException("No context set to execute "+name+" in.");
+        }
+    }
+    
     /**
      * Executes this compute shader.
      * <p>
@@ -72,6 +146,11 @@ public class GLComputeShader {
      * Executes this compute shader.
      * <p>
      * The number of global executions is determined by {@code x * y * z}.
+     * <p>
+     * Memory barriers are deferred: this dispatch only issues the barrier bits
+     * needed for its own reads of resources written by earlier dispatches, and
+     * for its writes to resources read or written by earlier dispatches.
+     * Other consumers of the results must use {@link ComputeBarriers}.
      * 
      * @param texBind binds texture uniforms to the OpenGL context
      * @param caps hardware capabilities
@@ -80,67 +159,398 @@ public class GLComputeShader {
      * @param z number of executions on the Z axis
      */
     public void execute(GLTextureBinder texBind, EnumSet<Caps> caps, int x, int y, int z) {
+        if (!prepare(caps)) {
+            return;
+        }
+        glUseProgram(variant.getProgram());
+        bindResources(texBind);
+        dispatch(x, y, z);
+    }
+    
+    /**
+     * Executes this compute shader with work group counts read from a buffer.
+     * 
+     * @param renderer
+     * @param indirect buffer holding three consecutive unsigned ints {@code (x, y, z)}
+     * @param offset byte offset of the work group counts, must be a multiple of four
+     * @see #execute(GLTextureBinder, EnumSet, ComputeBuffer, long)
+     */
+    public void execute(Renderer renderer, ComputeBuffer indirect, long offset) {
+        execute(GLTextureBinder.useRenderer(renderer), renderer.getCaps(), indirect, offset);
+    }
+    
+    /**
+     * Executes this compute shader with work group counts read from a buffer.
+     * <p>
+     * The counts are read by the GPU when the dispatch executes, so they may be
+     * written by earlier dispatches without any CPU readback. The command barrier
+     * required for that is issued only if the buffer was written since the last one.
+     * 
+     * @param texBind binds texture uniforms to the OpenGL context
+     * @param caps hardware capabilities
+     * @param indirect buffer holding three consecutive unsigned ints {@code (x, y, z)}
+     * @param offset byte offset of the work group counts, must be a multiple of four
+     */
+    public void execute(GLTextureBinder texBind, EnumSet<Caps> caps, ComputeBuffer indirect, long offset) {
+        if (!prepare(caps)) {
+            return;
+        }
+        glUseProgram(variant.getProgram());
+        bindResources(texBind);
+        dispatchIndirect(indirect, offset);
+    }
+    
+    /**
+     * Executes this compute shader once per element.
+     * 
+     * @param renderer
+     * @param nx number of elements on the X axis
+     * @param ny number of elements on the Y axis
+     * @param nz number of elements on the Z axis
+     * @see #executeElements(GLTextureBinder, EnumSet, int, int, int)
+     */
+    public void executeElements(Renderer renderer, int nx, int ny, int nz) {
+        executeElements(GLTextureBinder.useRenderer(renderer), renderer.getCaps(), nx, ny, nz);
+    }
+    
+    /**
+     * Executes this compute shader once per element.
+     * <p>
+     * The number of work groups is computed from the local work group size
+     * of the linked program. Since the last work group on each axis may be
+     * partially outside the extent, the element counts are passed to the
+     * {@code ivec3 g_Extent} uniform (if declared) so the shader can
+     * discard excess invocations.
+     * 
+     * @param texBind binds texture uniforms to the OpenGL context
+     * @param caps hardware capabilities
+     * @param nx number of elements on the X axis
+     * @param ny number of elements on the Y axis
+     * @param nz number of elements on the Z axis
+     */
+    public void executeElements(GLTextureBinder texBind, EnumSet<Caps> caps, int nx, int ny, int nz) {
+        if (tuner != null) {
+            ComputeLocalSizeTuner t = tuner;
+            tuner = null;
+            t.tune(this, texBind, caps, nx, ny, nz, tunerCandidates);
+        }
+        if (!prepare(caps)) {
+            return;
+        }
+        glUseProgram(variant.getProgram());
+        bindResources(texBind);
+        variant.setExtent(nx, ny, nz);
+        dispatch(groups(nx, variant.getLocalSize(0)), groups(ny, variant.getLocalSize(1)), groups(nz, variant.getLocalSize(2)));
+    }
+    private static int groups(int elements, int localSize) {
+        return (elements + localSize - 1) / localSize;
+    }
+    
+    /**
+     * Applies define changes and selects (compiling if necessary) the variant to execute.
+     * 
+     * @param caps 
+     * @return false if the dispatch should be skipped because the variant
+     * is still compiling and no fallback is set
+     */
+    boolean prepare(EnumSet<Caps> caps) {
         updateParameterDefines();
-        compileSource(caps);
-        glUseProgram(program);
+        return compileSource(caps);
+    }
+    
+    /**
+     * Uploads changed uniforms and binds textures and buffers.
+     * <p>
+     * The variant's program must be in use.
+     * 
+     * @param texBind 
+     */
+    void bindResources(GLTextureBinder texBind) {
         updateUniforms(texBind);
+        if (uniformBlock != null) {
+            int bytes = uniformBlock.update();
+            if (bytes > 0) {
+                ComputeMetrics.get().uniformUploads.increment();
+                ComputeMetrics.get().bytesUploaded.add(bytes);
+            }
+        }
+        bindBuffers();
+    }
+    
+    /**
+     * Dispatches the bound program, issuing barriers required by its accesses.
+     * 
+     * @param x
+     * @param y
+     * @param z 
+     */
+    void dispatch(int x, int y, int z) {
+        ComputeBarriers barriers = ComputeBarriers.get();
+        barriers.issue(getRequiredBarriers(barriers));
+        int token = (profiler != null ? profiler.begin() : 0);
         glDispatchCompute(x, y, z);
-        glMemoryBarrier(GL_SHADER_IMAGE_ACCESS_BARRIER_BIT);
+        ComputeMetrics.get().dispatches.increment();
+        if (token != 0) {
+            profiler.end(token, name);
+        }
+        markAccesses(barriers);
+        updateFlag = false;
+    }
+    
+    /**
+     * Dispatches the bound program with work group counts read from the buffer.
+     * 
+     * @param indirect
+     * @param offset 
+     */
+    void dispatchIndirect(ComputeBuffer indirect, long offset) {
+        if ((offset & 3) != 0) {
+            throw new IllegalArgumentException("Indirect dispatch offset must be a multiple of four.");
+        }
+        if (offset + 12 > indirect.getCapacity()) {
+            throw new IndexOutOfBoundsException("Indirect dispatch arguments exceed buffer capacity.");
+        }
+        indirect.initialize();
+        ComputeBarriers barriers = ComputeBarriers.get();
+        barriers.issue(getRequiredBarriers(barriers) | barriers.getRequired(indirect, GL_COMMAND_BARRIER_BIT));
+        glBindBuffer(GL_DISPATCH_INDIRECT_BUFFER, indirect.getId());
+        int token = (profiler != null ? profiler.begin() : 0);
+        glDispatchComputeIndirect(offset);
+        ComputeMetrics.get().dispatches.increment();
+        if (token != 0) {
+            profiler.end(token, name);
+        }
+        glBindBuffer(GL_DISPATCH_INDIRECT_BUFFER, 0);
+        markAccesses(barriers);
         updateFlag = false;
     }
     
     private void updateParameterDefines() {
         for (ComputeDefine d : defines.values()) if (d.paramName != null) {
             ComputeUniform u = uniforms.get(d.paramName);
-            if (u != null && d.setValue(u.getValue())) {
-                updateFlag = true;
+            if (u != null && d.paramVersion != u.getVersion()) {
+                // only box the parameter's value after it actually changed
+                d.paramVersion = u.getVersion();
+                if (d.setValue(u.getValue())) {
+                    updateFlag = true;
+                }
             }
         }
     }
-    private void compileSource(EnumSet<Caps> caps) {
+    private boolean compileSource(EnumSet<Caps> caps) {
         
-        if (!updateFlag) {
-            return;
+        if (!updateFlag && !waiting && variant != null) {
+            return true;
         }
         
-        int shader = glCreateShader(GL_COMPUTE_SHADER);
+        // look up a previously compiled permutation
+        String key = buildDefines(new StringBuilder(), defines.values()).toString();
+        ComputeVariant v = variants.get(key);
+        if (v == null) {
+            if (asyncCompile) {
+                v = pollVariant(caps, key);
+                if (v == null) {
+                    waiting = true;
+                    variant = getFallback(caps);
+                    variants.setPinned(null);
+                    return variant != null;
+                }
+            } else {
+                v = variants.add(new ComputeVariant(key, linkProgram(getSource(caps, key))));
+            }
+        }
+        waiting = false;
+        variant = v;
+        // the variant in use must survive precompiles evicting from the cache
+        variants.setPinned(v);
+        return true;
         
-        // build source
-        StringBuilder builder = new StringBuilder();
-        builder.append("#version ")
-               .append(getVersion(caps))
-               .append(" core\n");
-        for (ComputeDefine d : defines.values()) {
-            if (d.isEnabled()) {
-                builder.append("#define ")
-                       .append(d.defineName)
-                       .append(' ')
-                       .append(d.getValue())
-                       .append('\n');
+    }
+    private String getSource(EnumSet<Caps> caps, String key) {
+        String header = (uniformBlock != null ? uniformBlock.getDeclaration() : "");
+        return assembleSource(getVersion(caps), key + header, code);
+    }
+    private ComputeVariant pollVariant(EnumSet<Caps> caps, String key) {
+        PendingProgram p = pending.get(key);
+        if (p == null) {
+            p = startLink(getSource(caps, key));
+            pending.put(key, p);
+        }
+        if (!isComplete(p)) {
+            return null;
+        }
+        pending.remove(key);
+        return variants.add(new ComputeVariant(key, finishLink(p)));
+    }
+    private ComputeVariant getFallback(EnumSet<Caps> caps) {
+        if (fallback == null && fallbackDefines != null) {
+            String key = buildKey(fallbackDefines);
+            fallback = new ComputeVariant(key, linkProgram(getSource(caps, key)));
+        }
+        return fallback;
+    }
+    private static String buildKey(Map<String, ?> values) {
+        TreeMap<String, ComputeDefine> sorted = new TreeMap<>();
+        for (Map.Entry<String, ?> e : values.entrySet()) {
+            sorted.put(e.getKey(), new ComputeDefine(null, e.getKey(), e.getValue()));
+        }
+        return buildDefines(new StringBuilder(), sorted.values()).toString();
+    }
+    private int linkProgram(String source) {
+        return finishLink(startLink(source));
+    }
+    
+    /**
+     * Submits the source for compiling and linking without waiting for the result.
+     * 
+     * @param source
+     * @return 
+     */
+    private PendingProgram startLink(String source) {
+        
+        if (binaryCache != null) {
+            int program = binaryCache.load(source);
+            if (program != 0) {
+                return new PendingProgram(source, 0, program);
             }
         }
-        builder.append(code);
-        glShaderSource(shader, builder);
         
-        // compile source
+        ComputeMetrics metrics = ComputeMetrics.get();
+        int shader = glCreateShader(GL_COMPUTE_SHADER);
+        glShaderSource(shader, source);
+        long start = System.nanoTime();
         glCompileShader(shader);
+        metrics.compiles.increment();
+        metrics.compileNanos.add(System.nanoTime() - start);
+        
+        int program = glCreateProgram();
+        if (binaryCache != null) {
+            glProgramParameteri(program, GL_PROGRAM_BINARY_RETRIEVABLE_HINT, GL_TRUE);
+        }
+        glAttachShader(program, shader);
+        start = System.nanoTime();
+        glLinkProgram(program);
+        metrics.links.increment();
+        metrics.linkNanos.add(System.nanoTime() - start);
+        return new PendingProgram(source, shader, program);
+        
+    }
+    
+    /**
+     * Returns true if the pending program can be finished without blocking.
+     * <p>
+     * Without {@code KHR_parallel_shader_compile}, completion cannot be
+     * queried, so the program is considered complete after
+     * {@link #UNQUERYABLE_COMPILE_POLLS} polls. Finishing it may then still
+     * block until the driver has compiled it.
+     * 
+     * @param p
+     * @return 
+     */
+    private static boolean isComplete(PendingProgram p) {
+        if (p.shader == 0) {
+            return true;
+        }
+        if (isCompletionQueryable()) {
+            return glGetProgrami(p.program, GL_COMPLETION_STATUS_KHR) == GL_TRUE;
+        }
+        return ++p.polls > UNQUERYABLE_COMPILE_POLLS;
+    }
+    private static boolean isCompletionQueryable() {
+        GLCapabilities glCaps = GL.getCapabilities();
+        return glCaps.GL_KHR_parallel_shader_compile || glCaps.GL_ARB_parallel_shader_compile;
+    }
+    
+    /**
+     * Checks the results of compiling and linking, blocking until they are available.
+     * 
+     * @param p
+     * @return linked program
+     */
+    private int finishLink(PendingProgram p) {
+        
+        if (p.shader == 0) {
+            return p.program;
+        }
+        
+        // compile status
+        int shader = p.shader, program = p.program;
+        String source = p.source;
+        ComputeMetrics metrics = ComputeMetrics.get();
+        long start = System.nanoTime();
         glGetShaderiv(shader, GL_COMPILE_STATUS, intBuf);
+        metrics.compileNanos.add(System.nanoTime() - start);
         if (intBuf.get(0) == GL_FALSE) {
             glGetShaderiv(shader, GL_INFO_LOG_LENGTH, intBuf);
             int length = intBuf.get(0);
             if (length > 3) {
                 String info = glGetShaderInfoLog(shader, length);
-                LOG.log(Level.SEVERE, "Bad compile of\n{0}", ShaderDebug.formatShaderSource(builder.toString()));
+                LOG.log(Level.SEVERE, "Bad compile of\n{0}", ShaderDebug.formatShaderSource(source));
+                glDeleteProgram(program);
+                glDeleteShader(shader);
                 throw new RuntimeException("Compile error in " + name + "\n" + info);
             }
         }
         
-        // attach shader
-        glAttachShader(program, shader);
-        glLinkProgram(program);
+        // link status
+        start = System.nanoTime();
+        glGetProgramiv(program, GL_LINK_STATUS, intBuf);
+        metrics.linkNanos.add(System.nanoTime() - start);
+        glDetachShader(program, shader);
         glDeleteShader(shader);
+        if (intBuf.get(0) == GL_FALSE) {
+            String info = glGetProgramInfoLog(program);
+            glDeleteProgram(program);
+            throw new RuntimeException("Link error in " + name + "\n" + info);
+        }
+        if (binaryCache != null) {
+            binaryCache.store(source, program);
+        }
+        return program;
         
     }
+    
+    /**
+     * Assembles the full shader source from the version, define block and code.
+     * 
+     * @param version GLSL version
+     * @param defines define block, as built by {@link #buildDefines(StringBuilder, Collection)}
+     * @param code shader code
+     * @return 
+     */
+    static String assembleSource(int version, String defines, String code) {
+        StringBuilder builder = new StringBuilder(defines.length() + code.length() + 20);
+        builder.append("#version ")
+               .append(version)
+               .append(" core\n")
+               .append(defines)
+               .append(code);
+        return builder.toString();
+    }
+    
+    /**
+     * Appends a {@code #define} line for each enabled define.
+     * <p>
+     * Defines must be iterated in a deterministic order so that equal
+     * permutations produce equal strings.
+     * 
+     * @param builder
+     * @param defines
+     * @return the builder
+     */
+    static StringBuilder buildDefines(StringBuilder builder, Collection<ComputeDefine> defines) {
+        for (ComputeDefine d : defines) {
+            if (d.isEnabled()) {
+                builder.append("#define ")
+                       .append(d.defineName)
+                       .append(' ')
+                       .append(d.getValue())
+                       .append('\n');
+            }
+        }
+        return builder;
+    }
+    
     private int getVersion(EnumSet<Caps> caps) {
         if (version >= 0) {
             return version;
@@ -156,28 +566,130 @@ public class GLComputeShader {
         return version;
     }
     private void updateUniforms(GLTextureBinder texBind) {
-        int nextTexUnit = 0;
-        for (ComputeUniform u : uniforms.values()) {
+        if (!variant.isReflected(uniformModCount)) {
+            variant.reflect(name, uniforms, uniformModCount);
+        }
+        int uploads = 0, skipped = 0, bytes = 0;
+        for (int i = 0, n = variant.getNumUniforms(); i < n; i++) {
+            ComputeUniform u = variant.getUniform(i);
             if (u.getType().isTextureType()) {
-                setUniformTexture(texBind, u, nextTexUnit++);
-            } else if (u.isUpdateNeeded()) {
-                setUniformValue(u);
+                setUniformTexture(texBind, u, variant.getTextureUnit(i), variant.isImage(i));
+            } else if (!variant.isUploaded(i)) {
+                if (u.hasValue()) {
+                    setUniformValue(u, variant.getLocation(i));
+                    bytes += getUploadSize(u);
+                    uploads++;
+                }
+                variant.setUploaded(i);
+            } else {
+                skipped++;
             }
             u.clearUpdateNeeded();
         }
+        ComputeMetrics metrics = ComputeMetrics.get();
+        if (uploads > 0) {
+            metrics.uniformUploads.add(uploads);
+            metrics.bytesUploaded.add(bytes);
+        }
+        if (skipped > 0) {
+            metrics.uniformUploadsSkipped.add(skipped);
+        }
+    }
+    private static int getUploadSize(ComputeUniform u) {
+        switch (u.getType()) {
+            case Vector2: return 8;
+            case Vector3: return 12;
+            case Vector4: return 16;
+            case Matrix3: return 36;
+            case Matrix4: return 64;
+            case IntArray: return ((IntBuffer)u.getValue()).remaining() * 4;
+            default: return u.getBuffer() != null ? u.getBuffer().remaining() * 4 : 4;
+        }
+    }
+    private void bindBuffers() {
+        for (ComputeBufferBinding b : buffers) {
+            int binding = getBinding(b);
+            if (binding >= 0) {
+                b.getBuffer().bind(binding);
+            }
+        }
+    }
+    private int getBinding(ComputeBufferBinding b) {
+        if (b.getBuffer() == null) {
+            return -1;
+        }
+        int binding = b.getBinding();
+        if (binding < 0) {
+            binding = variant.getStorageBlockBinding(b.getName());
+        }
+        return binding;
+    }
+    private int getRequiredBarriers(ComputeBarriers barriers) {
+        int bits = 0;
+        for (int i = 0, n = variant.getNumUniforms(); i < n; i++) {
+            int id = getTextureId(i);
+            if (id < 0) {
+                continue;
+            }
+            if (isWrittenImage(i)) {
+                bits |= barriers.getRequiredForTextureWrite(id, GL_SHADER_IMAGE_ACCESS_BARRIER_BIT);
+            } else {
+                bits |= barriers.getRequiredForTexture(id, variant.isImage(i)
+                        ? GL_SHADER_IMAGE_ACCESS_BARRIER_BIT : GL_TEXTURE_FETCH_BARRIER_BIT);
+            }
+        }
+        for (ComputeBufferBinding b : buffers) {
+            if (getBinding(b) >= 0) {
+                bits |= b.isWritable()
+                        ? barriers.getRequiredForWrite(b.getBuffer(), GL_SHADER_STORAGE_BARRIER_BIT)
+                        : barriers.getRequired(b.getBuffer(), GL_SHADER_STORAGE_BARRIER_BIT);
+            }
+        }
+        return bits;
     }
-    private void setUniformValue(ComputeUniform uniform) {
+    private void markAccesses(ComputeBarriers barriers) {
+        barriers.nextEpoch();
+        for (int i = 0, n = variant.getNumUniforms(); i < n; i++) {
+            int id = getTextureId(i);
+            if (id < 0) {
+                continue;
+            }
+            if (isWrittenImage(i)) {
+                barriers.markTextureWritten(id);
+            } else {
+                barriers.markTextureRead(id);
+            }
+        }
+        for (ComputeBufferBinding b : buffers) {
+            if (getBinding(b) >= 0) {
+                if (b.isWritable()) {
+                    barriers.markWritten(b.getBuffer());
+                } else {
+                    barriers.markRead(b.getBuffer());
+                }
+            }
+        }
+    }
+    private boolean isWrittenImage(int i) {
+        return variant.isImage(i) && variant.getUniform(i).getImageAccess().isWritable();
+    }
+    private int getTextureId(int i) {
+        ComputeUniform u = variant.getUniform(i);
+        if (!u.getType().isTextureType() || u.getValue() == null) {
+            return -1;
+        }
+        return ((Texture)u.getValue()).getImage().getId();
+    }
+    private void setUniformValue(ComputeUniform uniform, int id) {
         /**
          * Copyright (c) 2009-2024 jMonkeyEngine
          * All rights reserved.
          */
         FloatBuffer fb;
         IntBuffer ib;
-        int id = glGetUniformLocation(program, uniform.getName());
         switch (uniform.getType()) {
             case Float:
-                Float f = (Float) uniform.getValue();
-                glUniform1f(id, f);
+                glUniform1f(id, uniform.getFloat());
                 break;
             case Vector2:
                 Vector2f v2 = (Vector2f) uniform.getValue();
@@ -207,8 +719,7 @@ public class GLComputeShader {
                 }
                 break;
             case Boolean:
-                Boolean b = (Boolean) uniform.getValue();
-                glUniform1i(id, b ? GL_TRUE : GL_FALSE);
+                glUniform1i(id, uniform.getBoolean() ? GL_TRUE : GL_FALSE);
                 break;
             case Matrix3:
                 fb = uniform.getBuffer();
@@ -263,25 +774,29 @@ public class GLComputeShader {
                 glUniformMatrix4fv(id, false, fb);
                 break;
             case Int:
-                Integer i = (Integer) uniform.getValue();
-                glUniform1i(id, i);
+                glUniform1i(id, uniform.getInt());
                 break;
             default:
                 throw new UnsupportedOperationException("Unsupported uniform type: " + uniform.getType());
         }
     }
-    private void setUniformTexture(GLTextureBinder texBind, ComputeUniform uniform, int unit) {
-        glUniform1i(getUniformId(uniform.getName()), unit);
+    private void setUniformTexture(GLTextureBinder texBind, ComputeUniform uniform, int unit, boolean image) {
+        if (uniform.getValue() == null) {
+            return;
+        }
+        Texture tex = (Texture)uniform.getValue();
         try {
-            texBind.bindTexture(unit, (Texture)uniform.getValue());
+            if (image) {
+                texBind.bindImage(unit, tex, 0, tex.getType() != Texture.Type.TwoDimensional, 0,
+                        uniform.getImageAccess(), ComputeImageAccess.getImageFormat(tex.getImage().getFormat()));
+            } else {
+                texBind.bindTexture(unit, tex);
+            }
         } catch (TextureUnitException ex) {
             throw new RuntimeException("Error uploading textures.", ex);
         }
     }
     
-    private int getUniformId(String name) {
-        return glGetUniformLocation(program, name);
-    }
     private ComputeUniform getUniform(String name, VarType type) {
         ComputeUniform u = uniforms.get(name);
         if (u == null) {
@@ -290,6 +805,7 @@ public class GLComputeShader {
             }
             u = new ComputeUniform(name, type);
             uniforms.put(name, u);
+            uniformModCount++;
         }
         return u;
     }
@@ -301,8 +817,95 @@ public class GLComputeShader {
         return u;
     }
     
+    @Override
     public void set(ComputeUniform uniform) {
-        uniforms.put(uniform.getName(), uniform);
+        if (uniforms.put(uniform.getName(), uniform) != uniform) {
+            uniformModCount++;
+            if (uniformBlock != null) {
+                // block members are packed from the block's own references
+                uniformBlock.replace(uniform);
+            }
+            for (ComputeDefine d : defines.values()) {
+                d.paramVersion = -1;
+            }
+        }
+    }
+    
+    /**
+     * Declares a storage buffer parameter.
+     * 
+     * @param binding 
+     */
+    public void setBufferBinding(ComputeBufferBinding binding) {
+        ComputeBufferBinding prev = bufferMap.put(binding.getName(), binding);
+        if (prev != null) {
+            buffers.remove(prev);
+        }
+        buffers.add(binding);
+    }
+    
+    /**
+     * Sets the storage buffer bound to the shader storage block at the name.
+     * <p>
+     * If not failOnMiss and the block was not declared, it is declared
+     * using the binding index specified in the shader source.
+     * 
+     * @param name name of the shader storage block
+     * @param buffer buffer, or null to bind nothing
+     */
+    @Override
+    public void setBuffer(String name, ComputeBuffer buffer) {
+        ComputeBufferBinding b = bufferMap.get(name);
+        if (b == null) {
+            if (failOnMiss) {
+                throw new NullPointerException("Buffer \""+name+"\" does not exist.");
+            }
+            b = new ComputeBufferBinding(name, -1);
+            setBufferBinding(b);
+        }
+        b.setBuffer(buffer);
+    }
+    
+    /**
+     * Binds the shader storage block at the name to a buffer of the set.
+     * <p>
+     * The bound buffer follows the set as it is swapped, so iterative
+     * dispatches need no further calls.
+     * 
+     * @param name name of the shader storage block
+     * @param set set of buffers
+     * @param offset offset from the set's current index
+     * @see #setBuffer(String, ComputeBuffer)
+     */
+    public void setBuffer(String name, ComputeResourceSet<? extends ComputeBuffer> set, int offset) {
+        setBuffer(name, (ComputeBuffer)null);
+        bufferMap.get(name).setSource(set, offset);
+    }
+    
+    /**
+     * Sets the texture uniform at the name to a texture of the set.
+     * <p>
+     * The texture follows the set as it is swapped, without the uniform
+     * being set again.
+     * 
+     * @param name name of an existing texture or image uniform
+     * @param set set of textures
+     * @param offset offset from the set's current index
+     */
+    public void setTexture(String name, ComputeResourceSet<? extends Texture> set, int offset) {
+        getUniform(name).setSource(set, offset);
+    }
+    
+    /**
+     * Gets the storage buffer at the name.
+     * 
+     * @param name
+     * @return buffer, or null if none is set
+     */
+    @Override
+    public ComputeBuffer getBuffer(String name) {
+        ComputeBufferBinding b = bufferMap.get(name);
+        return b != null ? b.getBuffer() : null;
     }
     
     /**
@@ -315,6 +918,7 @@ public class GLComputeShader {
      * @param type
      * @param value 
      */
+    @Override
     public void set(String name, VarType type, Object value) {
         getUniform(name, type).setValue(type, value);
     }
@@ -325,10 +929,83 @@ public class GLComputeShader {
      * @param name
      * @param value 
      */
+    @Override
     public void set(String name, Object value) {
         getUniform(name).setValue(value);
     }
     
+    /**
+     * Sets the {@code Float} uniform at the name without allocating.
+     * 
+     * @param name
+     * @param value 
+     */
+    @Override
+    public void setFloat(String name, float value) {
+        getUniform(name, VarType.Float).setFloat(value);
+    }
+    
+    /**
+     * Sets the {@code Int} uniform at the name without allocating.
+     * 
+     * @param name
+     * @param value 
+     */
+    @Override
+    public void setInt(String name, int value) {
+        getUniform(name, VarType.Int).setInt(value);
+    }
+    
+    /**
+     * Sets the {@code Boolean} uniform at the name without allocating.
+     * 
+     * @param name
+     * @param value 
+     */
+    @Override
+    public void setBoolean(String name, boolean value) {
+        getUniform(name, VarType.Boolean).setBoolean(value);
+    }
+    
+    /**
+     * Sets the {@code Vector2} uniform at the name in place.
+     * 
+     * @param name
+     * @param x
+     * @param y 
+     */
+    @Override
+    public void setVector2(String name, float x, float y) {
+        getUniform(name, VarType.Vector2).setVector2(x, y);
+    }
+    
+    /**
+     * Sets the {@code Vector3} uniform at the name in place.
+     * 
+     * @param name
+     * @param x
+     * @param y
+     * @param z 
+     */
+    @Override
+    public void setVector3(String name, float x, float y, float z) {
+        getUniform(name, VarType.Vector3).setVector3(x, y, z);
+    }
+    
+    /**
+     * Sets the {@code Vector4} uniform at the name in place.
+     * 
+     * @param name
+     * @param x
+     * @param y
+     * @param z
+     * @param w 
+     */
+    @Override
+    public void setVector4(String name, float x, float y, float z, float w) {
+        getUniform(name, VarType.Vector4).setVector4(x, y, z, w);
+    }
+    
     /**
      * 
      * @param define 
@@ -346,6 +1023,7 @@ public class GLComputeShader {
      * @param name
      * @param value 
      */
+    @Override
     public void setDefine(String name, Object value) {
         ComputeDefine d = defines.get(name);
         if (d == null) {
@@ -360,6 +1038,275 @@ public class GLComputeShader {
         }
     }
     
+    /**
+     * Gets the value of the define at the name.
+     * 
+     * @param name
+     * @return value, or null if not defined
+     */
+    public Object getDefine(String name) {
+        ComputeDefine d = defines.get(name);
+        return d != null && d.isEnabled() ? d.getValue() : null;
+    }
+    
+    /**
+     * Gets the {@code #define} lines the current defines add to the shader code.
+     * <p>
+     * Disabled defines, such as those set to false, null or 0, are omitted.
+     * 
+     * @return 
+     */
+    public String getDefineSource() {
+        return buildDefines(new StringBuilder(), defines.values()).toString();
+    }
+    
+    /**
+     * Sets the context used by the {@link ComputeBackend} execute methods.
+     * 
+     * @param renderer 
+     */
+    public void setContext(Renderer renderer) {
+        setContext(GLTextureBinder.useRenderer(renderer), renderer.getCaps());
+    }
+    
+    /**
+     * Sets the context used by the {@link ComputeBackend} execute methods.
+     * 
+     * @param context offscreen context
+     */
+    public void setContext(ComputeContext context) {
+        setContext(context.getTextureBinder(), context.getCaps());
+    }
+    
+    /**
+     * Sets the context used by the {@link ComputeBackend} execute methods.
+     * 
+     * @param texBind binds texture uniforms to the OpenGL context, or null to clear the context
+     * @param caps hardware capabilities
+     */
+    public void setContext(GLTextureBinder texBind, EnumSet<Caps> caps) {
+        this.contextBinder = texBind;
+        this.contextCaps = caps;
+    }
+    
+    /**
+     * Replaces the shader code.
+     * <p>
+     * Compiled programs are deleted and compiled again from the new code
+     * on the next execution.
+     * 
+     * @param code 
+     * @see ComputeSourceLibrary
+     */
+    public void setCode(String code) {
+        if (!code.equals(this.code)) {
+            this.code = code;
+            cleanup();
+        }
+    }
+    
+    /**
+     * Sets the maximum number of define permutations kept compiled.
+     * <p>
+     * Least recently used permutations are deleted once the limit is exceeded.
+     * Default is {@link #DEFAULT_VARIANT_CACHE_SIZE}.
+     * 
+     * @param size 
+     */
+    public void setVariantCacheSize(int size) {
+        variants.setCapacity(size);
+    }
+    
+    /**
+     * Sets the on-disk cache linked programs are loaded from and stored to.
+     * <p>
+     * Only affects programs compiled after this call.
+     * 
+     * @param binaryCache cache, or null to always compile from source
+     */
+    public void setBinaryCache(ComputeBinaryCache binaryCache) {
+        this.binaryCache = binaryCache;
+    }
+    
+    /**
+     * Sets the binary cache assigned to shaders created after this call,
+     * including shaders created by {@link GLComputeLoader}.
+     * 
+     * @param binaryCache cache, or null to disable
+     */
+    public static void setDefaultBinaryCache(ComputeBinaryCache binaryCache) {
+        defaultBinaryCache = binaryCache;
+    }
+    
+    /**
+     * Packs the scalar, vector and matrix parameters into a std140 uniform block.
+     * <p>
+     * The block's GLSL declaration is inserted after the defines, so the shader
+     * code must not declare these parameters itself. Compiled programs are
+     * deleted, since their source changes.
+     * 
+     * @param uniformBlock block, or null to upload parameters individually
+     */
+    public void setUniformBlock(ComputeUniformBlock uniformBlock) {
+        if (this.uniformBlock != null) {
+            this.uniformBlock.delete();
+        }
+        this.uniformBlock = uniformBlock;
+        cleanup();
+    }
+    
+    /**
+     * Packs all currently declared non-texture parameters into a std140 uniform block.
+     * 
+     * @param binding uniform buffer binding index
+     * @return the created block
+     * @see #setUniformBlock(ComputeUniformBlock)
+     */
+    public ComputeUniformBlock createUniformBlock(int binding) {
+        ComputeUniformBlock block = new ComputeUniformBlock(UNIFORM_BLOCK_NAME, binding, uniforms.values());
+        setUniformBlock(block);
+        return block;
+    }
+    
+    /**
+     * Deletes all compiled programs held by this shader.
+     * <p>
+     * The shader may still be executed afterwards, in which case
+     * programs are compiled again as needed.
+     */
+    public void cleanup() {
+        variants.clear();
+        variant = null;
+        for (PendingProgram p : pending.values()) {
+            p.delete();
+        }
+        pending.clear();
+        waiting = false;
+        if (fallback != null) {
+            fallback.delete();
+            fallback = null;
+        }
+    }
+    
+    /**
+     * Sets whether new define permutations are compiled without blocking.
+     * <p>
+     * When enabled, executing a permutation that is not yet compiled submits
+     * it to the driver and either executes the fallback variant instead or,
+     * if none is set, skips the dispatch. The driver compiles on its own threads
+     * where {@code KHR_parallel_shader_compile} is supported, which is polled
+     * for completion, so the rendering thread never waits.
+     * <p>
+     * Without that extension, compiles are not truly asynchronous: completion
+     * cannot be queried, so the result is collected a few frames later
+     * ({@link #UNQUERYABLE_COMPILE_POLLS}) and collecting it blocks if the driver
+     * has not finished. This only spreads compile stalls over frames. Compiling
+     * on a worker thread would need a context sharing objects with the rendering
+     * context, which this library does not create.
+     * <p>
+     * Default is false.
+     * 
+     * @param asyncCompile
+     * @see #setFallbackVariant(Map)
+     */
+    public void setAsyncCompile(boolean asyncCompile) {
+        this.asyncCompile = asyncCompile;
+    }
+    
+    /**
+     * Sets the permutation executed in place of permutations still being compiled.
+     * <p>
+     * The fallback is compiled synchronously the first time it is needed and
+     * is kept apart from the variant cache, so it is never evicted.
+     * 
+     * @param defines values of all enabled defines of the fallback, or null to skip dispatches instead
+     * @see #setAsyncCompile(boolean)
+     */
+    public void setFallbackVariant(Map<String, ?> defines) {
+        if (fallback != null) {
+            fallback.delete();
+            fallback = null;
+        }
+        fallbackDefines = (defines != null ? new TreeMap<>(defines) : null);
+    }
+    
+    /**
+     * Compiles the define permutations ahead of their use.
+     * <p>
+     * Each permutation is given as the values of all its enabled defines.
+     * If async compiling is enabled, compiles are only submitted, and
+     * {@link #updateCompiles()} collects them; otherwise they are compiled
+     * before returning. The variant cache is enlarged to hold all permutations,
+     * in addition to the variant currently in use.
+     * 
+     * @param permutations
+     * @param caps hardware capabilities
+     */
+    public void precompile(Collection<? extends Map<String, ?>> permutations, EnumSet<Caps> caps) {
+        if (variants.getCapacity() < permutations.size()) {
+            variants.setCapacity(permutations.size());
+        }
+        for (Map<String, ?> p : permutations) {
+            String key = buildKey(p);
+            if (variants.get(key) != null || pending.containsKey(key)) {
+                continue;
+            }
+            if (asyncCompile) {
+                pending.put(key, startLink(getSource(caps, key)));
+            } else {
+                variants.add(new ComputeVariant(key, linkProgram(getSource(caps, key))));
+            }
+        }
+    }
+    
+    /**
+     * Collects pending compiles which have completed.
+     * <p>
+     * Intended to be called every frame while loading, until no compiles remain.
+     * Where completion cannot be queried, at most one compile is collected
+     * per call, so any blocking is spread over frames.
+     * 
+     * @return number of compiles still pending
+     */
+    public int updateCompiles() {
+        boolean queryable = isCompletionQueryable();
+        for (Iterator<Map.Entry<String, PendingProgram>> it = pending.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<String, PendingProgram> e = it.next();
+            if (isComplete(e.getValue())) {
+                it.remove();
+                variants.add(new ComputeVariant(e.getKey(), finishLink(e.getValue())));
+                if (!queryable && e.getValue().shader != 0) {
+                    break;
+                }
+            }
+        }
+        return pending.size();
+    }
+    
+    /**
+     * Tunes the local work group size on the next call to
+     * {@link #executeElements(GLTextureBinder, EnumSet, int, int, int)}.
+     * 
+     * @param tuner tuner to time and store candidates with
+     * @param candidates local sizes to try, as {@code {x, y, z}} triples
+     * @see ComputeLocalSizeTuner
+     */
+    public void setAutoTune(ComputeLocalSizeTuner tuner, int[]... candidates) {
+        this.tuner = tuner;
+        this.tunerCandidates = candidates;
+    }
+    
+    /**
+     * Sets the profiler measuring the GPU time of this shader's dispatches.
+     * <p>
+     * Results are collected under the name of this shader.
+     * 
+     * @param profiler profiler, or null to disable profiling
+     */
+    public void setProfiler(ComputeProfiler profiler) {
+        this.profiler = profiler;
+    }
+    
     /**
      * Sets this as failOnMiss, so references to non-existent
  uniforms or defines will throw exceptions instead of
@@ -387,6 +1334,7 @@ public class GLComputeShader {
      * @param name
      * @return 
      */
+    @Override
     public <T> T get(String name) {
         return (T)getUniform(name).getValue();
     }
@@ -397,6 +1345,7 @@ public class GLComputeShader {
      * @param name
      * @return 
      */
+    @Override
     public boolean exists(String name) {
         return uniforms.containsKey(name);
     }
@@ -411,4 +1360,123 @@ public class GLComputeShader {
         return failOnMiss;
     }
     
+    /**
+     * Gets the profiler measuring this shader.
+     * 
+     * @return profiler, or null if not profiled
+     */
+    public ComputeProfiler getProfiler() {
+        return profiler;
+    }
+    
+    /**
+     * Gets the on-disk binary cache used by this shader.
+     * 
+     * @return cache, or null if none is used
+     */
+    public ComputeBinaryCache getBinaryCache() {
+        return binaryCache;
+    }
+    
+    /**
+     * Gets the default binary cache.
+     * 
+     * @return 
+     * @see #setDefaultBinaryCache(ComputeBinaryCache)
+     */
+    public static ComputeBinaryCache getDefaultBinaryCache() {
+        return defaultBinaryCache;
+    }
+    
+    /**
+     * Gets the uniform block parameters are packed into.
+     * 
+     * @return block, or null if parameters are uploaded individually
+     */
+    public ComputeUniformBlock getUniformBlock() {
+        return uniformBlock;
+    }
+    
+    /**
+     * Gets the currently selected variant.
+     * <p>
+     * The variant's reflection data describes how the program's active
+     * resources match the declared parameters.
+     * 
+     * @return variant, or null if this shader has not yet been executed
+     */
+    public ComputeVariant getVariant() {
+        return variant;
+    }
+    
+    /**
+     * Gets the shader code, without version and defines.
+     * 
+     * @return 
+     */
+    public String getCode() {
+        return code;
+    }
+    
+    /**
+     * Gets the name of this shader.
+     * 
+     * @return 
+     */
+    @Override
+    public String getName() {
+        return name;
+    }
+    
+    /**
+     * Returns true if define permutations are compiled without blocking.
+     * 
+     * @return 
+     */
+    public boolean isAsyncCompile() {
+        return asyncCompile;
+    }
+    
+    /**
+     * Gets the number of define permutations submitted but not yet collected.
+     * 
+     * @return 
+     */
+    public int getNumPendingCompiles() {
+        return pending.size();
+    }
+    
+    /**
+     * Gets the number of define permutations currently compiled.
+     * 
+     * @return 
+     */
+    public int getNumCompiledVariants() {
+        return variants.size();
+    }
+    
+    /**
+     * Shader and program submitted to the driver whose results have not been checked.
+     */
+    private static class PendingProgram {
+        
+        private final String source;
+        private final int shader, program;
+        private int polls = 0;
+        
+        private PendingProgram(String source, int shader, int program) {
+            this.source = source;
+            this.shader = shader;
+            this.program = program;
+        }
+        
+        private void delete() {
+            if (shader != 0) {
+                glDeleteShader(shader);
+            }
+            glDeleteProgram(program);
+        }
+        
+    }
+    
 }
@@ -6,7 +6,12 @@ package codex.jmecompute.opengl;
 
 import com.jme3.renderer.Renderer;
 import com.jme3.renderer.TextureUnitException;
+import com.jme3.texture.Image;
 import com.jme3.texture.Texture;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.WeakHashMap;
+import static org.lwjgl.opengl.GL43.glBindImageTexture;
 
 /**
  *
@@ -16,21 +21,166 @@ public interface GLTextureBinder {
     
     public void bindTexture(int unit, Texture texture) throws TextureUnitException;
     
+    /**
+     * Binds a level of the texture to an image unit.
+     * <p>
+     * By default, the texture is bound as a sampler first to ensure it is
+     * uploaded, then bound to the image unit.
+     * 
+     * @param unit image unit
+     * @param texture
+     * @param level mipmap level
+     * @param layered true to bind all layers of array, cube or 3D textures
+     * @param layer layer to bind if not layered
+     * @param access
+     * @param format image unit format
+     * @throws TextureUnitException 
+     */
+    public default void bindImage(int unit, Texture texture, int level, boolean layered, int layer,
+            ComputeImageAccess access, int format) throws TextureUnitException {
+        bindTexture(unit, texture);
+        glBindImageTexture(unit, texture.getImage().getId(), level, layered, layer, access.getGlEnum(), format);
+        ComputeMetrics.get().textureBinds.increment();
+    }
+    
+    /**
+     * Gets the binder of the renderer's context.
+     * <p>
+     * The same binder is returned for the same renderer, so its binding
+     * cache is shared by all shaders executed with that renderer.
+     * 
+     * @param renderer
+     * @return 
+     */
     public static GLTextureBinder useRenderer(Renderer renderer) {
-        return new RendererTextureBinder(renderer);
+        return RendererTextureBinder.get(renderer);
     }
     
+    /**
+     * Skips binding a texture to a unit that already holds it.
+     * <p>
+     * Only valid while no one else binds textures to the context, such
+     * as during a single {@link ComputePipeline} run.
+     */
+    public static class CachingTextureBinder implements GLTextureBinder {
+        
+        private final GLTextureBinder delegate;
+        private Texture[] bound = new Texture[16];
+        
+        public CachingTextureBinder(GLTextureBinder delegate) {
+            this.delegate = delegate;
+        }
+        
+        @Override
+        public void bindTexture(int unit, Texture texture) throws TextureUnitException {
+            if (unit >= bound.length) {
+                bound = Arrays.copyOf(bound, Math.max(unit + 1, bound.length << 1));
+            }
+            if (bound[unit] != texture) {
+                delegate.bindTexture(unit, texture);
+                bound[unit] = texture;
+            } else {
+                ComputeMetrics.get().textureBindsSkipped.increment();
+            }
+        }
+        
+        @Override
+        public void bindImage(int unit, Texture texture, int level, boolean layered, int layer,
+                ComputeImageAccess access, int format) throws TextureUnitException {
+            delegate.bindImage(unit, texture, level, layered, layer, access, format);
+        }
+        
+        /**
+         * Forgets all cached bindings.
+         */
+        public void reset() {
+            Arrays.fill(bound, null);
+        }
+        
+    }
+    
+    /**
+     * Binds textures through a renderer.
+     * <p>
+     * Sampler bindings are cached by the renderer itself. Image unit bindings,
+     * which the renderer does not know about, are cached here and skipped when
+     * a unit already holds the same texture level with the same access and
+     * format. If anything else binds image units, call {@link #invalidateImages()}.
+     */
     public static class RendererTextureBinder implements GLTextureBinder {
-
-        private final Renderer renderer;
-
+        
+        private static final WeakHashMap<Renderer, RendererTextureBinder> binders = new WeakHashMap<>();
+        
+        // weak, since cached binders are the values of a map keyed by the renderer
+        private final WeakReference<Renderer> renderer;
+        private int[] imageState = new int[0];
+        
         public RendererTextureBinder(Renderer renderer) {
-            this.renderer = renderer;
+            this.renderer = new WeakReference<>(renderer);
+        }
+        
+        private static synchronized RendererTextureBinder get(Renderer renderer) {
+            RendererTextureBinder b = binders.get(renderer);
+            if (b == null) {
+                b = new RendererTextureBinder(renderer);
+                binders.put(renderer, b);
+            }
+            return b;
         }
         
         @Override
         public void bindTexture(int unit, Texture texture) throws TextureUnitException {
-            renderer.setTexture(unit, texture);
+            Renderer r = renderer.get();
+            if (r == null) {
+                throw new IllegalStateException("Renderer of the binder has been collected.");
+            }
+            r.setTexture(unit, texture);
+            ComputeMetrics.get().textureBinds.increment();
+        }
+        
+        @Override
+        public void bindImage(int unit, Texture texture, int level, boolean layered, int layer,
+                ComputeImageAccess access, int format) throws TextureUnitException {
+            Image img = texture.getImage();
+            if (img.getId() < 0 || img.isUpdateNeeded()) {
+                // upload through the renderer
+                bindTexture(unit, texture);
+                invalidateImage(unit);
+            }
+            int i = unit * 6;
+            if (i + 6 > imageState.length) {
+                int n = imageState.length;
+                imageState = Arrays.copyOf(imageState, Math.max(i + 6, n << 1));
+                Arrays.fill(imageState, n, imageState.length, -1);
+            }
+            int id = img.getId(), l = (layered ? 1 : 0), a = access.ordinal();
+            if (imageState[i] == id && imageState[i + 1] == level && imageState[i + 2] == l
+                    && imageState[i + 3] == layer && imageState[i + 4] == a && imageState[i + 5] == format) {
+                ComputeMetrics.get().textureBindsSkipped.increment();
+                return;
+            }
+            glBindImageTexture(unit, id, level, layered, layer, access.getGlEnum(), format);
+            ComputeMetrics.get().textureBinds.increment();
+            imageState[i] = id;
+            imageState[i + 1] = level;
+            imageState[i + 2] = l;
+            imageState[i + 3] = layer;
+            imageState[i + 4] = a;
+            imageState[i + 5] = format;
+        }
+        
+        private void invalidateImage(int unit) {
+            int i = unit * 6;
+            if (i < imageState.length) {
+                imageState[i] = -1;
+            }
+        }
+        
+        /**
+         * Forgets all cached image unit bindings.
+         */
+        public void invalidateImages() {
+            Arrays.fill(imageState, -1);
         }
         
     }
@@ -0,0 +1,137 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package codex.jmecompute.primitives;
+
+import codex.jmecompute.opengl.ComputeBuffer;
+import codex.jmecompute.opengl.GLComputeShader;
+import codex.jmecompute.opengl.GLTextureBinder;
+import com.jme3.asset.AssetManager;
+import com.jme3.renderer.Caps;
+import java.util.EnumSet;
+
+/**
+ * Copies the elements matching a predicate to the front of another buffer,
+ * preserving their order.
+ * <p>
+ * The matches are counted by an exclusive {@link ComputeScan}, which gives
+ * each matching element its output index, and then scattered to those
+ * indices. The number of matches is written to a buffer on the GPU, so
+ * later dispatches can consume it without a readback.
+ * <pre>{@code
+ * ComputeCompaction compaction = new ComputeCompaction(assetManager);
+ * compaction.setPredicate("value > 0.5");
+ * compaction.setContext(renderer);
+ * compaction.compact(values, count, visible, counts, 0);
+ * }</pre>
+ * 
+ * @author codex
+ * @see CpuPrimitives#compact(ComputeValueType, java.nio.ByteBuffer, java.nio.ByteBuffer, int, java.util.function.IntPredicate)
+ */
+public class ComputeCompaction extends ComputePrimitive {
+    
+    /**
+     * Predicate matching all non-zero elements.
+     */
+    public static final String NON_ZERO = "value != INPUT_TYPE(0)";
+    
+    private final ComputeScan scan;
+    private final GLComputeShader scatter;
+    private ComputeBuffer offsets;
+    private ComputeValueType type = ComputeValueType.Float;
+    private String predicate = NON_ZERO;
+    
+    public ComputeCompaction(AssetManager assetManager) {
+        this(new ComputeScan(assetManager), load(assetManager, "Scatter.j3cs"));
+    }
+    private ComputeCompaction(ComputeScan scan, GLComputeShader scatter) {
+        super(scatter);
+        this.scan = scan;
+        this.scatter = scatter;
+        setReadOnly(scatter, "Input", "Offsets");
+    }
+    
+    /**
+     * Compacts the elements matching the predicate.
+     * 
+     * @param input buffer of at least {@code count} elements
+     * @param count number of elements to compact
+     * @param output buffer large enough for all matching elements
+     * @param counts buffer receiving the number of matching elements as a uint
+     * @param index element index in the counts buffer to write the number to
+     */
+    public void compact(ComputeBuffer input, int count, ComputeBuffer output, ComputeBuffer counts, int index) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("At least one element must be compacted.");
+        }
+        initialize();
+        offsets = reserve(offsets, count);
+        scan.scanMatches(input, type, predicate, offsets, count);
+        scatter.setDefine("INPUT_TYPE", type.getGlslType());
+        scatter.setDefine("PREDICATE", predicate);
+        scatter.setBuffer("Input", input);
+        scatter.setBuffer("Offsets", offsets);
+        scatter.setBuffer("Output", output);
+        scatter.setBuffer("Counts", counts);
+        scatter.setInt("CountOffset", index);
+        scatter.executeElements(count, 1, 1);
+    }
+    
+    /**
+     * Sets the type of the elements.
+     * <p>
+     * Default is {@link ComputeValueType#Float}.
+     * 
+     * @param type
+     */
+    public void setType(ComputeValueType type) {
+        this.type = type;
+    }
+    
+    /**
+     * Sets the GLSL expression deciding which elements are kept.
+     * <p>
+     * The expression is evaluated with the element in a variable named
+     * {@code value} of type {@code INPUT_TYPE}, for example {@code "value > 0.5"}.
+     * Default is {@link #NON_ZERO}.
+     * 
+     * @param predicate
+     */
+    public void setPredicate(String predicate) {
+        if (predicate == null || predicate.trim().isEmpty()) {
+            throw new IllegalArgumentException("Predicate cannot be empty.");
+        }
+        this.predicate = predicate;
+    }
+    
+    @Override
+    public void setContext(GLTextureBinder texBind, EnumSet<Caps> caps) {
+        super.setContext(texBind, caps);
+        scan.setContext(texBind, caps);
+    }
+    
+    @Override
+    public void setBlockSize(int localSize, int items) {
+        super.setBlockSize(localSize, items);
+        scan.setBlockSize(localSize, items);
+    }
+    
+    @Override
+    public void cleanup() {
+        super.cleanup();
+        scan.cleanup();
+        if (offsets != null) {
+            offsets.delete();
+            offsets = null;
+        }
+    }
+    
+    public ComputeValueType getType() {
+        return type;
+    }
+    public String getPredicate() {
+        return predicate;
+    }
+    
+}
@@ -0,0 +1,102 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package codex.jmecompute.primitives;
+
+/**
+ * Associative operator of reductions and scans.
+ * 
+ * @author codex
+ */
+public enum ComputeOperator {
+    
+    Sum, Min, Max;
+    
+    /**
+     * Gets the value of the {@code OP} define selecting this operator.
+     * 
+     * @return 
+     */
+    public int getDefine() {
+        return ordinal();
+    }
+    
+    /**
+     * Gets a GLSL expression of the identity of this operator.
+     * 
+     * @param type
+     * @return 
+     */
+    public String getIdentity(ComputeValueType type) {
+        switch (this) {
+            case Min:
+                switch (type) {
+                    case Float: return "uintBitsToFloat(0x7F800000u)";
+                    case Int: return "0x7FFFFFFF";
+                    default: return "0xFFFFFFFFu";
+                }
+            case Max:
+                switch (type) {
+                    case Float: return "uintBitsToFloat(0xFF800000u)";
+                    case Int: return "(-0x7FFFFFFF - 1)";
+                    default: return "0u";
+                }
+            default:
+                switch (type) {
+                    case Float: return "0.0";
+                    case Int: return "0";
+                    default: return "0u";
+                }
+        }
+    }
+    
+    /**
+     * Gets the raw bits of the identity of this operator.
+     * 
+     * @param type
+     * @return 
+     */
+    public int getIdentityBits(ComputeValueType type) {
+        switch (this) {
+            case Min:
+                switch (type) {
+                    case Float: return 0x7F800000;
+                    case Int: return Integer.MAX_VALUE;
+                    default: return 0xFFFFFFFF;
+                }
+            case Max:
+                switch (type) {
+                    case Float: return 0xFF800000;
+                    case Int: return Integer.MIN_VALUE;
+                    default: return 0;
+                }
+            default: return 0;
+        }
+    }
+    
+    /**
+     * Applies this operator to the raw bits of two elements.
+     * 
+     * @param type
+     * @param a
+     * @param b
+     * @return raw bits of the result
+     */
+    public int apply(ComputeValueType type, int a, int b) {
+        if (type == ComputeValueType.Float) {
+            float x = Float.intBitsToFloat(a), y = Float.intBitsToFloat(b);
+            switch (this) {
+                case Min: return Float.floatToRawIntBits(Math.min(x, y));
+                case Max: return Float.floatToRawIntBits(Math.max(x, y));
+                default: return Float.floatToRawIntBits(x + y);
+            }
+        }
+        switch (this) {
+            case Min: return (type == ComputeValueType.UInt ? Integer.compareUnsigned(a, b) : Integer.compare(a, b)) <= 0 ? a : b;
+            case Max: return (type == ComputeValueType.UInt ? Integer.compareUnsigned(a, b) : Integer.compare(a, b)) >= 0 ? a : b;
+            default: return a + b;
+        }
+    }
+    
+}
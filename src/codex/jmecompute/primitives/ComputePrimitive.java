@@ -0,0 +1,266 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package codex.jmecompute.primitives;
+
+import codex.jmecompute.opengl.ComputeBuffer;
+import codex.jmecompute.opengl.ComputeBufferBinding;
+import codex.jmecompute.opengl.ComputeContext;
+import codex.jmecompute.opengl.GLComputeLoader;
+import codex.jmecompute.opengl.GLComputeShader;
+import codex.jmecompute.opengl.GLTextureBinder;
+import com.jme3.asset.AssetLoadException;
+import com.jme3.asset.AssetManager;
+import com.jme3.renderer.Caps;
+import com.jme3.renderer.Renderer;
+import java.io.IOException;
+import java.util.EnumSet;
+import static org.lwjgl.opengl.GL43.*;
+
+/**
+ * Base of the parallel primitives built on the compute definitions
+ * under {@code JMECompute/Primitives}.
+ * <p>
+ * Each work group processes a block of {@code localSize * items} elements
+ * in shared memory. Unless set explicitly, the block is sized to the device
+ * limits the first time a primitive executes: the local size is the largest
+ * power of two up to {@link #MAX_LOCAL_SIZE} the device supports, and the
+ * items per invocation are halved from {@link #MAX_ITEMS} until the block
+ * fits in shared memory.
+ * <p>
+ * Primitives must execute on the rendering thread, in the context set
+ * by one of the {@code setContext} methods.
+ * 
+ * @author codex
+ */
+public abstract class ComputePrimitive {
+    
+    public static final String ASSET_PATH = "JMECompute/Primitives/";
+    public static final int MAX_LOCAL_SIZE = 256;
+    public static final int MAX_ITEMS = 8;
+    
+    private final GLComputeShader[] shaders;
+    private int localSize = -1;
+    private int items = -1;
+    private int maxGroups;
+    
+    protected ComputePrimitive(GLComputeShader... shaders) {
+        this.shaders = shaders;
+    }
+    
+    /**
+     * Loads a new instance of a primitive's compute shader.
+     * 
+     * @param assetManager
+     * @param name definition name under {@link #ASSET_PATH}
+     * @return 
+     */
+    protected static GLComputeShader load(AssetManager assetManager, String name) {
+        try {
+            return GLComputeLoader.load(assetManager, ASSET_PATH+name);
+        } catch (IOException ex) {
+            throw new AssetLoadException("Failed to load primitive "+name, ex);
+        }
+    }
+    
+    /**
+     * Declares storage buffers the shader only reads, so binding
+     * them does not cause memory barriers.
+     * 
+     * @param shader
+     * @param names names of the shader storage blocks
+     */
+    protected static void setReadOnly(GLComputeShader shader, String... names) {
+        for (String n : names) {
+            ComputeBufferBinding b = new ComputeBufferBinding(n, -1);
+            b.setWritable(false);
+            shader.setBufferBinding(b);
+        }
+    }
+    
+    /**
+     * Creates a buffer for intermediate results, which grows as needed.
+     * 
+     * @param buffer existing buffer, or null
+     * @param elements number of 32 bit elements required
+     * @return 
+     */
+    protected static ComputeBuffer reserve(ComputeBuffer buffer, int elements) {
+        int bytes = Math.max(elements, 1) * 4;
+        if (buffer == null) {
+            buffer = new ComputeBuffer(bytes, false);
+            buffer.setGrowable(true);
+        }
+        buffer.reserve(bytes);
+        return buffer;
+    }
+    
+    /**
+     * Sizes blocks to the device limits, if not already sized.
+     * <p>
+     * Must be called on the rendering thread.
+     */
+    protected void initialize() {
+        if (localSize > 0) {
+            return;
+        }
+        int local = Math.min(MAX_LOCAL_SIZE, Math.min(glGetIntegeri(GL_MAX_COMPUTE_WORK_GROUP_SIZE, 0),
+                glGetInteger(GL_MAX_COMPUTE_WORK_GROUP_INVOCATIONS)));
+        local = Integer.highestOneBit(local);
+        int shared = glGetInteger(GL_MAX_COMPUTE_SHARED_MEMORY_SIZE);
+        int n = MAX_ITEMS;
+        while (n > 1 && getSharedMemory(local, n) > shared) {
+            n >>= 1;
+        }
+        while (local > 1 && getSharedMemory(local, n) > shared) {
+            local >>= 1;
+        }
+        applyBlockSize(local, n);
+    }
+    
+    /**
+     * Gets the shared memory used by a work group of the block size.
+     * <p>
+     * By default, a block of values plus one total per invocation, 4 bytes each.
+     * 
+     * @param localSize
+     * @param items
+     * @return bytes of shared memory
+     */
+    protected int getSharedMemory(int localSize, int items) {
+        return (localSize * items + localSize) * 4;
+    }
+    private void applyBlockSize(int localSize, int items) {
+        this.localSize = localSize;
+        this.items = items;
+        for (GLComputeShader s : shaders) {
+            s.setDefine("LOCAL_SIZE_X", localSize);
+            s.setDefine("ITEMS", items);
+        }
+    }
+    
+    /**
+     * Gets the number of work groups needed for the elements.
+     * 
+     * @param elements
+     * @return 
+     * @throws IllegalArgumentException if more work groups would be needed than the device supports
+     */
+    protected int getNumGroups(int elements) {
+        int block = getBlockSize();
+        if (maxGroups == 0) {
+            maxGroups = glGetIntegeri(GL_MAX_COMPUTE_WORK_GROUP_COUNT, 0);
+        }
+        int groups = (int)((elements + (long)block - 1) / block);
+        if (groups > maxGroups) {
+            throw new IllegalArgumentException(elements+" elements exceed the maximum of "
+                    +((long)maxGroups * block)+" elements per dispatch.");
+        }
+        return groups;
+    }
+    
+    /**
+     * Sets the defines selecting the element type and operator.
+     * 
+     * @param shader
+     * @param type
+     * @param op
+     */
+    protected static void setOperator(GLComputeShader shader, ComputeValueType type, ComputeOperator op) {
+        shader.setDefine("VALUE_TYPE", type.getGlslType());
+        // as a string, since an integer 0 would disable the define for Sum
+        shader.setDefine("OP", String.valueOf(op.getDefine()));
+        shader.setDefine("IDENTITY", op.getIdentity(type));
+    }
+    
+    /**
+     * Sets the context the primitive executes in.
+     * 
+     * @param renderer
+     */
+    public void setContext(Renderer renderer) {
+        setContext(GLTextureBinder.useRenderer(renderer), renderer.getCaps());
+    }
+    
+    /**
+     * Sets the context the primitive executes in.
+     * 
+     * @param context offscreen context
+     */
+    public void setContext(ComputeContext context) {
+        setContext(context.getTextureBinder(), context.getCaps());
+    }
+    
+    /**
+     * Sets the context the primitive executes in.
+     * 
+     * @param texBind
+     * @param caps
+     */
+    public void setContext(GLTextureBinder texBind, EnumSet<Caps> caps) {
+        for (GLComputeShader s : shaders) {
+            s.setContext(texBind, caps);
+        }
+    }
+    
+    /**
+     * Sets the block size instead of sizing it to the device limits.
+     * <p>
+     * The local size must be a power of two, and the block must fit
+     * in the device's shared memory.
+     * 
+     * @param localSize invocations per work group
+     * @param items elements processed per invocation
+     */
+    public void setBlockSize(int localSize, int items) {
+        if (localSize <= 0 || Integer.bitCount(localSize) != 1) {
+            throw new IllegalArgumentException("Local size must be a power of two.");
+        }
+        if (items <= 0) {
+            throw new IllegalArgumentException("Items per invocation must be positive.");
+        }
+        applyBlockSize(localSize, items);
+    }
+    
+    /**
+     * Deletes the shaders and intermediate buffers.
+     */
+    public void cleanup() {
+        for (GLComputeShader s : shaders) {
+            s.cleanup();
+        }
+    }
+    
+    /**
+     * Gets the number of elements processed by one work group.
+     * <p>
+     * Sizes blocks to the device limits if necessary, so must be
+     * called on the rendering thread.
+     * 
+     * @return 
+     */
+    public int getBlockSize() {
+        initialize();
+        return localSize * items;
+    }
+    
+    /**
+     * Gets the number of invocations per work group.
+     * 
+     * @return local size, or -1 if not sized yet
+     */
+    public int getLocalSize() {
+        return localSize;
+    }
+    
+    /**
+     * Gets the number of elements processed per invocation.
+     * 
+     * @return items, or -1 if not sized yet
+     */
+    public int getItems() {
+        return items;
+    }
+    
+}
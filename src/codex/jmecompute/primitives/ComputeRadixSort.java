@@ -0,0 +1,277 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package codex.jmecompute.primitives;
+
+import codex.jmecompute.opengl.ComputeBuffer;
+import codex.jmecompute.opengl.GLComputeShader;
+import codex.jmecompute.opengl.GLTextureBinder;
+import com.jme3.asset.AssetManager;
+import com.jme3.renderer.Caps;
+import java.util.EnumSet;
+
+/**
+ * Sorts 32 bit keys, optionally with a 32 bit value per key, on the GPU.
+ * <p>
+ * This is a stable least significant digit radix sort of {@link #RADIX_BITS}
+ * bits per pass. Each pass counts the digits of every block, scans the counts
+ * with a {@link ComputeScan} to find each block's output offsets, and moves
+ * the keys and values to them. Sorting full 32 bit keys takes 8 passes;
+ * fewer bits can be sorted with {@link #setKeyBits(int)}.
+ * <p>
+ * Buffers are sorted in place. Intermediate buffers are allocated by the
+ * first sort and reused, growing only if more elements are sorted.
+ * <pre>{@code
+ * ComputeRadixSort sort = new ComputeRadixSort(assetManager);
+ * sort.setKeyType(ComputeValueType.Float);
+ * sort.setContext(renderer);
+ * sort.sort(depths, particleIndices, count);
+ * }</pre>
+ * 
+ * @author codex
+ */
+public class ComputeRadixSort extends ComputePrimitive {
+    
+    public static final int RADIX_BITS = 4;
+    private static final int RADIX = 1 << RADIX_BITS;
+    private static final int KEYS = 0, VALUES = 1, SEGMENTS = 2;
+    
+    private final GLComputeShader counter, scatter;
+    private final ComputeScan scan;
+    private final ComputeBuffer[] scratch = new ComputeBuffer[3];
+    private final ComputeBuffer[] front = new ComputeBuffer[3], back = new ComputeBuffer[3];
+    private ComputeBuffer histogram;
+    private ComputeValueType keyType = ComputeValueType.UInt;
+    private int keyBits = 32;
+    private int count;
+    
+    public ComputeRadixSort(AssetManager assetManager) {
+        this(load(assetManager, "RadixCount.j3cs"), load(assetManager, "RadixScatter.j3cs"), new ComputeScan(assetManager));
+    }
+    private ComputeRadixSort(GLComputeShader counter, GLComputeShader scatter, ComputeScan scan) {
+        super(counter, scatter);
+        this.counter = counter;
+        this.scatter = scatter;
+        this.scan = scan;
+        scan.setType(ComputeValueType.UInt);
+        setReadOnly(counter, "InKeys");
+        setReadOnly(scatter, "InKeys", "Histogram", "InValues", "InExtra");
+    }
+    
+    /**
+     * Sorts the keys.
+     * 
+     * @param keys buffer of at least {@code count} keys
+     * @param count number of keys to sort
+     */
+    public void sort(ComputeBuffer keys, int count) {
+        sort(keys, null, count);
+    }
+    
+    /**
+     * Sorts the keys and moves each value along with its key.
+     * 
+     * @param keys buffer of at least {@code count} keys
+     * @param values buffer of at least {@code count} 32 bit values, or null
+     * @param count number of keys to sort
+     */
+    public void sort(ComputeBuffer keys, ComputeBuffer values, int count) {
+        begin(keys, values, null, count);
+        for (int i = 0, n = getNumPasses(keyBits); i < n; i++) {
+            pass(KEYS, VALUES, SEGMENTS, keyType, i * RADIX_BITS, getMask(keyBits, i));
+        }
+        end();
+    }
+    
+    /**
+     * Sorts the keys within each segment.
+     * <p>
+     * Elements are ordered by segment first and key second, and values and
+     * segment ids move along with their keys. If the segment ids ascend along
+     * the buffer, as for contiguous segments, every segment keeps its range of
+     * the buffer and is sorted within it.
+     * <p>
+     * The keys are sorted first, then the result is stably sorted by segment
+     * id, which takes one extra pass per {@link #RADIX_BITS} bits of the
+     * largest segment id.
+     * 
+     * @param keys buffer of at least {@code count} keys
+     * @param values buffer of at least {@code count} 32 bit values, or null
+     * @param segments buffer of at least {@code count} uint segment ids
+     * @param count number of keys to sort
+     * @param numSegments number of segments, greater than any segment id
+     */
+    public void sortSegmented(ComputeBuffer keys, ComputeBuffer values, ComputeBuffer segments,
+            int count, int numSegments) {
+        if (segments == null) {
+            throw new NullPointerException("Segment ids cannot be null.");
+        }
+        begin(keys, values, segments, count);
+        for (int i = 0, n = getNumPasses(keyBits); i < n; i++) {
+            pass(KEYS, VALUES, SEGMENTS, keyType, i * RADIX_BITS, getMask(keyBits, i));
+        }
+        int segmentBits = 32 - Integer.numberOfLeadingZeros(Math.max(numSegments - 1, 0));
+        for (int i = 0, n = getNumPasses(segmentBits); i < n; i++) {
+            pass(SEGMENTS, KEYS, VALUES, ComputeValueType.UInt, i * RADIX_BITS, getMask(segmentBits, i));
+        }
+        end();
+    }
+    
+    private void begin(ComputeBuffer keys, ComputeBuffer values, ComputeBuffer segments, int count) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("At least one key must be sorted.");
+        }
+        this.count = count;
+        front[KEYS] = keys;
+        front[VALUES] = values;
+        front[SEGMENTS] = segments;
+        for (int i = 0; i < front.length; i++) {
+            if (front[i] != null) {
+                back[i] = scratch[i] = reserve(scratch[i], count);
+            } else {
+                back[i] = null;
+            }
+        }
+    }
+    private void pass(int key, int payload, int extra, ComputeValueType type, int shift, int mask) {
+        int groups = getNumGroups(count);
+        histogram = reserve(histogram, RADIX * groups);
+        String keyDefine = getKeyDefine(type);
+        counter.setDefine("KEY_TYPE", keyDefine);
+        counter.setBuffer("InKeys", front[key]);
+        counter.setBuffer("Histogram", histogram);
+        setPassUniforms(counter, shift, mask, groups);
+        counter.execute(groups, 1, 1);
+        scan.scan(histogram, histogram, RADIX * groups, false);
+        scatter.setDefine("KEY_TYPE", keyDefine);
+        scatter.setDefine("VALUES", front[payload] != null);
+        scatter.setDefine("EXTRA", front[extra] != null);
+        scatter.setBuffer("InKeys", front[key]);
+        scatter.setBuffer("OutKeys", back[key]);
+        scatter.setBuffer("Histogram", histogram);
+        scatter.setBuffer("InValues", front[payload]);
+        scatter.setBuffer("OutValues", back[payload]);
+        scatter.setBuffer("InExtra", front[extra]);
+        scatter.setBuffer("OutExtra", back[extra]);
+        setPassUniforms(scatter, shift, mask, groups);
+        scatter.execute(groups, 1, 1);
+        for (int i = 0; i < front.length; i++) {
+            ComputeBuffer b = front[i];
+            front[i] = back[i];
+            back[i] = b;
+        }
+    }
+    private void setPassUniforms(GLComputeShader shader, int shift, int mask, int groups) {
+        shader.setInt("Count", count);
+        shader.setInt("Shift", shift);
+        shader.setInt("Mask", mask);
+        shader.setInt("NumGroups", groups);
+    }
+    private void end() {
+        if (front[KEYS] == scratch[KEYS]) {
+            // an odd number of passes left the result in scratch, move it back stably
+            pass(KEYS, VALUES, SEGMENTS, ComputeValueType.UInt, 0, 0);
+        }
+        for (int i = 0; i < front.length; i++) {
+            front[i] = back[i] = null;
+        }
+    }
+    
+    private static int getNumPasses(int bits) {
+        return (bits + RADIX_BITS - 1) / RADIX_BITS;
+    }
+    private static int getMask(int bits, int pass) {
+        return (1 << Math.min(bits - pass * RADIX_BITS, RADIX_BITS)) - 1;
+    }
+    static String getKeyDefine(ComputeValueType type) {
+        // strings, since an integer 0 would disable the define
+        switch (type) {
+            case Int: return "1";
+            case Float: return "2";
+            default: return "0";
+        }
+    }
+    
+    @Override
+    protected int getSharedMemory(int localSize, int items) {
+        // a block of keys plus a count per digit per invocation
+        return (localSize * items + RADIX * localSize + RADIX) * 4;
+    }
+    
+    /**
+     * Sets the type of the keys.
+     * <p>
+     * Int and float keys are sorted by value, with negative keys first.
+     * Default is {@link ComputeValueType#UInt}.
+     * 
+     * @param keyType
+     */
+    public void setKeyType(ComputeValueType keyType) {
+        this.keyType = keyType;
+    }
+    
+    /**
+     * Sets the number of low key bits to sort by.
+     * <p>
+     * Keys known to be small, such as quantized depths or spatial hashes,
+     * sort in fewer passes. Higher bits are ignored, so the order of keys
+     * differing only in them is preserved. For int and float keys, the bits
+     * are counted after flipping them to unsigned order, so all 32 bits are
+     * usually needed. Default is 32.
+     * 
+     * @param keyBits
+     */
+    public void setKeyBits(int keyBits) {
+        if (keyBits < 1 || keyBits > 32) {
+            throw new IllegalArgumentException("Key bits must be between 1 and 32.");
+        }
+        this.keyBits = keyBits;
+    }
+    
+    @Override
+    public void setContext(GLTextureBinder texBind, EnumSet<Caps> caps) {
+        super.setContext(texBind, caps);
+        scan.setContext(texBind, caps);
+    }
+    
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The local size must be at least the radix.
+     * 
+     * @param localSize
+     * @param items
+     */
+    @Override
+    public void setBlockSize(int localSize, int items) {
+        if (localSize < RADIX) {
+            throw new IllegalArgumentException("Local size must be at least "+RADIX+".");
+        }
+        super.setBlockSize(localSize, items);
+    }
+    
+    @Override
+    public void cleanup() {
+        super.cleanup();
+        scan.cleanup();
+        for (int i = 0; i < scratch.length; i++) {
+            if (scratch[i] != null) {
+                scratch[i].delete();
+                scratch[i] = null;
+            }
+        }
+        if (histogram != null) {
+            histogram.delete();
+            histogram = null;
+        }
+    }
+    
+    public ComputeValueType getKeyType() {
+        return keyType;
+    }
+    public int getKeyBits() {
+        return keyBits;
+    }
+    
+}
@@ -0,0 +1,119 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package codex.jmecompute.primitives;
+
+import codex.jmecompute.opengl.ComputeBuffer;
+import codex.jmecompute.opengl.GLComputeShader;
+import com.jme3.asset.AssetManager;
+
+/**
+ * Reduces a buffer of elements to their sum, minimum or maximum.
+ * <p>
+ * Each invocation first reduces several elements serially, then each work
+ * group reduces its invocations' results in shared memory, so no atomics
+ * are needed. Each pass shrinks the elements by the block size, until one
+ * work group writes the final result.
+ * <pre>{@code
+ * ComputeReduction sum = new ComputeReduction(assetManager);
+ * sum.setContext(renderer);
+ * sum.reduce(values, count, result, 0);
+ * }</pre>
+ * 
+ * @author codex
+ * @see CpuPrimitives#reduce(ComputeValueType, ComputeOperator, java.nio.ByteBuffer, int)
+ */
+public class ComputeReduction extends ComputePrimitive {
+    
+    private final GLComputeShader shader;
+    private final ComputeBuffer[] scratch = new ComputeBuffer[2];
+    private ComputeValueType type = ComputeValueType.Float;
+    private ComputeOperator operator = ComputeOperator.Sum;
+    
+    public ComputeReduction(AssetManager assetManager) {
+        this(load(assetManager, "Reduce.j3cs"));
+    }
+    private ComputeReduction(GLComputeShader shader) {
+        super(shader);
+        this.shader = shader;
+        setReadOnly(shader, "Input");
+    }
+    
+    /**
+     * Reduces the elements and writes the result to the output buffer.
+     * 
+     * @param input buffer of at least {@code count} elements
+     * @param count number of elements to reduce
+     * @param output buffer receiving the result
+     * @param index element index in the output buffer to write the result to
+     */
+    public void reduce(ComputeBuffer input, int count, ComputeBuffer output, int index) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("At least one element must be reduced.");
+        }
+        setOperator(shader, type, operator);
+        ComputeBuffer in = input;
+        for (int pass = 0;; pass++) {
+            int groups = getNumGroups(count);
+            ComputeBuffer out = output;
+            int offset = index;
+            if (groups > 1) {
+                // passes alternate between two scratch buffers of decreasing size
+                out = scratch[pass & 1] = reserve(scratch[pass & 1], groups);
+                offset = 0;
+            }
+            shader.setBuffer("Input", in);
+            shader.setBuffer("Output", out);
+            shader.setInt("Count", count);
+            shader.setInt("OutputOffset", offset);
+            shader.execute(groups, 1, 1);
+            if (groups == 1) {
+                return;
+            }
+            in = out;
+            count = groups;
+        }
+    }
+    
+    /**
+     * Sets the type of the elements.
+     * <p>
+     * Default is {@link ComputeValueType#Float}.
+     * 
+     * @param type
+     */
+    public void setType(ComputeValueType type) {
+        this.type = type;
+    }
+    
+    /**
+     * Sets the operator to reduce with.
+     * <p>
+     * Default is {@link ComputeOperator#Sum}.
+     * 
+     * @param operator
+     */
+    public void setOperator(ComputeOperator operator) {
+        this.operator = operator;
+    }
+    
+    @Override
+    public void cleanup() {
+        super.cleanup();
+        for (int i = 0; i < scratch.length; i++) {
+            if (scratch[i] != null) {
+                scratch[i].delete();
+                scratch[i] = null;
+            }
+        }
+    }
+    
+    public ComputeValueType getType() {
+        return type;
+    }
+    public ComputeOperator getOperator() {
+        return operator;
+    }
+    
+}
@@ -0,0 +1,157 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package codex.jmecompute.primitives;
+
+import codex.jmecompute.opengl.ComputeBuffer;
+import codex.jmecompute.opengl.GLComputeShader;
+import com.jme3.asset.AssetManager;
+import java.util.ArrayList;
+
+/**
+ * Computes the exclusive or inclusive prefix scan of a buffer of elements.
+ * <p>
+ * The scan takes multiple passes: each work group scans one block in shared
+ * memory and writes the block's total, the block totals are scanned the same
+ * way, and finally each block is offset by the scanned totals of the blocks
+ * before it. Every level shrinks the elements by the block size, so a few
+ * million elements take two levels.
+ * <pre>{@code
+ * ComputeScan scan = new ComputeScan(assetManager);
+ * scan.setContext(renderer);
+ * scan.scan(values, prefixes, count, false);
+ * }</pre>
+ * 
+ * @author codex
+ * @see CpuPrimitives#scan(ComputeValueType, ComputeOperator, java.nio.ByteBuffer, java.nio.ByteBuffer, int, boolean)
+ */
+public class ComputeScan extends ComputePrimitive {
+    
+    private final GLComputeShader scan, add;
+    private final ArrayList<ComputeBuffer> blockSums = new ArrayList<>();
+    private ComputeValueType type = ComputeValueType.Float;
+    private ComputeOperator operator = ComputeOperator.Sum;
+    
+    public ComputeScan(AssetManager assetManager) {
+        this(load(assetManager, "Scan.j3cs"), load(assetManager, "ScanAdd.j3cs"));
+    }
+    private ComputeScan(GLComputeShader scan, GLComputeShader add) {
+        super(scan, add);
+        this.scan = scan;
+        this.add = add;
+        setReadOnly(scan, "Input");
+        setReadOnly(add, "BlockSums");
+    }
+    
+    /**
+     * Scans the elements.
+     * <p>
+     * The input and output may be the same buffer.
+     * 
+     * @param input buffer of at least {@code count} elements
+     * @param output buffer receiving {@code count} prefixes
+     * @param count number of elements to scan
+     * @param inclusive true to include each element in its own prefix
+     */
+    public void scan(ComputeBuffer input, ComputeBuffer output, int count, boolean inclusive) {
+        setOperator(scan, type, operator);
+        setOperator(add, type, operator);
+        scan.setDefine("INPUT_TYPE", null);
+        scan.setDefine("PREDICATE", null);
+        scan(input, output, count, inclusive, 0);
+    }
+    
+    /**
+     * Scans the number of elements matching the predicate, which gives
+     * the offsets of the matching elements in a compacted buffer.
+     * 
+     * @param input buffer of at least {@code count} elements
+     * @param inputType type of the input elements
+     * @param predicate GLSL expression over {@code value}
+     * @param offsets buffer receiving {@code count} uint offsets
+     * @param count number of elements to scan
+     */
+    void scanMatches(ComputeBuffer input, ComputeValueType inputType, String predicate,
+            ComputeBuffer offsets, int count) {
+        setOperator(scan, ComputeValueType.UInt, ComputeOperator.Sum);
+        setOperator(add, ComputeValueType.UInt, ComputeOperator.Sum);
+        scan.setDefine("INPUT_TYPE", inputType.getGlslType());
+        scan.setDefine("PREDICATE", predicate);
+        scan(input, offsets, count, false, 0);
+    }
+    
+    private void scan(ComputeBuffer input, ComputeBuffer output, int count, boolean inclusive, int level) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("At least one element must be scanned.");
+        }
+        int groups = getNumGroups(count);
+        ComputeBuffer sums = getBlockSums(level, groups);
+        scan.setDefine("INCLUSIVE", inclusive);
+        scan.setBuffer("Input", input);
+        scan.setBuffer("Output", output);
+        scan.setBuffer("BlockSums", sums);
+        scan.setInt("Count", count);
+        scan.execute(groups, 1, 1);
+        if (groups == 1) {
+            return;
+        }
+        // block totals are plain values of the output type, scanned in place
+        scan.setDefine("INPUT_TYPE", null);
+        scan.setDefine("PREDICATE", null);
+        scan(sums, sums, groups, false, level + 1);
+        add.setBuffer("Output", output);
+        add.setBuffer("BlockSums", sums);
+        add.setInt("Count", count);
+        add.execute(groups - 1, 1, 1);
+    }
+    private ComputeBuffer getBlockSums(int level, int groups) {
+        while (blockSums.size() <= level) {
+            blockSums.add(null);
+        }
+        ComputeBuffer b = reserve(blockSums.get(level), groups);
+        blockSums.set(level, b);
+        return b;
+    }
+    
+    /**
+     * Sets the type of the elements.
+     * <p>
+     * Default is {@link ComputeValueType#Float}.
+     * 
+     * @param type
+     */
+    public void setType(ComputeValueType type) {
+        this.type = type;
+    }
+    
+    /**
+     * Sets the operator combining prefixes.
+     * <p>
+     * Default is {@link ComputeOperator#Sum}.
+     * 
+     * @param operator
+     */
+    public void setOperator(ComputeOperator operator) {
+        this.operator = operator;
+    }
+    
+    @Override
+    public void cleanup() {
+        super.cleanup();
+        for (ComputeBuffer b : blockSums) {
+            if (b != null) {
+                b.delete();
+            }
+        }
+        blockSums.clear();
+    }
+    
+    public ComputeValueType getType() {
+        return type;
+    }
+    public ComputeOperator getOperator() {
+        return operator;
+    }
+    
+}
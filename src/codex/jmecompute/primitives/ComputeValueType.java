@@ -0,0 +1,47 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package codex.jmecompute.primitives;
+
+/**
+ * Type of the 32 bit elements processed by the parallel primitives.
+ * 
+ * @author codex
+ */
+public enum ComputeValueType {
+    
+    Float("float"),
+    Int("int"),
+    UInt("uint");
+    
+    private final String glslType;
+    
+    private ComputeValueType(String glslType) {
+        this.glslType = glslType;
+    }
+    
+    /**
+     * Gets the name of the GLSL type.
+     * 
+     * @return 
+     */
+    public String getGlslType() {
+        return glslType;
+    }
+    
+    /**
+     * Converts the raw bits of an element to a double.
+     * 
+     * @param bits
+     * @return 
+     */
+    public double toDouble(int bits) {
+        switch (this) {
+            case Float: return java.lang.Float.intBitsToFloat(bits);
+            case UInt: return bits & 0xFFFFFFFFL;
+            default: return bits;
+        }
+    }
+    
+}
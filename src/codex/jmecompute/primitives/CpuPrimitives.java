@@ -0,0 +1,125 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package codex.jmecompute.primitives;
+
+import java.nio.ByteBuffer;
+import java.util.function.IntPredicate;
+
+/**
+ * Sequential reference implementations of the parallel primitives,
+ * for verifying GPU results.
+ * <p>
+ * Buffers hold 32 bit elements in native byte order, as read back
+ * from {@link codex.jmecompute.opengl.ComputeBuffer}s, and are accessed
+ * by absolute index from element 0. Element values are passed as raw bits;
+ * use {@link Float#intBitsToFloat(int)} for float elements.
+ * <p>
+ * Float sums depend on the order of additions, so GPU sums should be
+ * compared with a tolerance, see {@link #compare(ComputeValueType, ByteBuffer, ByteBuffer, int, double)}.
+ * 
+ * @author codex
+ */
+public class CpuPrimitives {
+    
+    private CpuPrimitives() {}
+    
+    /**
+     * Reduces the elements.
+     * 
+     * @param type
+     * @param op
+     * @param input
+     * @param count
+     * @return raw bits of the result
+     */
+    public static int reduce(ComputeValueType type, ComputeOperator op, ByteBuffer input, int count) {
+        int acc = op.getIdentityBits(type);
+        for (int i = 0; i < count; i++) {
+            acc = op.apply(type, acc, input.getInt(i << 2));
+        }
+        return acc;
+    }
+    
+    /**
+     * Scans the elements.
+     * <p>
+     * The input and output may be the same buffer.
+     * 
+     * @param type
+     * @param op
+     * @param input
+     * @param output
+     * @param count
+     * @param inclusive
+     */
+    public static void scan(ComputeValueType type, ComputeOperator op, ByteBuffer input, ByteBuffer output,
+            int count, boolean inclusive) {
+        int acc = op.getIdentityBits(type);
+        for (int i = 0; i < count; i++) {
+            int v = input.getInt(i << 2);
+            if (inclusive) {
+                acc = op.apply(type, acc, v);
+                output.putInt(i << 2, acc);
+            } else {
+                output.putInt(i << 2, acc);
+                acc = op.apply(type, acc, v);
+            }
+        }
+    }
+    
+    /**
+     * Copies the elements matching the predicate to the front of the output, in order.
+     * 
+     * @param type
+     * @param input
+     * @param output
+     * @param count
+     * @param predicate tests the raw bits of each element
+     * @return number of matching elements
+     */
+    public static int compact(ComputeValueType type, ByteBuffer input, ByteBuffer output, int count,
+            IntPredicate predicate) {
+        int n = 0;
+        for (int i = 0; i < count; i++) {
+            int v = input.getInt(i << 2);
+            if (predicate.test(v)) {
+                output.putInt((n++) << 2, v);
+            }
+        }
+        return n;
+    }
+    
+    /**
+     * Compares two buffers of elements.
+     * <p>
+     * Float elements are equal if their difference is within the tolerance
+     * relative to the larger magnitude. Integer elements must be identical.
+     * 
+     * @param type
+     * @param expected
+     * @param actual
+     * @param count
+     * @param tolerance relative tolerance of float elements
+     * @return index of the first differing element, or -1 if all are equal
+     */
+    public static int compare(ComputeValueType type, ByteBuffer expected, ByteBuffer actual, int count,
+            double tolerance) {
+        for (int i = 0; i < count; i++) {
+            int a = expected.getInt(i << 2), b = actual.getInt(i << 2);
+            if (a == b) {
+                continue;
+            }
+            if (type != ComputeValueType.Float) {
+                return i;
+            }
+            double x = type.toDouble(a), y = type.toDouble(b);
+            if (!(Math.abs(x - y) <= tolerance * Math.max(Math.abs(x), Math.abs(y)))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+}
@@ -0,0 +1,52 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package codex.jmecompute.opengl;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static org.lwjgl.opengl.GL43.*;
+
+/**
+ * 
+ * @author codex
+ */
+public class ComputeBarriersTest {
+    
+    @Test
+    public void testReadAfterWrite() {
+        ComputeBarriers barriers = new ComputeBarriers();
+        ComputeBuffer buffer = new ComputeBuffer(16, false);
+        assertEquals(0, barriers.getRequired(buffer, GL_SHADER_STORAGE_BARRIER_BIT));
+        barriers.nextEpoch();
+        barriers.markWritten(buffer);
+        assertEquals(GL_SHADER_STORAGE_BARRIER_BIT, barriers.getRequired(buffer, GL_SHADER_STORAGE_BARRIER_BIT));
+        assertEquals(GL_SHADER_STORAGE_BARRIER_BIT, barriers.getRequiredForWrite(buffer, GL_SHADER_STORAGE_BARRIER_BIT));
+    }
+    
+    @Test
+    public void testReadsAloneNeedNoBarrier() {
+        ComputeBarriers barriers = new ComputeBarriers();
+        ComputeBuffer buffer = new ComputeBuffer(16, false);
+        barriers.nextEpoch();
+        barriers.markRead(buffer);
+        barriers.markTextureRead(3);
+        assertEquals(0, barriers.getRequired(buffer, GL_SHADER_STORAGE_BARRIER_BIT));
+        assertEquals(0, barriers.getRequiredForTexture(3, GL_TEXTURE_FETCH_BARRIER_BIT));
+    }
+    
+    @Test
+    public void testWriteAfterRead() {
+        ComputeBarriers barriers = new ComputeBarriers();
+        ComputeBuffer buffer = new ComputeBuffer(16, false);
+        barriers.nextEpoch();
+        barriers.markRead(buffer);
+        barriers.markTextureRead(200);
+        assertEquals(GL_SHADER_STORAGE_BARRIER_BIT, barriers.getRequiredForWrite(buffer, GL_SHADER_STORAGE_BARRIER_BIT));
+        assertEquals(GL_SHADER_IMAGE_ACCESS_BARRIER_BIT,
+                barriers.getRequiredForTextureWrite(200, GL_SHADER_IMAGE_ACCESS_BARRIER_BIT));
+        assertEquals(0, barriers.getRequiredForTextureWrite(5, GL_SHADER_IMAGE_ACCESS_BARRIER_BIT));
+    }
+    
+}
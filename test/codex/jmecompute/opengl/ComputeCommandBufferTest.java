@@ -0,0 +1,156 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package codex.jmecompute.opengl;
+
+import com.jme3.math.Matrix3f;
+import com.jme3.math.Vector2f;
+import com.jme3.math.Vector3f;
+import com.jme3.math.Vector4f;
+import com.jme3.renderer.Caps;
+import com.jme3.shader.VarType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * 
+ * @author codex
+ */
+public class ComputeCommandBufferTest {
+    
+    @Test
+    public void testReplaysSetters() {
+        RecordingShader shader = new RecordingShader();
+        shader.set(new ComputeUniform("M", VarType.Matrix3));
+        Matrix3f m = new Matrix3f(1, 2, 3, 4, 5, 6, 7, 8, 9);
+        ComputeCommandBuffer buf = new ComputeCommandBuffer();
+        buf.setFloat(shader, "F", -1.25f);
+        buf.setInt(shader, "I", Integer.MIN_VALUE);
+        buf.setBoolean(shader, "B", true);
+        buf.setVector2(shader, "V2", 1, 2);
+        buf.setVector3(shader, "V3", 3, 4, 5);
+        buf.setVector4(shader, "V4", 6, 7, 8, Float.NaN);
+        buf.set(shader, "M", m);
+        buf.setDefine(shader, "MODE", 3);
+        // nothing is applied until replayed
+        assertFalse(shader.exists("F"));
+        buf.replay(null, null);
+        assertEquals(-1.25f, (Float)shader.get("F"), 0f);
+        assertEquals(Integer.MIN_VALUE, (int)(Integer)shader.get("I"));
+        assertEquals(true, shader.get("B"));
+        assertEquals(new Vector2f(1, 2), shader.get("V2"));
+        assertEquals(new Vector3f(3, 4, 5), shader.get("V3"));
+        Vector4f v4 = shader.get("V4");
+        assertEquals(8f, v4.z, 0f);
+        assertTrue(Float.isNaN(v4.w));
+        assertEquals(m, shader.get("M"));
+        assertEquals(3, shader.getDefine("MODE"));
+    }
+    
+    @Test
+    public void testReplaysDispatches() {
+        RecordingShader shader = new RecordingShader();
+        ComputeBuffer indirect = new ComputeBuffer(64, false);
+        long offset = (5L << 32) | 0x80000010L;
+        ComputeCommandBuffer buf = new ComputeCommandBuffer();
+        buf.dispatch(shader, 1, 2, 3);
+        buf.dispatchElements(shader, 100, 200, 1);
+        buf.dispatchIndirect(shader, indirect, offset);
+        buf.replay(null, null);
+        assertEquals(Arrays.asList("execute 1 2 3", "elements 100 200 1", "indirect "+offset), shader.calls);
+        assertSame(indirect, shader.indirect);
+    }
+    
+    @Test
+    public void testReplaysInOrderAfterGrowing() {
+        List<Integer> order = new ArrayList<>();
+        RecordingShader shader = new RecordingShader();
+        ComputeResourceSet<String> set = new ComputeResourceSet<>("A", "B");
+        ComputeCommandBuffer buf = new ComputeCommandBuffer(1);
+        for (int i = 0; i < 100; i++) {
+            int k = i;
+            buf.setInt(shader, "I", i);
+            buf.run(() -> order.add(k));
+            buf.swap(set);
+        }
+        buf.replay(null, null);
+        assertEquals(100, order.size());
+        for (int i = 0; i < order.size(); i++) {
+            assertEquals(i, (int)order.get(i));
+        }
+        assertEquals(99, (int)(Integer)shader.get("I"));
+        assertEquals(0, set.getIndex());
+    }
+    
+    @Test
+    public void testReplaysAgainUnchanged() {
+        List<String> log = new ArrayList<>();
+        ComputeCommandBuffer buf = new ComputeCommandBuffer();
+        buf.run(() -> log.add("a"));
+        int size = buf.getSize();
+        buf.replay(null, null);
+        buf.replay(null, null);
+        assertEquals(Arrays.asList("a", "a"), log);
+        assertEquals(size, buf.getSize());
+    }
+    
+    @Test
+    public void testReset() {
+        ComputeCommandBuffer buf = new ComputeCommandBuffer();
+        assertTrue(buf.isEmpty());
+        buf.run(() -> fail("Reset commands must not replay"));
+        assertFalse(buf.isEmpty());
+        buf.reset();
+        assertTrue(buf.isEmpty());
+        assertEquals(0, buf.getSize());
+        buf.replay(null, null);
+    }
+    
+    @Test
+    public void testRejectsRecordingWhileSubmitted() {
+        ComputeCommandBuffer buf = new ComputeCommandBuffer();
+        buf.setSubmitted(true);
+        try {
+            buf.run(() -> {});
+            fail("Recorded to a submitted buffer");
+        } catch (IllegalStateException ex) {}
+        try {
+            buf.reset();
+            fail("Reset a submitted buffer");
+        } catch (IllegalStateException ex) {}
+        buf.setSubmitted(false);
+        buf.run(() -> {});
+        assertEquals(1, buf.getSize());
+    }
+    
+    private static class RecordingShader extends GLComputeShader {
+        
+        private final List<String> calls = new ArrayList<>();
+        private ComputeBuffer indirect;
+        
+        private RecordingShader() {
+            super("Test", new int[] {430}, "");
+        }
+        
+        @Override
+        public void execute(GLTextureBinder texBind, EnumSet<Caps> caps, int x, int y, int z) {
+            calls.add("execute "+x+" "+y+" "+z);
+        }
+        @Override
+        public void executeElements(GLTextureBinder texBind, EnumSet<Caps> caps, int nx, int ny, int nz) {
+            calls.add("elements "+nx+" "+ny+" "+nz);
+        }
+        @Override
+        public void execute(GLTextureBinder texBind, EnumSet<Caps> caps, ComputeBuffer indirect, long offset) {
+            this.indirect = indirect;
+            calls.add("indirect "+offset);
+        }
+        
+    }
+    
+}
@@ -0,0 +1,143 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package codex.jmecompute.opengl;
+
+import com.jme3.math.Matrix3f;
+import com.jme3.math.Matrix4f;
+import com.jme3.math.Vector2f;
+import com.jme3.math.Vector3f;
+import com.jme3.math.Vector4f;
+import com.jme3.shader.VarType;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * 
+ * @author codex
+ */
+public class ComputeDefinitionTest {
+    
+    private static ComputeUniform uniform(String name, VarType type, Object value) {
+        ComputeUniform u = new ComputeUniform(name, type);
+        if (value != null) {
+            u.setValue(value);
+        }
+        return u;
+    }
+    private static ComputeDefinition roundTrip(ComputeDefinition def) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        def.write(out);
+        return ComputeDefinition.read(new ByteArrayInputStream(out.toByteArray()));
+    }
+    private static String readSource(String asset) {
+        try {
+            return new String(Files.readAllBytes(Paths.get("src", asset)), StandardCharsets.UTF_8);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+    
+    @Test
+    public void testRoundTrip() throws IOException {
+        Matrix4f m4 = new Matrix4f(1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16);
+        ComputeUniform image = uniform("Image", VarType.Texture2D, null);
+        image.setImageAccess(ComputeImageAccess.WriteOnly);
+        List<ComputeUniform> params = new ArrayList<>(Arrays.asList(
+                uniform("F", VarType.Float, 1.5f),
+                uniform("I", VarType.Int, -3),
+                uniform("B", VarType.Boolean, true),
+                uniform("V2", VarType.Vector2, new Vector2f(1, 2)),
+                uniform("V3", VarType.Vector3, new Vector3f(1, 2, 3)),
+                uniform("V4", VarType.Vector4, new Vector4f(1, 2, 3, 4)),
+                uniform("M3", VarType.Matrix3, new Matrix3f(1, 2, 3, 4, 5, 6, 7, 8, 9)),
+                uniform("M4", VarType.Matrix4, m4),
+                uniform("IA", VarType.IntArray, new int[] {4, 5, 6}),
+                uniform("FA", VarType.FloatArray, new float[] {0.5f, 1.5f}),
+                uniform("V3A", VarType.Vector3Array, new Vector3f[] {new Vector3f(1, 2, 3), new Vector3f(4, 5, 6)}),
+                uniform("M4A", VarType.Matrix4Array, new Matrix4f[] {m4, new Matrix4f()}),
+                uniform("Unset", VarType.Float, null),
+                image));
+        List<ComputeDefine> defines = Arrays.asList(new ComputeDefine("F", "USE_F"), new ComputeDefine(null, "SIZE", "4"));
+        List<ComputeBufferBinding> buffers = Arrays.asList(new ComputeBufferBinding("Data", 3));
+        ComputeDefinition def = new ComputeDefinition("Test", new int[] {430, 450}, "void main() {}\n",
+                params, defines, buffers, 1);
+        def.setSource("Shaders/Test.comp");
+        def.setIncludes(Arrays.asList("Shaders/Test.comp", "Shaders/Lib.glsl"), new long[] {11, -22});
+        def.setSourceHash(0x123456789L);
+        
+        ComputeDefinition read = roundTrip(def);
+        assertEquals("Test", read.getName());
+        assertArrayEquals(new int[] {430, 450}, read.getVersions());
+        assertEquals("void main() {}\n", read.getCode());
+        assertNull(def.findParamDifference(read));
+        assertEquals(m4, read.getParams().get(7).getValue());
+        assertEquals(ComputeImageAccess.WriteOnly, read.getParams().get(13).getImageAccess());
+        assertFalse(read.getParams().get(12).hasValue());
+        assertEquals(2, read.getDefines().size());
+        assertEquals("USE_F", read.getDefines().get(0).defineName);
+        assertEquals("F", read.getDefines().get(0).paramName);
+        assertEquals("SIZE", read.getDefines().get(1).defineName);
+        assertNull(read.getDefines().get(1).paramName);
+        assertEquals("4", read.getDefines().get(1).getValue());
+        assertEquals("Data", read.getBuffers().get(0).getName());
+        assertEquals(3, read.getBuffers().get(0).getBinding());
+        assertEquals(1, read.getBlockBinding());
+        assertEquals("Shaders/Test.comp", read.getSource());
+        assertEquals(Arrays.asList("Shaders/Test.comp", "Shaders/Lib.glsl"), read.getIncludes());
+        assertArrayEquals(new long[] {11, -22}, read.getIncludeHashes());
+        assertEquals(0x123456789L, read.getSourceHash());
+    }
+    
+    @Test
+    public void testFindsDifferentDefault() throws IOException {
+        ComputeDefinition a = new ComputeDefinition("A", new int[] {430}, "", Arrays.asList(
+                uniform("FA", VarType.FloatArray, new float[] {1, 2})), Arrays.asList(), Arrays.asList(), -1);
+        ComputeDefinition b = new ComputeDefinition("A", new int[] {430}, "", Arrays.asList(
+                uniform("FA", VarType.FloatArray, new float[] {1, 3})), Arrays.asList(), Arrays.asList(), -1);
+        assertNull(a.findParamDifference(roundTrip(a)));
+        assertNotNull(a.findParamDifference(b));
+    }
+    
+    @Test
+    public void testConvertsTextDefinition() throws IOException {
+        ComputeSourceLibrary library = new ComputeSourceLibrary(ComputeDefinitionTest::readSource);
+        byte[] text = Files.readAllBytes(Paths.get("src", "JMECompute/Primitives/Reduce.j3cs"));
+        ComputeDefinition def = GLComputeLoader.parseDefinition(new ByteArrayInputStream(text), library::resolve);
+        assertEquals("JMECompute/Primitives/Reduce.comp", def.getSource());
+        assertFalse(def.getCode().contains("#import"));
+        assertTrue(def.getCode().contains("#define combine(a, b)"));
+        List<String> includes = library.getIncludes(def.getSource());
+        assertEquals(Arrays.asList("JMECompute/Primitives/Reduce.comp", "JMECompute/Primitives/Primitives.glsl"), includes);
+        ComputeDefinition read = roundTrip(def);
+        assertNull(def.findParamDifference(read));
+        assertEquals(def.getCode(), read.getCode());
+    }
+    
+    @Test
+    public void testHashSource() {
+        byte[] a = "uniform float A;".getBytes(StandardCharsets.UTF_8);
+        byte[] b = "uniform float B;".getBytes(StandardCharsets.UTF_8);
+        assertEquals(ComputeDefinition.hashSource(a), ComputeDefinition.hashSource(a.clone()));
+        assertNotEquals(ComputeDefinition.hashSource(a), ComputeDefinition.hashSource(b));
+    }
+    
+    @Test(expected = IOException.class)
+    public void testRejectsOtherData() throws IOException {
+        InputStream in = new ByteArrayInputStream("ComputeShader Test {}".getBytes(StandardCharsets.UTF_8));
+        ComputeDefinition.read(in);
+    }
+    
+}
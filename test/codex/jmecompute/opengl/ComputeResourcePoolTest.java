@@ -0,0 +1,44 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package codex.jmecompute.opengl;
+
+import com.jme3.texture.Image;
+import com.jme3.texture.Texture;
+import com.jme3.texture.TextureArray;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * 
+ * @author codex
+ */
+public class ComputeResourcePoolTest {
+    
+    @Test
+    public void testTextureArrayHasAllLayers() {
+        Texture tex = ComputeResourcePool.createTexture(Texture.Type.TwoDimensionalArray, Image.Format.RGBA16F, 64, 32, 6);
+        assertTrue(tex instanceof TextureArray);
+        Image img = tex.getImage();
+        assertEquals(64, img.getWidth());
+        assertEquals(32, img.getHeight());
+        assertEquals(6, img.getDepth());
+        // layers are allocated by the pool, not from data buffers
+        assertTrue(img.getData().isEmpty());
+        assertNotNull(DirectTextureBinder.getUploadFormat(img.getFormat()));
+    }
+    
+    @Test
+    public void testTextureBytesCountLayers() {
+        assertEquals(64L * 32 * 6 * 8, ComputeResourcePool.getTextureBytes(Image.Format.RGBA16F, 64, 32, 6));
+        assertEquals(16L * 16 * 4, ComputeResourcePool.getTextureBytes(Image.Format.RGBA8, 16, 16, 1));
+    }
+    
+    @Test
+    public void testTexture3DHasDepth() {
+        Image img = ComputeResourcePool.createTexture(Texture.Type.ThreeDimensional, Image.Format.R32F, 8, 8, 4).getImage();
+        assertEquals(4, img.getDepth());
+    }
+    
+}
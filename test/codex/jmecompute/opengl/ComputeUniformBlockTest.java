@@ -0,0 +1,135 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package codex.jmecompute.opengl;
+
+import com.jme3.math.Matrix3f;
+import com.jme3.math.Vector2f;
+import com.jme3.math.Vector3f;
+import com.jme3.shader.VarType;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * 
+ * @author codex
+ */
+public class ComputeUniformBlockTest {
+    
+    private static ComputeUniform uniform(String name, VarType type, Object value) {
+        ComputeUniform u = new ComputeUniform(name, type);
+        if (value != null) {
+            u.setValue(value);
+        }
+        return u;
+    }
+    private static ComputeUniformBlock createBlock() {
+        return new ComputeUniformBlock("Params", 2, Arrays.asList(
+                uniform("A", VarType.Float, 1f),
+                uniform("B", VarType.Vector3, new Vector3f(2, 3, 4)),
+                uniform("C", VarType.Float, 5f),
+                uniform("D", VarType.Vector2, new Vector2f(6, 7)),
+                uniform("M", VarType.Matrix3, new Matrix3f(1, 2, 3, 4, 5, 6, 7, 8, 9)),
+                uniform("F", VarType.FloatArray, new float[] {10, 11, 12}),
+                uniform("I", VarType.Int, 13),
+                uniform("Tex", VarType.Texture2D, null)));
+    }
+    
+    @Test
+    public void testStd140Offsets() {
+        ComputeUniformBlock block = createBlock();
+        assertEquals(0, block.getOffset("A"));
+        assertEquals(16, block.getOffset("B"));
+        // a scalar packs into the last component of a vec3
+        assertEquals(28, block.getOffset("C"));
+        assertEquals(32, block.getOffset("D"));
+        // mat3 is three vec4-aligned columns
+        assertEquals(48, block.getOffset("M"));
+        // scalar array elements are padded to 16 bytes
+        assertEquals(96, block.getOffset("F"));
+        assertEquals(144, block.getOffset("I"));
+        assertEquals(-1, block.getOffset("Tex"));
+        assertEquals(160, block.getSize());
+    }
+    
+    @Test
+    public void testSizeIsMultipleOfVec4() {
+        ComputeUniformBlock block = new ComputeUniformBlock("P", 0, Arrays.asList(uniform("A", VarType.Float, 1f)));
+        assertEquals(16, block.getSize());
+        block = new ComputeUniformBlock("P", 0, Arrays.asList(
+                uniform("A", VarType.Vector3, new Vector3f()), uniform("B", VarType.Vector2, new Vector2f())));
+        assertEquals(16, block.getOffset("B"));
+        assertEquals(32, block.getSize());
+    }
+    
+    @Test
+    public void testDeclaration() {
+        assertEquals("layout(std140, binding = 2) uniform Params {\n"
+                + "    float A;\n"
+                + "    vec3 B;\n"
+                + "    float C;\n"
+                + "    vec2 D;\n"
+                + "    mat3 M;\n"
+                + "    float F[3];\n"
+                + "    int I;\n"
+                + "};\n", createBlock().getDeclaration());
+    }
+    
+    @Test
+    public void testPack() {
+        ByteBuffer data = createBlock().pack();
+        assertEquals(1f, data.getFloat(0), 0f);
+        assertEquals(2f, data.getFloat(16), 0f);
+        assertEquals(4f, data.getFloat(24), 0f);
+        assertEquals(5f, data.getFloat(28), 0f);
+        assertEquals(7f, data.getFloat(36), 0f);
+        // columns of the matrix
+        assertEquals(1f, data.getFloat(48), 0f);
+        assertEquals(4f, data.getFloat(52), 0f);
+        assertEquals(7f, data.getFloat(56), 0f);
+        assertEquals(2f, data.getFloat(64), 0f);
+        assertEquals(9f, data.getFloat(88), 0f);
+        assertEquals(10f, data.getFloat(96), 0f);
+        assertEquals(11f, data.getFloat(112), 0f);
+        assertEquals(12f, data.getFloat(128), 0f);
+        assertEquals(13, data.getInt(144));
+    }
+    
+    @Test
+    public void testPackOnlyChangedMembers() {
+        ComputeUniform a = uniform("A", VarType.Float, 1f);
+        ComputeUniformBlock block = new ComputeUniformBlock("P", 0, Arrays.asList(a));
+        ByteBuffer data = block.pack();
+        data.putFloat(0, -1f);
+        block.pack();
+        assertEquals(-1f, data.getFloat(0), 0f);
+        a.setFloat(2f);
+        block.pack();
+        assertEquals(2f, data.getFloat(0), 0f);
+    }
+    
+    @Test
+    public void testReplace() {
+        ComputeUniformBlock block = createBlock();
+        ByteBuffer data = block.pack();
+        assertTrue(block.replace(uniform("C", VarType.Float, 20f)));
+        assertFalse(block.replace(uniform("Missing", VarType.Float, 0f)));
+        block.pack();
+        assertEquals(20f, data.getFloat(28), 0f);
+        assertEquals(28, block.getOffset("C"));
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testReplaceRejectsOtherType() {
+        createBlock().replace(uniform("C", VarType.Int, 20));
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testArrayNeedsDefault() {
+        new ComputeUniformBlock("P", 0, Arrays.asList(uniform("F", VarType.FloatArray, null)));
+    }
+    
+}
@@ -0,0 +1,53 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package codex.jmecompute.opengl;
+
+import com.jme3.math.Matrix4f;
+import com.jme3.math.Vector3f;
+import com.jme3.shader.VarType;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * 
+ * @author codex
+ */
+public class ComputeUniformTest {
+    
+    private static void assertClearedByNull(VarType type, Object value) {
+        ComputeUniform u = new ComputeUniform("U", type);
+        assertFalse(type+" before set", u.hasValue());
+        u.setValue(value);
+        assertTrue(type+" after set", u.hasValue());
+        int version = u.getVersion();
+        u.setValue(null);
+        assertFalse(type+" after null", u.hasValue());
+        assertNull(type+" buffer after null", u.getBuffer());
+        assertNotEquals(type+" version after null", version, u.getVersion());
+        u.setValue(value);
+        assertTrue(type+" after set again", u.hasValue());
+    }
+    
+    @Test
+    public void testNullClearsValue() {
+        assertClearedByNull(VarType.Float, 1f);
+        assertClearedByNull(VarType.Int, 2);
+        assertClearedByNull(VarType.Vector3, new Vector3f(1, 2, 3));
+        assertClearedByNull(VarType.Matrix4, new Matrix4f());
+        assertClearedByNull(VarType.IntArray, new int[] {1, 2});
+        assertClearedByNull(VarType.FloatArray, new float[] {1, 2});
+        assertClearedByNull(VarType.Vector3Array, new Vector3f[] {new Vector3f()});
+        assertClearedByNull(VarType.Matrix4Array, new Matrix4f[] {new Matrix4f()});
+    }
+    
+    @Test
+    public void testNullOnUnsetKeepsVersion() {
+        ComputeUniform u = new ComputeUniform("U", VarType.FloatArray);
+        int version = u.getVersion();
+        u.setValue(null);
+        assertEquals(version, u.getVersion());
+    }
+    
+}
@@ -0,0 +1,113 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package codex.jmecompute.opengl;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * 
+ * @author codex
+ */
+public class ComputeVariantCacheTest {
+    
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+        ComputeVariantCache cache = new ComputeVariantCache(2);
+        TestVariant a = new TestVariant("A"), b = new TestVariant("B"), c = new TestVariant("C");
+        cache.add(a);
+        cache.add(b);
+        assertSame(a, cache.get("A"));
+        cache.add(c);
+        assertEquals(2, cache.size());
+        assertTrue(b.deleted);
+        assertFalse(a.deleted);
+        assertFalse(c.deleted);
+        assertNull(cache.get("B"));
+        assertSame(c, cache.get("C"));
+    }
+    
+    @Test
+    public void testKeepsCachedVariantOnDuplicateKey() {
+        ComputeVariantCache cache = new ComputeVariantCache(4);
+        TestVariant a = new TestVariant("A"), dup = new TestVariant("A");
+        assertSame(a, cache.add(a));
+        assertSame(a, cache.add(dup));
+        assertSame(a, cache.add(a));
+        assertTrue(dup.deleted);
+        assertFalse(a.deleted);
+        assertEquals(1, cache.size());
+    }
+    
+    @Test
+    public void testNeverEvictsPinned() {
+        ComputeVariantCache cache = new ComputeVariantCache(1);
+        TestVariant a = new TestVariant("A"), b = new TestVariant("B"), c = new TestVariant("C");
+        cache.add(a);
+        cache.setPinned(a);
+        // the pinned variant does not count toward the capacity
+        cache.add(b);
+        assertEquals(2, cache.size());
+        assertFalse(b.deleted);
+        cache.add(c);
+        assertFalse(a.deleted);
+        assertTrue(b.deleted);
+        assertSame(a, cache.get("A"));
+        assertSame(c, cache.get("C"));
+        // unpinning makes it evictable again
+        cache.setPinned(null);
+        assertEquals(1, cache.size());
+        assertTrue(a.deleted);
+    }
+    
+    @Test
+    public void testShrinkingCapacityEvicts() {
+        ComputeVariantCache cache = new ComputeVariantCache(3);
+        TestVariant[] v = {new TestVariant("A"), new TestVariant("B"), new TestVariant("C")};
+        for (TestVariant t : v) {
+            cache.add(t);
+        }
+        cache.setCapacity(1);
+        assertEquals(1, cache.size());
+        assertTrue(v[0].deleted);
+        assertTrue(v[1].deleted);
+        assertFalse(v[2].deleted);
+    }
+    
+    @Test
+    public void testClearDeletesAll() {
+        ComputeVariantCache cache = new ComputeVariantCache(3);
+        TestVariant a = new TestVariant("A"), b = new TestVariant("B");
+        cache.add(a);
+        cache.add(b);
+        cache.setPinned(a);
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertTrue(a.deleted);
+        assertTrue(b.deleted);
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsZeroCapacity() {
+        new ComputeVariantCache(0);
+    }
+    
+    private static class TestVariant extends ComputeVariant {
+        
+        private boolean deleted = false;
+        
+        private TestVariant(String key) {
+            super(key, 0);
+        }
+        
+        @Override
+        public void delete() {
+            assertFalse("Deleted twice", deleted);
+            deleted = true;
+        }
+        
+    }
+    
+}
@@ -0,0 +1,78 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package codex.jmecompute.primitives;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * 
+ * @author codex
+ */
+public class ComputeOperatorTest {
+    
+    private static final int[] FLOATS = {
+        Float.floatToRawIntBits(0f), Float.floatToRawIntBits(-2.5f), Float.floatToRawIntBits(1e30f),
+        Float.floatToRawIntBits(-1e-30f), Float.floatToRawIntBits(Float.MAX_VALUE), Float.floatToRawIntBits(-Float.MAX_VALUE)
+    };
+    private static final int[] INTS = {0, 1, -1, 42, Integer.MAX_VALUE, Integer.MIN_VALUE};
+    
+    private static int[] samples(ComputeValueType type) {
+        return type == ComputeValueType.Float ? FLOATS : INTS;
+    }
+    
+    @Test
+    public void testIdentity() {
+        for (ComputeOperator op : ComputeOperator.values()) {
+            for (ComputeValueType type : ComputeValueType.values()) {
+                int id = op.getIdentityBits(type);
+                for (int v : samples(type)) {
+                    assertEquals(op+" "+type+" identity on the left", v, op.apply(type, id, v));
+                    assertEquals(op+" "+type+" identity on the right", v, op.apply(type, v, id));
+                }
+            }
+        }
+    }
+    
+    @Test
+    public void testIdentityBits() {
+        assertEquals(Float.POSITIVE_INFINITY, Float.intBitsToFloat(ComputeOperator.Min.getIdentityBits(ComputeValueType.Float)), 0f);
+        assertEquals(Float.NEGATIVE_INFINITY, Float.intBitsToFloat(ComputeOperator.Max.getIdentityBits(ComputeValueType.Float)), 0f);
+        assertEquals(Integer.MAX_VALUE, ComputeOperator.Min.getIdentityBits(ComputeValueType.Int));
+        assertEquals(Integer.MIN_VALUE, ComputeOperator.Max.getIdentityBits(ComputeValueType.Int));
+        assertEquals(0xFFFFFFFF, ComputeOperator.Min.getIdentityBits(ComputeValueType.UInt));
+        assertEquals(0, ComputeOperator.Max.getIdentityBits(ComputeValueType.UInt));
+        for (ComputeValueType type : ComputeValueType.values()) {
+            assertEquals(0, ComputeOperator.Sum.getIdentityBits(type));
+        }
+    }
+    
+    @Test
+    public void testApply() {
+        ComputeValueType f = ComputeValueType.Float, i = ComputeValueType.Int, u = ComputeValueType.UInt;
+        assertEquals(1.5f, Float.intBitsToFloat(ComputeOperator.Sum.apply(f, bits(4f), bits(-2.5f))), 0f);
+        assertEquals(-2.5f, Float.intBitsToFloat(ComputeOperator.Min.apply(f, bits(4f), bits(-2.5f))), 0f);
+        assertEquals(4f, Float.intBitsToFloat(ComputeOperator.Max.apply(f, bits(4f), bits(-2.5f))), 0f);
+        assertEquals(-1, ComputeOperator.Min.apply(i, -1, 1));
+        assertEquals(1, ComputeOperator.Max.apply(i, -1, 1));
+        // as unsigned, -1 is the largest value
+        assertEquals(1, ComputeOperator.Min.apply(u, -1, 1));
+        assertEquals(-1, ComputeOperator.Max.apply(u, -1, 1));
+        assertEquals(Integer.MIN_VALUE, ComputeOperator.Sum.apply(i, Integer.MAX_VALUE, 1));
+        assertEquals(0, ComputeOperator.Sum.apply(u, -1, 1));
+    }
+    
+    @Test
+    public void testDefines() {
+        assertEquals(0, ComputeOperator.Sum.getDefine());
+        assertEquals(1, ComputeOperator.Min.getDefine());
+        assertEquals(2, ComputeOperator.Max.getDefine());
+    }
+    
+    private static int bits(float f) {
+        return Float.floatToRawIntBits(f);
+    }
+    
+}
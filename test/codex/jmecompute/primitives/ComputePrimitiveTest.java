@@ -0,0 +1,42 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package codex.jmecompute.primitives;
+
+import codex.jmecompute.opengl.GLComputeShader;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * 
+ * @author codex
+ */
+public class ComputePrimitiveTest {
+    
+    @Test
+    public void testOperatorDefines() {
+        for (ComputeOperator op : ComputeOperator.values()) {
+            for (ComputeValueType type : ComputeValueType.values()) {
+                GLComputeShader shader = new GLComputeShader("Test", new int[] {430}, "");
+                ComputePrimitive.setOperator(shader, type, op);
+                String source = shader.getDefineSource();
+                String msg = op+" "+type+": "+source;
+                assertTrue(msg, source.contains("#define OP "+op.getDefine()+"\n"));
+                assertTrue(msg, source.contains("#define VALUE_TYPE "+type.getGlslType()+"\n"));
+                assertTrue(msg, source.contains("#define IDENTITY "+op.getIdentity(type)+"\n"));
+            }
+        }
+    }
+    
+    @Test
+    public void testOperatorDefinesReplaceLoadedDefaults() {
+        GLComputeShader shader = new GLComputeShader("Test", new int[] {430}, "");
+        // definitions declare OP : #0, which loads as a string
+        shader.setDefine("OP", "0");
+        ComputePrimitive.setOperator(shader, ComputeValueType.Float, ComputeOperator.Max);
+        ComputePrimitive.setOperator(shader, ComputeValueType.UInt, ComputeOperator.Sum);
+        assertTrue(shader.getDefineSource().contains("#define OP 0\n"));
+    }
+    
+}
@@ -0,0 +1,28 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package codex.jmecompute.primitives;
+
+import codex.jmecompute.opengl.GLComputeShader;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * 
+ * @author codex
+ */
+public class ComputeRadixSortTest {
+    
+    @Test
+    public void testKeyDefines() {
+        String[] expected = {"2", "1", "0"};
+        ComputeValueType[] types = {ComputeValueType.Float, ComputeValueType.Int, ComputeValueType.UInt};
+        for (int i = 0; i < types.length; i++) {
+            GLComputeShader shader = new GLComputeShader("Test", new int[] {430}, "");
+            shader.setDefine("KEY_TYPE", ComputeRadixSort.getKeyDefine(types[i]));
+            assertEquals(types[i].name(), "#define KEY_TYPE "+expected[i]+"\n", shader.getDefineSource());
+        }
+    }
+    
+}
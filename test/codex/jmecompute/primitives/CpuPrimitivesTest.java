@@ -0,0 +1,101 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package codex.jmecompute.primitives;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * 
+ * @author codex
+ */
+public class CpuPrimitivesTest {
+    
+    private static ByteBuffer ints(int... values) {
+        ByteBuffer buf = ByteBuffer.allocate(values.length * 4).order(ByteOrder.nativeOrder());
+        for (int i = 0; i < values.length; i++) {
+            buf.putInt(i << 2, values[i]);
+        }
+        return buf;
+    }
+    private static ByteBuffer floats(float... values) {
+        ByteBuffer buf = ByteBuffer.allocate(values.length * 4).order(ByteOrder.nativeOrder());
+        for (int i = 0; i < values.length; i++) {
+            buf.putFloat(i << 2, values[i]);
+        }
+        return buf;
+    }
+    private static int[] toInts(ByteBuffer buf, int count) {
+        int[] values = new int[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = buf.getInt(i << 2);
+        }
+        return values;
+    }
+    
+    @Test
+    public void testReduce() {
+        ByteBuffer in = ints(3, -7, 12, 5);
+        assertEquals(13, CpuPrimitives.reduce(ComputeValueType.Int, ComputeOperator.Sum, in, 4));
+        assertEquals(-7, CpuPrimitives.reduce(ComputeValueType.Int, ComputeOperator.Min, in, 4));
+        assertEquals(12, CpuPrimitives.reduce(ComputeValueType.Int, ComputeOperator.Max, in, 4));
+        assertEquals(-7, CpuPrimitives.reduce(ComputeValueType.UInt, ComputeOperator.Max, in, 4));
+        // only the first elements are reduced
+        assertEquals(-4, CpuPrimitives.reduce(ComputeValueType.Int, ComputeOperator.Sum, in, 2));
+        float max = Float.intBitsToFloat(CpuPrimitives.reduce(ComputeValueType.Float, ComputeOperator.Max,
+                floats(-1f, -3f, -0.5f), 3));
+        assertEquals(-0.5f, max, 0f);
+    }
+    
+    @Test
+    public void testReduceEmpty() {
+        for (ComputeOperator op : ComputeOperator.values()) {
+            assertEquals(op.getIdentityBits(ComputeValueType.Int),
+                    CpuPrimitives.reduce(ComputeValueType.Int, op, ints(), 0));
+        }
+    }
+    
+    @Test
+    public void testScan() {
+        ByteBuffer in = ints(1, 2, 3, 4);
+        ByteBuffer out = ints(0, 0, 0, 0);
+        CpuPrimitives.scan(ComputeValueType.Int, ComputeOperator.Sum, in, out, 4, false);
+        assertArrayEquals(new int[] {0, 1, 3, 6}, toInts(out, 4));
+        CpuPrimitives.scan(ComputeValueType.Int, ComputeOperator.Sum, in, out, 4, true);
+        assertArrayEquals(new int[] {1, 3, 6, 10}, toInts(out, 4));
+        CpuPrimitives.scan(ComputeValueType.Int, ComputeOperator.Max, ints(2, 1, 5, 3), out, 4, true);
+        assertArrayEquals(new int[] {2, 2, 5, 5}, toInts(out, 4));
+        CpuPrimitives.scan(ComputeValueType.Int, ComputeOperator.Min, ints(2, 1, 5, 3), out, 4, false);
+        assertArrayEquals(new int[] {Integer.MAX_VALUE, 2, 1, 1}, toInts(out, 4));
+    }
+    
+    @Test
+    public void testScanInPlace() {
+        ByteBuffer buf = ints(1, 2, 3, 4);
+        CpuPrimitives.scan(ComputeValueType.UInt, ComputeOperator.Sum, buf, buf, 4, false);
+        assertArrayEquals(new int[] {0, 1, 3, 6}, toInts(buf, 4));
+    }
+    
+    @Test
+    public void testCompact() {
+        ByteBuffer out = ints(0, 0, 0, 0, 0);
+        int n = CpuPrimitives.compact(ComputeValueType.Int, ints(4, -1, 7, -3, 2), out, 5, v -> v > 0);
+        assertEquals(3, n);
+        assertArrayEquals(new int[] {4, 7, 2}, toInts(out, n));
+        assertEquals(0, CpuPrimitives.compact(ComputeValueType.Int, ints(-1, -2), out, 2, v -> v > 0));
+    }
+    
+    @Test
+    public void testCompare() {
+        assertEquals(-1, CpuPrimitives.compare(ComputeValueType.Int, ints(1, 2, 3), ints(1, 2, 3), 3, 0));
+        assertEquals(1, CpuPrimitives.compare(ComputeValueType.Int, ints(1, 2, 3), ints(1, 5, 3), 3, 0.5));
+        assertEquals(-1, CpuPrimitives.compare(ComputeValueType.Float, floats(1000f, 2f), floats(1000.01f, 2f), 2, 1e-4));
+        assertEquals(0, CpuPrimitives.compare(ComputeValueType.Float, floats(1000f, 2f), floats(1001f, 2f), 2, 1e-4));
+        assertEquals(0, CpuPrimitives.compare(ComputeValueType.Float, floats(Float.NaN), floats(0f), 1, 1e-4));
+    }
+    
+}